@@ -0,0 +1,78 @@
+package com.example.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+// Not a JMH benchmark: compares two JMH result files (-rf json), typically from two commits.
+// For every benchmark and parameter set in both it prints the scores and the change, and
+// flags the ones that got worse by more than the threshold and by more than the combined
+// error of the two runs. Arguments: <baseline.json> <candidate.json> [threshold %, default 5]
+public class BenchmarkComparison {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: BenchmarkComparison <baseline.json> <candidate.json> [threshold %]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 5;
+        Map<String, JsonNode> baseline = read(new File(args[0]));
+        Map<String, JsonNode> candidate = read(new File(args[1]));
+
+        int regressions = 0;
+        for (Map.Entry<String, JsonNode> entry : baseline.entrySet()) {
+            JsonNode after = candidate.get(entry.getKey());
+            if (after == null) {
+                continue;
+            }
+            JsonNode before = entry.getValue();
+            double beforeScore = score(before);
+            double afterScore = score(after);
+            // Time per operation gets worse going up, throughput going down
+            boolean lowerIsBetter = !before.get("mode").asText().equals("thrpt");
+            double change = (afterScore - beforeScore) / beforeScore * 100;
+            double worse = lowerIsBetter ? change : -change;
+            boolean significant = Math.abs(afterScore - beforeScore) > error(before) + error(after);
+            boolean regression = worse > threshold && significant;
+            if (regression) {
+                regressions++;
+            }
+            System.out.printf("%-90s %14.3f %14.3f %8.1f%% %s%n", entry.getKey(), beforeScore, afterScore, change,
+                before.get("primaryMetric").get("scoreUnit").asText() + (regression ? "  REGRESSION" : ""));
+        }
+        System.out.println(regressions + " regression(s) above " + threshold + "%");
+        System.exit(regressions == 0 ? 0 : 1);
+    }
+
+    // Results by benchmark name and parameters
+    private static Map<String, JsonNode> read(File file) throws IOException {
+        Map<String, JsonNode> results = new LinkedHashMap<>();
+        for (JsonNode result : new ObjectMapper().readTree(file)) {
+            StringBuilder key = new StringBuilder(result.get("benchmark").asText().replace("com.example.benchmarks.", ""));
+            JsonNode params = result.get("params");
+            if (params != null) {
+                Map<String, String> sorted = new TreeMap<>();
+                for (Map.Entry<String, JsonNode> param : params.properties()) {
+                    sorted.put(param.getKey(), param.getValue().asText());
+                }
+                key.append(' ').append(sorted);
+            }
+            results.put(key.toString(), result);
+        }
+        return results;
+    }
+
+    private static double score(JsonNode result) {
+        return result.get("primaryMetric").get("score").asDouble();
+    }
+
+    private static double error(JsonNode result) {
+        double error = result.get("primaryMetric").get("scoreError").asDouble();
+        return Double.isNaN(error) ? 0 : error;
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.benchmarks;
+
+import com.example.models.ImportReport;
+import com.example.models.Product;
+import com.example.repositories.InMemoryProductRepository;
+import com.example.repositories.persistence.FsyncPolicy;
+import com.example.repositories.persistence.WriteAheadLog;
+import com.example.service.ProductService;
+import com.example.service.feed.CsvProductFeedReader;
+import com.example.service.feed.NdjsonProductFeedReader;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Rows per second imported through the bulk endpoint's code path (CSV and NDJSON feeds)
+// against one createProduct call per row, as separate POST /api/products requests do
+// (JSON parsing of the body included, HTTP left out). Optionally with the write-ahead log
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx3g"})
+public class BulkImportBenchmark {
+
+    private static final int ROWS = 10_000;
+
+    @Param({"NONE", "BATCH"})
+    private String fsync;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private String csvFeed;
+    private String ndjsonFeed;
+    private String[] requestBodies;
+    private ProductService productService;
+    private WriteAheadLog log;
+    private Path directory;
+
+    @Setup(Level.Trial)
+    public void createFeeds() {
+        Random random = new Random(42);
+        StringBuilder csv = new StringBuilder("name,category,unitPrice,inStock,expirationDate\n");
+        StringBuilder ndjson = new StringBuilder();
+        requestBodies = new String[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            String name = "Product " + i;
+            String category = "Category" + random.nextInt(50);
+            String unitPrice = String.valueOf(1 + random.nextInt(10000) / 100.0);
+            int inStock = random.nextInt(100);
+            String expirationDate = "2025-" + String.format("%02d", 1 + random.nextInt(12)) + "-15";
+            csv.append(name).append(',').append(category).append(',').append(unitPrice).append(',')
+                .append(inStock).append(',').append(expirationDate).append('\n');
+            requestBodies[i] = "{\"name\":\"" + name + "\",\"category\":\"" + category + "\",\"unitPrice\":" + unitPrice
+                + ",\"inStock\":" + inStock + ",\"expirationDate\":\"" + expirationDate + "\"}";
+            ndjson.append(requestBodies[i]).append('\n');
+        }
+        csvFeed = csv.toString();
+        ndjsonFeed = ndjson.toString();
+    }
+
+    @Setup(Level.Iteration)
+    public void createRepository() throws IOException {
+        InMemoryProductRepository repository = new InMemoryProductRepository();
+        if (!fsync.equals("NONE")) {
+            directory = Files.createTempDirectory("import-benchmark");
+            log = new WriteAheadLog(directory, 1, FsyncPolicy.valueOf(fsync), 100);
+            repository.setJournal(log);
+        }
+        productService = new ProductService(repository);
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeLog() throws IOException {
+        if (log != null) {
+            log.close();
+            try (Stream<Path> files = Files.walk(directory)) {
+                for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                    Files.delete(file);
+                }
+            }
+            log = null;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public Product singleItem() throws IOException {
+        Product last = null;
+        for (String body : requestBodies) {
+            last = productService.createProduct(objectMapper.readValue(body, Product.class));
+        }
+        return last;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public ImportReport bulkCsv() throws IOException {
+        return productService.importProducts(new CsvProductFeedReader(new StringReader(csvFeed)));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public ImportReport bulkNdjson() throws IOException {
+        return productService.importProducts(new NdjsonProductFeedReader(new StringReader(ndjsonFeed), objectMapper));
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.benchmarks;
+
+import com.example.models.Product;
+import com.example.repositories.ColumnarProductRepository;
+import com.example.repositories.InMemoryProductRepository;
+import com.example.repositories.OffHeapProductRepository;
+import com.example.repositories.ProductRepository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Synthetic catalogs for the benchmarks, the same for the same seed. Names are two words
+// from a fixed vocabulary plus the product number, picked uniformly or with a Zipf
+// distribution so that a few words are in most names, as in a real catalog
+public class CatalogGenerator {
+    public static final long DEFAULT_SEED = 42;
+
+    private static final String[] ADJECTIVES = {"Fresh", "Organic", "Frozen", "Smoked", "Spicy", "Sweet", "Roasted", "Dried",
+        "Salted", "Raw", "Baked", "Pickled", "Creamy", "Crunchy", "Wild", "Aged"};
+    private static final String[] NOUNS = {"Apple", "Salmon", "Cheddar", "Almonds", "Yogurt", "Bagel", "Pepper", "Coffee",
+        "Spinach", "Honey", "Butter", "Rice", "Olive", "Tomato", "Walnut", "Basil", "Oats", "Lentils", "Mango", "Tea"};
+
+    public enum NameDistribution { UNIFORM, ZIPF }
+
+    private final int categoryCount;
+    private final NameDistribution names;
+    private final Random random;
+    private final double[] adjectiveWeights;
+    private final double[] nounWeights;
+
+    public CatalogGenerator(int categoryCount, NameDistribution names, long seed) {
+        this.categoryCount = categoryCount;
+        this.names = names;
+        this.random = new Random(seed);
+        this.adjectiveWeights = cumulativeWeights(ADJECTIVES.length);
+        this.nounWeights = cumulativeWeights(NOUNS.length);
+    }
+
+    // Creates the repository of the type used by inventory.repository.type
+    public static ProductRepository repository(String type) {
+        switch (type) {
+            case "in-memory":
+                return new InMemoryProductRepository();
+            case "columnar":
+                return new ColumnarProductRepository();
+            case "off-heap":
+                return new OffHeapProductRepository();
+            default:
+                throw new IllegalArgumentException("Unknown repository type: " + type);
+        }
+    }
+
+    public static String category(int number) {
+        return "Category" + number;
+    }
+
+    // A new product (no id) numbered i
+    public Product next(int i) {
+        LocalDateTime now = LocalDateTime.of(2025, 1, 1, 12, 0);
+        Product product = new Product();
+        product.setName(ADJECTIVES[pick(adjectiveWeights)] + " " + NOUNS[pick(nounWeights)] + " " + i);
+        product.setCategory(category(random.nextInt(categoryCount)));
+        product.setUnitPrice(1 + random.nextInt(10000) / 100.0);
+        product.setInStock(random.nextInt(4) == 0 ? 0 : random.nextInt(100));
+        product.setExpirationDate(random.nextBoolean() ? LocalDate.of(2026, 1, 1).plusDays(random.nextInt(365)) : null);
+        product.setCreatedAt(now);
+        product.setUpdatedAt(now);
+        return product;
+    }
+
+    // What a user types in the name search before picking a suggestion: the first 2 to 5
+    // letters of a word, picked with the same distribution as the names
+    public String searchTerm() {
+        String word = random.nextBoolean() ? ADJECTIVES[pick(adjectiveWeights)] : NOUNS[pick(nounWeights)];
+        return word.substring(0, Math.min(word.length(), 2 + random.nextInt(4)));
+    }
+
+    public List<Product> products(int count) {
+        List<Product> products = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            products.add(next(i));
+        }
+        return products;
+    }
+
+    // Saves count products and returns the repository
+    public ProductRepository fill(ProductRepository repository, int count) {
+        for (int i = 0; i < count; i++) {
+            repository.save(next(i));
+        }
+        return repository;
+    }
+
+    private int pick(double[] cumulative) {
+        double value = random.nextDouble() * cumulative[cumulative.length - 1];
+        for (int i = 0; i < cumulative.length; i++) {
+            if (value < cumulative[i]) {
+                return i;
+            }
+        }
+        return cumulative.length - 1;
+    }
+
+    // Zipf gives the word of rank k a weight of 1 / k
+    private double[] cumulativeWeights(int words) {
+        double[] cumulative = new double[words];
+        double total = 0;
+        for (int i = 0; i < words; i++) {
+            total += names == NameDistribution.ZIPF ? 1.0 / (i + 1) : 1;
+            cumulative[i] = total;
+        }
+        return cumulative;
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.benchmarks;
+
+import com.example.models.CustomPage;
+import com.example.models.Product;
+import com.example.models.TotalMode;
+import com.example.repositories.InMemoryProductRepository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Latency of the filtered and sorted listing against the catalog size
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CatalogQueryBenchmark {
+
+    @Param({"10000", "100000", "300000"})
+    private int catalogSize;
+
+    private InMemoryProductRepository repository;
+    // Middle of the catalog sorted by price, by page number and by the cursor before it
+    private int deepPage;
+    private Product deepPageAfter;
+
+    @Setup
+    public void setUp() {
+        repository = new InMemoryProductRepository();
+        Random random = new Random(42);
+        for (int i = 0; i < catalogSize; i++) {
+            Product product = new Product();
+            product.setName("Product " + i);
+            product.setCategory("Category" + random.nextInt(50));
+            product.setUnitPrice(1 + random.nextInt(10000) / 100.0);
+            product.setExpirationDate(LocalDate.of(2026, 1, 1).plusDays(random.nextInt(365)));
+            product.setInStock(random.nextInt(4) == 0 ? 0 : random.nextInt(100));
+            repository.save(product);
+        }
+
+        deepPage = catalogSize / 20;
+        List<Product> previousPage = repository.getProducts(null, null, null, "unitPrice", "asc", null, "asc", deepPage - 1, 10).getContent();
+        deepPageAfter = previousPage.get(previousPage.size() - 1);
+    }
+
+    @Benchmark
+    public CustomPage<Product> singleCategory() {
+        return repository.getProducts(null, List.of("Category7"), null, null, "asc", null, "asc", 0, 10);
+    }
+
+    @Benchmark
+    public CustomPage<Product> categoriesOutOfStock() {
+        return repository.getProducts(null, List.of("Category3", "Category11"), false, null, "asc", null, "asc", 0, 10);
+    }
+
+    @Benchmark
+    public CustomPage<Product> inStockOnly() {
+        return repository.getProducts(null, null, true, null, "asc", null, "asc", 0, 10);
+    }
+
+    @Benchmark
+    public CustomPage<Product> sortedByNameFirstPage() {
+        return repository.getProducts(null, null, null, "name", "asc", null, "asc", 0, 10);
+    }
+
+    @Benchmark
+    public CustomPage<Product> sortedByPriceDescDeepPage() {
+        return repository.getProducts(null, null, true, "unitPrice", "desc", null, "asc", 50, 10);
+    }
+
+    @Benchmark
+    public CustomPage<Product> sortedByPriceMiddlePageByNumber() {
+        return repository.getProducts(null, null, null, "unitPrice", "asc", null, "asc", deepPage, 10);
+    }
+
+    @Benchmark
+    public CustomPage<Product> sortedByPriceMiddlePageByCursor() {
+        return repository.getProductsAfter(null, null, null, "unitPrice", "asc", null, "asc", deepPageAfter, 10, TotalMode.EXACT);
+    }
+
+    // A name search matching most of the catalog: the page is found quickly, counting it all is not
+    @Benchmark
+    public CustomPage<Product> broadNameSearchExactTotal() {
+        return repository.getProducts("product 1", null, null, null, "asc", null, "asc", 0, 10, TotalMode.EXACT);
+    }
+
+    @Benchmark
+    public CustomPage<Product> broadNameSearchCappedTotal() {
+        return repository.getProducts("product 1", null, null, null, "asc", null, "asc", 0, 10, TotalMode.CAPPED);
+    }
+
+    @Benchmark
+    public CustomPage<Product> broadNameSearchEstimatedTotal() {
+        return repository.getProducts("product 1", null, null, null, "asc", null, "asc", 0, 10, TotalMode.ESTIMATED);
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.benchmarks;
+
+import com.example.benchmarks.CatalogGenerator.NameDistribution;
+import com.example.models.Product;
+import com.example.repositories.ProductRepository;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Write throughput of every repository with 8 threads updating random products of the
+// same catalog: whole saves (which move the products in the indexes) and stock deltas
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx3g"})
+@Threads(8)
+public class ConcurrentWriteBenchmark {
+
+    @Param({"in-memory", "columnar", "off-heap"})
+    private String repositoryType;
+
+    @Param({"100000"})
+    private int catalogSize;
+
+    @Param({"50"})
+    private int categories;
+
+    private ProductRepository repository;
+
+    @Setup
+    public void setUp() {
+        repository = new CatalogGenerator(categories, NameDistribution.ZIPF, CatalogGenerator.DEFAULT_SEED)
+            .fill(CatalogGenerator.repository(repositoryType), catalogSize);
+    }
+
+    @Benchmark
+    public Product save() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Product product = new Product("Updated " + random.nextInt(1000), CatalogGenerator.category(random.nextInt(categories)),
+            1 + random.nextInt(10000) / 100.0, null, random.nextInt(100), null, LocalDateTime.now());
+        product.setId(1L + random.nextInt(catalogSize));
+        return repository.save(product);
+    }
+
+    @Benchmark
+    public Product adjustStock() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return repository.adjustStock(1L + random.nextInt(catalogSize), 1 + random.nextInt(5), LocalDateTime.now());
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.benchmarks;
+
+import com.example.repositories.ProductRepository;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+
+// Not a JMH benchmark: loads the same catalog into each repository and reports the heap
+// still in use after a full GC, plus the direct memory it allocated. The catalog comes
+// from CatalogGenerator with the seed of the JMH benchmarks. Pass a catalog size as the
+// first argument (default 1M)
+public class HeapFootprintComparison {
+    private static final int CATEGORIES = 50;
+
+    public static void main(String[] args) {
+        int catalogSize = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+        for (String type : new String[] {"in-memory", "columnar", "off-heap"}) {
+            measure(type, catalogSize);
+        }
+    }
+
+    private static void measure(String type, int catalogSize) {
+        long baseline = usedHeapAfterGc();
+        long directBaseline = usedDirectMemory();
+        ProductRepository repository = new CatalogGenerator(CATEGORIES, CatalogGenerator.NameDistribution.UNIFORM,
+            CatalogGenerator.DEFAULT_SEED).fill(CatalogGenerator.repository(type), catalogSize);
+        long retained = usedHeapAfterGc() - baseline;
+        long direct = usedDirectMemory() - directBaseline;
+
+        System.out.printf("%-10s %,d products: %,d MB retained, %d bytes per product, %,d MB direct%n",
+            type, repository.countAllProducts(), retained / (1024 * 1024), retained / catalogSize, direct / (1024 * 1024));
+    }
+
+    private static long usedHeapAfterGc() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    private static long usedDirectMemory() {
+        return ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class).stream()
+            .filter(pool -> pool.getName().equals("direct"))
+            .mapToLong(BufferPoolMXBean::getMemoryUsed)
+            .sum();
+    }
+}
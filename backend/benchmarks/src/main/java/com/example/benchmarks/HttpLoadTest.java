@@ -0,0 +1,311 @@
+package com.example.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+// Not a JMH benchmark: an open-model HTTP load test of a running backend. Requests of a
+// configurable mix arrive at a fixed rate with exponential gaps (a Poisson process) whatever
+// the response times, and every latency is measured from the time the request was due, so
+// a stalled server shows in the percentiles instead of slowing the load down.
+// Arrivals, operations and payloads all come from the seed, so two runs send the same requests.
+// Arguments are key=value pairs:
+//   url          backend to load, default http://localhost:8080
+//   rate         requests per second, default 200
+//   warmup       seconds of load that aren't measured, default 10
+//   duration     seconds of measured load, default 60
+//   catalog      products imported before the run, default 10000, 0 to use the current catalog
+//   categories   categories of the imported products, default 50
+//   mix          weight of each operation, default list:40,search:25,metrics:15,create:5,update:10,toggle:5
+//   maxInFlight  requests waiting for a response before new ones are rejected, default 2000
+//   seed         default 42
+//   histograms   directory to write the latency distribution of each operation to (.hgrm files)
+public class HttpLoadTest {
+    private static final String DEFAULT_MIX = "list:40,search:25,metrics:15,create:5,update:10,toggle:5";
+    private static final String[] SORT_KEYS = {"name", "category", "unitPrice", "inStock", "expirationDate"};
+
+    enum Operation { LIST, SEARCH, METRICS, CREATE, UPDATE, TOGGLE }
+
+    private final URI base;
+    private final int categories;
+    private final long seed;
+    private final int maxInFlight;
+    private final HttpClient client;
+    private final ObjectMapper objectMapper;
+    private final Semaphore inFlight;
+    private final Map<Operation, ConcurrentHistogram> latencies = new EnumMap<>(Operation.class);
+    private final Map<Operation, LongAdder> errors = new EnumMap<>(Operation.class);
+    private final Map<Operation, LongAdder> rejected = new EnumMap<>(Operation.class);
+    private long[] ids;
+
+    HttpLoadTest(URI base, int categories, long seed, int maxInFlight) {
+        this.base = base;
+        this.categories = categories;
+        this.seed = seed;
+        this.maxInFlight = maxInFlight;
+        this.client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+        this.objectMapper = new ObjectMapper().findAndRegisterModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        this.inFlight = new Semaphore(maxInFlight);
+        for (Operation operation : Operation.values()) {
+            latencies.put(operation, new ConcurrentHistogram(3));
+            errors.put(operation, new LongAdder());
+            rejected.put(operation, new LongAdder());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator < 0) {
+                System.out.println("Usage: HttpLoadTest [url=...] [rate=...] [warmup=...] [duration=...] [catalog=...] "
+                    + "[categories=...] [mix=...] [maxInFlight=...] [seed=...] [histograms=<dir>]");
+                System.exit(2);
+            }
+            options.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+        double rate = Double.parseDouble(options.getOrDefault("rate", "200"));
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", "10"));
+        int duration = Integer.parseInt(options.getOrDefault("duration", "60"));
+        int catalog = Integer.parseInt(options.getOrDefault("catalog", "10000"));
+        Map<Operation, Integer> mix = mix(options.getOrDefault("mix", DEFAULT_MIX));
+
+        HttpLoadTest test = new HttpLoadTest(
+            URI.create(options.getOrDefault("url", "http://localhost:8080")),
+            Integer.parseInt(options.getOrDefault("categories", "50")),
+            Long.parseLong(options.getOrDefault("seed", String.valueOf(CatalogGenerator.DEFAULT_SEED))),
+            Integer.parseInt(options.getOrDefault("maxInFlight", "2000")));
+        if (catalog > 0) {
+            test.importCatalog(catalog);
+        }
+        test.loadIds();
+        System.out.printf("%.0f requests/s for %d s after a %d s warmup, mix %s, %d products%n",
+            rate, duration, warmup, mix, test.ids.length);
+        test.run(rate, mix, warmup, duration);
+        test.report(duration, options.get("histograms"));
+    }
+
+    static Map<Operation, Integer> mix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Expected operation:weight in the mix, got " + entry);
+            }
+            weights.put(Operation.valueOf(parts[0].trim().toUpperCase()), Integer.parseInt(parts[1].trim()));
+        }
+        return weights;
+    }
+
+    private void importCatalog(int count) throws IOException, InterruptedException {
+        CatalogGenerator generator = new CatalogGenerator(categories, CatalogGenerator.NameDistribution.ZIPF, seed);
+        StringBuilder feed = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            feed.append(objectMapper.writeValueAsString(generator.next(i))).append('\n');
+        }
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(base.resolve("/api/products/import"))
+                .header("Content-Type", "application/x-ndjson")
+                .POST(HttpRequest.BodyPublishers.ofString(feed.toString()))
+                .build(),
+            HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Import failed with " + response.statusCode() + ": " + response.body());
+        }
+    }
+
+    // Updates and stock toggles pick from the ids in the catalog when the run starts, sorted
+    // so the same seed picks the same products
+    private void loadIds() throws IOException, InterruptedException {
+        HttpResponse<Stream<String>> response = client.send(
+            HttpRequest.newBuilder(base.resolve("/api/products/export?format=ndjson")).build(),
+            HttpResponse.BodyHandlers.ofLines());
+        ids = response.body()
+            .filter(line -> !line.isBlank())
+            .mapToLong(line -> {
+                try {
+                    return objectMapper.readTree(line).get("id").asLong();
+                } catch (IOException e) {
+                    throw new IllegalStateException("Unreadable export line: " + line, e);
+                }
+            })
+            .sorted()
+            .toArray();
+        if (ids.length == 0) {
+            throw new IllegalStateException("The catalog is empty, pass catalog=<products> to import some");
+        }
+    }
+
+    // Requests are built ahead of their arrival time so building them doesn't delay the send
+    private void run(double rate, Map<Operation, Integer> mix, int warmup, int duration) throws Exception {
+        Random random = new Random(seed);
+        CatalogGenerator payloads = new CatalogGenerator(categories, CatalogGenerator.NameDistribution.ZIPF, seed + 1);
+        Operation[] operations = mix.keySet().toArray(new Operation[0]);
+        int[] cumulative = new int[operations.length];
+        int total = 0;
+        for (int i = 0; i < operations.length; i++) {
+            total += mix.get(operations[i]);
+            cumulative[i] = total;
+        }
+
+        double meanGapNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        long start = System.nanoTime();
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(warmup);
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(duration);
+        long due = start;
+        for (int number = 0; ; number++) {
+            due += (long) (-Math.log(1 - random.nextDouble()) * meanGapNanos);
+            if (due >= end) {
+                break;
+            }
+            int pick = random.nextInt(total);
+            int index = 0;
+            while (pick >= cumulative[index]) {
+                index++;
+            }
+            Operation operation = operations[index];
+            HttpRequest request = request(operation, number, random, payloads);
+
+            long wait;
+            while ((wait = due - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            send(operation, request, due, due >= measureFrom);
+        }
+        // Waits for the requests still in flight
+        inFlight.acquire(maxInFlight);
+    }
+
+    private HttpRequest request(Operation operation, int number, Random random, CatalogGenerator payloads)
+            throws IOException {
+        switch (operation) {
+            case LIST: {
+                // Mostly the first page, sometimes filtered by a category or sorted
+                StringBuilder query = new StringBuilder("/api/products?size=10&page=")
+                    .append(random.nextInt(4) == 0 ? random.nextInt(20) : 0);
+                if (random.nextBoolean()) {
+                    query.append("&category=").append(CatalogGenerator.category(random.nextInt(categories)));
+                }
+                if (random.nextInt(3) == 0) {
+                    query.append("&sortBy1=").append(SORT_KEYS[random.nextInt(SORT_KEYS.length)])
+                        .append("&sortDirection1=").append(random.nextBoolean() ? "asc" : "desc");
+                }
+                return HttpRequest.newBuilder(base.resolve(query.toString())).build();
+            }
+            case SEARCH:
+                return HttpRequest.newBuilder(base.resolve("/api/products?size=10&name="
+                    + URLEncoder.encode(payloads.searchTerm(), StandardCharsets.UTF_8))).build();
+            case METRICS:
+                return HttpRequest.newBuilder(base.resolve("/api/products/metrics")).build();
+            case CREATE:
+                return HttpRequest.newBuilder(base.resolve("/api/products"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(payloads.next(number))))
+                    .build();
+            case UPDATE:
+                return HttpRequest.newBuilder(base.resolve("/api/products/" + ids[random.nextInt(ids.length)]))
+                    .header("Content-Type", "application/json")
+                    .PUT(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(payloads.next(number))))
+                    .build();
+            case TOGGLE: {
+                long id = ids[random.nextInt(ids.length)];
+                return random.nextBoolean()
+                    ? HttpRequest.newBuilder(base.resolve("/api/products/" + id + "/outofstock"))
+                        .POST(HttpRequest.BodyPublishers.noBody()).build()
+                    : HttpRequest.newBuilder(base.resolve("/api/products/" + id + "/inStock"))
+                        .PUT(HttpRequest.BodyPublishers.noBody()).build();
+            }
+            default:
+                throw new IllegalArgumentException("Unknown operation: " + operation);
+        }
+    }
+
+    // A request arriving while maxInFlight are pending is rejected rather than queued, so a
+    // saturated server can't make the generator run out of memory
+    private void send(Operation operation, HttpRequest request, long due, boolean measured) {
+        if (!inFlight.tryAcquire()) {
+            if (measured) {
+                rejected.get(operation).increment();
+            }
+            return;
+        }
+        client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, failure) -> {
+            if (measured) {
+                if (failure != null || response.statusCode() >= 400) {
+                    errors.get(operation).increment();
+                } else {
+                    latencies.get(operation).recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - due));
+                }
+            }
+            inFlight.release();
+        });
+    }
+
+    private void report(int duration, String histograms) throws IOException {
+        System.out.printf("%-8s %9s %9s %7s %8s %9s %9s %9s %9s %9s %9s%n", "", "requests", "req/s", "errors",
+            "rejected", "mean ms", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        Histogram all = new Histogram(3);
+        long allErrors = 0;
+        long allRejected = 0;
+        for (Operation operation : Operation.values()) {
+            Histogram histogram = latencies.get(operation);
+            long operationErrors = errors.get(operation).sum();
+            long operationRejected = rejected.get(operation).sum();
+            if (histogram.getTotalCount() + operationErrors + operationRejected == 0) {
+                continue;
+            }
+            print(operation.name().toLowerCase(), histogram, operationErrors, operationRejected, duration);
+            all.add(histogram);
+            allErrors += operationErrors;
+            allRejected += operationRejected;
+
+            if (histograms != null) {
+                File directory = new File(histograms);
+                directory.mkdirs();
+                try (PrintStream output = new PrintStream(new File(directory, operation.name().toLowerCase() + ".hgrm"))) {
+                    histogram.outputPercentileDistribution(output, 1000.0);
+                }
+            }
+        }
+        print("total", all, allErrors, allRejected, duration);
+    }
+
+    private static void print(String label, Histogram histogram, long errors, long rejected, int duration) {
+        System.out.printf("%-8s %9d %9.1f %7d %8d %9.2f %9.2f %9.2f %9.2f %9.2f %9.2f%n", label,
+            histogram.getTotalCount() + errors + rejected,
+            (double) histogram.getTotalCount() / duration,
+            errors,
+            rejected,
+            histogram.getMean() / 1000,
+            histogram.getValueAtPercentile(50) / 1000.0,
+            histogram.getValueAtPercentile(90) / 1000.0,
+            histogram.getValueAtPercentile(99) / 1000.0,
+            histogram.getValueAtPercentile(99.9) / 1000.0,
+            histogram.getMaxValue() / 1000.0);
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.benchmarks;
+
+import com.example.models.CustomPage;
+import com.example.models.Product;
+import com.example.repositories.InMemoryProductRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Typeahead name search through the trigram index against the old lowercase-and-contains scan
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xmx3g"})
+public class NameSearchBenchmark {
+
+    private static final String[] ADJECTIVES = {"Fresh", "Organic", "Frozen", "Smoked", "Spicy", "Sweet", "Roasted", "Dried"};
+    private static final String[] NOUNS = {"Apple", "Salmon", "Cheddar", "Almonds", "Yogurt", "Bagel", "Pepper", "Coffee", "Spinach", "Honey"};
+
+    @Param({"10000", "100000", "1000000"})
+    private int catalogSize;
+
+    @Param({"sal", "organic alm", "ey 12"})
+    private String query;
+
+    private InMemoryProductRepository repository;
+    private List<Product> catalog;
+
+    @Setup
+    public void setUp() {
+        repository = new InMemoryProductRepository();
+        catalog = new ArrayList<>(catalogSize);
+        Random random = new Random(42);
+        for (int i = 0; i < catalogSize; i++) {
+            Product product = new Product();
+            product.setName(ADJECTIVES[random.nextInt(ADJECTIVES.length)] + " " + NOUNS[random.nextInt(NOUNS.length)] + " " + i);
+            product.setCategory("Category" + random.nextInt(50));
+            product.setUnitPrice(1 + random.nextInt(10000) / 100.0);
+            product.setInStock(random.nextInt(100));
+            catalog.add(repository.save(product));
+        }
+    }
+
+    @Benchmark
+    public CustomPage<Product> trigramIndex() {
+        return repository.getProducts(query, null, null, null, "asc", null, "asc", 0, 10);
+    }
+
+    @Benchmark
+    public int fullScanBaseline() {
+        int matches = 0;
+        for (Product product : catalog) {
+            if (product.getName().toLowerCase().contains(query.toLowerCase())) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+}
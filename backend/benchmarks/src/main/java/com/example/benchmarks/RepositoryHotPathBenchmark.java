@@ -0,0 +1,111 @@
+package com.example.benchmarks;
+
+import com.example.benchmarks.CatalogGenerator.NameDistribution;
+import com.example.models.CustomPage;
+import com.example.models.Product;
+import com.example.models.ProductRanges;
+import com.example.models.TotalMode;
+import com.example.repositories.ProductRepository;
+import com.example.service.ProductService;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// The read paths of the listing page on every repository: filters, single and double
+// sorts, narrow and broad range filters, a deep page, the metrics table and the category list, over a generated catalog
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xmx3g"})
+public class RepositoryHotPathBenchmark {
+    private static final ProductRanges NARROW = new ProductRanges(null, 5.0, null, null,
+        LocalDate.of(2026, 3, 1), LocalDate.of(2026, 3, 7));
+    private static final ProductRanges BROAD = new ProductRanges(10.0, 90.0, 1, null, null, null);
+
+    @Param({"in-memory", "columnar", "off-heap"})
+    private String repositoryType;
+
+    @Param({"100000"})
+    private int catalogSize;
+
+    @Param({"50"})
+    private int categories;
+
+    @Param({"ZIPF"})
+    private NameDistribution names;
+
+    private ProductRepository repository;
+    private ProductService productService;
+    private int deepPage;
+
+    @Setup
+    public void setUp() {
+        repository = new CatalogGenerator(categories, names, CatalogGenerator.DEFAULT_SEED)
+            .fill(CatalogGenerator.repository(repositoryType), catalogSize);
+        productService = new ProductService(repository);
+        deepPage = catalogSize / 20;
+    }
+
+    @Benchmark
+    public CustomPage<Product> filterByCategory() {
+        return repository.getProducts(null, List.of(CatalogGenerator.category(7)), null, null, "asc", null, "asc", 0, 10);
+    }
+
+    @Benchmark
+    public CustomPage<Product> filterByNameAndStock() {
+        return repository.getProducts("organic", null, true, null, "asc", null, "asc", 0, 10);
+    }
+
+    // Expiring within a week and under $5, a few dozen products out of 100000
+    @Benchmark
+    public CustomPage<Product> narrowRanges() {
+        return repository.getProducts(null, null, null, NARROW, "unitPrice", "asc", null, "asc", 0, 10, TotalMode.EXACT);
+    }
+
+    // Most of the catalog
+    @Benchmark
+    public CustomPage<Product> broadRanges() {
+        return repository.getProducts(null, null, null, BROAD, "unitPrice", "asc", null, "asc", 0, 10, TotalMode.EXACT);
+    }
+
+    @Benchmark
+    public CustomPage<Product> singleSort() {
+        return repository.getProducts(null, null, null, "unitPrice", "desc", null, "asc", 0, 10);
+    }
+
+    @Benchmark
+    public CustomPage<Product> doubleSort() {
+        return repository.getProducts(null, null, null, "category", "asc", "unitPrice", "desc", 0, 10);
+    }
+
+    @Benchmark
+    public CustomPage<Product> deepPage() {
+        return repository.getProducts(null, null, null, "name", "asc", null, "asc", deepPage, 10);
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> inventoryMetrics() {
+        return productService.getInventoryMetrics();
+    }
+
+    @Benchmark
+    public List<String> categoryList() {
+        return productService.getAllCategories();
+    }
+}
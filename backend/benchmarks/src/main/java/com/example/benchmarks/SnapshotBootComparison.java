@@ -0,0 +1,87 @@
+package com.example.benchmarks;
+
+import com.example.models.Product;
+import com.example.repositories.InMemoryProductRepository;
+import com.example.repositories.OffHeapProductRepository;
+import com.example.repositories.ProductRepository;
+import com.example.repositories.persistence.CatalogPersistence;
+import com.example.repositories.persistence.FsyncPolicy;
+import com.example.repositories.persistence.SnapshotFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+// Not a JMH benchmark: time from an empty process state to the first page of products
+// served, for the same catalog (default 1M products, pass another size as first argument):
+//  - re-creating every product through save(), as a client posting the catalog would
+//  - recovering the in-memory repository from its write-ahead log snapshot
+//  - booting the off-heap repository from a mapped snapshot
+public class SnapshotBootComparison {
+
+    public static void main(String[] args) throws IOException {
+        int catalogSize = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        List<Product> catalog = catalog(catalogSize);
+        Path directory = Files.createTempDirectory("snapshot-boot");
+        try {
+            long start = System.nanoTime();
+            InMemoryProductRepository posted = new InMemoryProductRepository();
+            for (Product product : catalog) {
+                posted.save(product);
+            }
+            report("re-created", start, posted);
+
+            Path walDirectory = Files.createDirectories(directory.resolve("wal"));
+            SnapshotFile.write(walDirectory, 1, posted.nextId(), posted.findAll());
+            posted = null;
+
+            start = System.nanoTime();
+            InMemoryProductRepository recovered = new InMemoryProductRepository();
+            CatalogPersistence recovery = new CatalogPersistence(recovered, walDirectory.toString(), FsyncPolicy.INTERVAL, 100, 0);
+            recovery.start();
+            report("recovered", start, recovered);
+            recovery.stop();
+            recovered = null;
+
+            Path mapped = directory.resolve("catalog.bin");
+            OffHeapProductRepository offHeap = new OffHeapProductRepository();
+            for (Product product : catalog) {
+                offHeap.save(product);
+            }
+            offHeap.exportSnapshot(mapped);
+
+            start = System.nanoTime();
+            report("mapped", start, OffHeapProductRepository.boot(mapped));
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    private static void report(String label, long start, ProductRepository repository) {
+        repository.getProducts(null, null, null, null, null, null, null, 0, 10);
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        System.out.printf("%-11s %,d products: first page after %,d ms%n", label, repository.countAllProducts(), millis);
+    }
+
+    private static List<Product> catalog(int catalogSize) {
+        Random random = new Random(42);
+        LocalDateTime now = LocalDateTime.of(2025, 1, 1, 12, 0);
+        List<Product> catalog = new ArrayList<>(catalogSize);
+        for (int i = 0; i < catalogSize; i++) {
+            catalog.add(new Product("Product " + i, "Category" + random.nextInt(50), 1 + random.nextInt(10000) / 100.0,
+                LocalDate.of(2025, 1, 1).plusDays(random.nextInt(365)), random.nextInt(100), now, now));
+        }
+        return catalog;
+    }
+}
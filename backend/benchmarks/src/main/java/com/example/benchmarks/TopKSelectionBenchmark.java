@@ -0,0 +1,73 @@
+package com.example.benchmarks;
+
+import com.example.models.Product;
+import com.example.repositories.TopKSelector;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Bounded top-k selection against sorting the whole filtered list for a two-key sort
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TopKSelectionBenchmark {
+
+    private static final Comparator<Product> ORDER = Comparator.comparing(Product::getCategory).reversed()
+        .thenComparing(Product::getUnitPrice)
+        .thenComparing(Product::getId);
+
+    @Param({"10000", "100000"})
+    private int filteredSize;
+
+    @Param({"10", "100", "1000"})
+    private int wanted;
+
+    private List<Product> products;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        products = new ArrayList<>(filteredSize);
+        for (int i = 0; i < filteredSize; i++) {
+            Product product = new Product();
+            product.setId((long) i + 1);
+            product.setCategory("Category" + random.nextInt(50));
+            product.setUnitPrice(1 + random.nextInt(10000) / 100.0);
+            products.add(product);
+        }
+    }
+
+    @Benchmark
+    public List<Product> fullSort() {
+        List<Product> sorted = new ArrayList<>(products);
+        sorted.sort(ORDER);
+        return sorted.subList(0, wanted);
+    }
+
+    @Benchmark
+    public List<Product> boundedHeap() {
+        TopKSelector<Product> selector = new TopKSelector<>(wanted, ORDER);
+        for (Product product : products) {
+            selector.offer(product);
+        }
+        return selector.sorted();
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.benchmarks;
+
+import com.example.BackendApplication;
+import com.example.models.Product;
+import com.example.repositories.ProductRepository;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+// Throughput and latency percentiles of the web tier on platform threads (a Tomcat pool of
+// TOMCAT_THREADS) and on virtual threads. Slow clients download large pages a chunk at a
+// time, holding the request thread while Tomcat waits to write, next to clients asking for
+// small pages. With a pool the small pages queue behind the slow downloads, with virtual
+// threads they don't. threads=virtual needs a Java 21 runtime
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class WebTierLoadBenchmark {
+
+    private static final int CATALOG_SIZE = 20_000;
+    private static final int TOMCAT_THREADS = 32;
+    private static final int SLOW_PAGE_SIZE = 5000;
+    private static final int SLOW_CHUNK = 16 * 1024;
+    private static final long SLOW_CHUNK_PAUSE_MILLIS = 2;
+
+    @Param({"platform", "virtual"})
+    private String threads;
+
+    private ConfigurableApplicationContext context;
+    private HttpClient client;
+    private URI smallPage;
+    private URI largePage;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        boolean virtual = threads.equals("virtual");
+        if (virtual && Runtime.version().feature() < 21) {
+            throw new IllegalStateException("Virtual threads need Java 21, run on a JDK 21 or pass -p threads=platform");
+        }
+        context = new SpringApplicationBuilder(BackendApplication.class)
+            .properties(
+                "server.port=0",
+                "server.tomcat.threads.max=" + TOMCAT_THREADS,
+                "spring.threads.virtual.enabled=" + virtual,
+                "inventory.persistence.enabled=false",
+                "inventory.query-cache.max-weight=0")
+            .run();
+
+        ProductRepository repository = context.getBean(ProductRepository.class);
+        for (int i = 0; i < CATALOG_SIZE; i++) {
+            repository.save(new Product("Product " + i, "Category" + (i % 50), 1 + i % 100, null, i % 7, null, null));
+        }
+
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        smallPage = URI.create("http://localhost:" + port + "/api/products?size=10&category=Category7");
+        largePage = URI.create("http://localhost:" + port + "/api/products?size=" + SLOW_PAGE_SIZE);
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(8)
+    public int smallPage() throws IOException, InterruptedException {
+        return client.send(HttpRequest.newBuilder(smallPage).build(), HttpResponse.BodyHandlers.ofByteArray()).body().length;
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(64)
+    public long slowClient() throws IOException, InterruptedException {
+        HttpResponse<InputStream> response = client.send(HttpRequest.newBuilder(largePage).build(),
+            HttpResponse.BodyHandlers.ofInputStream());
+        byte[] chunk = new byte[SLOW_CHUNK];
+        long total = 0;
+        try (InputStream body = response.body()) {
+            int read;
+            while ((read = body.readNBytes(chunk, 0, chunk.length)) > 0) {
+                total += read;
+                Thread.sleep(SLOW_CHUNK_PAUSE_MILLIS);
+            }
+        }
+        return total;
+    }
+}
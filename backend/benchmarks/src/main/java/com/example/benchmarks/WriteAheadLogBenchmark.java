@@ -0,0 +1,83 @@
+package com.example.benchmarks;
+
+import com.example.models.Product;
+import com.example.repositories.InMemoryProductRepository;
+import com.example.repositories.persistence.FsyncPolicy;
+import com.example.repositories.persistence.WriteAheadLog;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Write throughput of the repository with the write-ahead log under each fsync policy.
+// The log lives in java.io.tmpdir, point it at the disk you care about with -Djava.io.tmpdir
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@Threads(8)
+public class WriteAheadLogBenchmark {
+
+    private static final int CATALOG_SIZE = 10_000;
+
+    @Param({"NONE", "ALWAYS", "BATCH", "INTERVAL"})
+    private String fsync;
+
+    private InMemoryProductRepository repository;
+    private WriteAheadLog log;
+    private Path directory;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        repository = new InMemoryProductRepository();
+        for (int i = 0; i < CATALOG_SIZE; i++) {
+            repository.save(new Product("Product " + i, "Category" + (i % 50), 1 + i % 100, null, 1000, null, null));
+        }
+        if (!fsync.equals("NONE")) {
+            directory = Files.createTempDirectory("wal-benchmark");
+            log = new WriteAheadLog(directory, 1, FsyncPolicy.valueOf(fsync), 100);
+            repository.setJournal(log);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (log != null) {
+            log.close();
+            try (Stream<Path> files = Files.walk(directory)) {
+                for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public Product adjustStock() {
+        long id = 1 + ThreadLocalRandom.current().nextInt(CATALOG_SIZE);
+        int delta = ThreadLocalRandom.current().nextBoolean() ? 1 : -1;
+        return repository.adjustStock(id, delta, LocalDateTime.now());
+    }
+}
@@ -2,11 +2,31 @@ package com.example.controllers;
 
 import com.example.models.Product;
 import com.example.models.CustomPage;
+import com.example.models.ProductRanges;
+import com.example.models.StockAdjustment;
+import com.example.models.StockAdjustmentResult;
+import com.example.models.ImportReport;
+import com.example.models.QueryCacheStats;
+import com.example.models.TotalMode;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -14,85 +34,237 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.example.service.ProductService;
+import com.example.service.feed.CsvProductFeedReader;
+import com.example.service.feed.CsvProductFeedWriter;
+import com.example.service.feed.NdjsonProductFeedReader;
+import com.example.service.feed.NdjsonProductFeedWriter;
+import com.example.service.feed.ProductFeedReader;
+import com.example.service.feed.ProductFeedWriter;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 import io.swagger.v3.oas.annotations.Operation;
 
 @RestController
 public class ProductController {
+    // Horizon of /api/products/expiring, well inside the dates LocalDate can hold
+    private static final int MAX_EXPIRING_DAYS = 3650;
 
     private final ProductService productService;
+    private final ObjectMapper objectMapper;
+    // Versions start over on every start, so ETags carry the start time as well
+    private final String etagPrefix = Long.toString(System.currentTimeMillis(), 36);
 
-    public ProductController(ProductService productService) {
+    public ProductController(ProductService productService, ObjectMapper objectMapper) {
         this.productService = productService;
+        this.objectMapper = objectMapper;
     }
 
-    @Operation(summary = "Method that retrieves products with parameters for filters and sorting")
+    @Operation(summary = "Method that retrieves products with parameters for filters (name, categories, availability, price, stock and expiration ranges) and sorting, by page number or after the cursor of a previous page")
     @GetMapping("/api/products")
 	public ResponseEntity<CustomPage<Product>> getProducts(
         @RequestParam(required = false) String name,
         @RequestParam(required = false) List<String> category,
         @RequestParam(required = false) String availability,
+        @RequestParam(required = false) Double minPrice,
+        @RequestParam(required = false) Double maxPrice,
+        @RequestParam(required = false) Integer minStock,
+        @RequestParam(required = false) Integer maxStock,
+        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate expiresFrom,
+        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate expiresTo,
         @RequestParam(required = false) String sortBy1,
         @RequestParam(required = false) String sortDirection1,
         @RequestParam(required = false) String sortBy2,
         @RequestParam(required = false) String sortDirection2,
         @RequestParam(defaultValue = "0") int page,
-        @RequestParam(defaultValue = "10") int size
+        @RequestParam(defaultValue = "10") int size,
+        @RequestParam(required = false) String cursor,
+        @RequestParam(defaultValue = "exact") String total,
+        WebRequest request
     ) {
-        System.out.println("Fetching products");
+        String etag = etag(productService.getVersion(category));
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
 
-        Boolean availabilityFilter = null;
-        if (availability != null && !availability.isEmpty()) {
-            if (availability.equalsIgnoreCase("in_stock")) {
-                availabilityFilter = true;
-            } else if (availability.equalsIgnoreCase("out_of_stock")) {
-                availabilityFilter = false;
+        TotalMode totalMode;
+        try {
+            totalMode = TotalMode.valueOf(total.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown total mode: " + total);
+        }
+        ProductRanges ranges = ranges(minPrice, maxPrice, minStock, maxStock, expiresFrom, expiresTo);
+
+        if (cursor != null && !cursor.isEmpty()) {
+            try {
+                return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache()).body(productService.getProductsAfter(
+                    name,
+                    category,
+                    availabilityFilter(availability),
+                    ranges,
+                    sortBy1,
+                    Optional.ofNullable(sortDirection1).orElse("asc"),
+                    sortBy2,
+                    Optional.ofNullable(sortDirection2).orElse("asc"),
+                    cursor,
+                    page,
+                    size,
+                    totalMode));
+            } catch (IllegalArgumentException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
             }
         }
 
         CustomPage<Product> products = productService.getProducts(
             name,
             category,
-            availabilityFilter,
+            availabilityFilter(availability),
+            ranges,
             sortBy1,
             Optional.ofNullable(sortDirection1).orElse("asc"),
             sortBy2,
             Optional.ofNullable(sortDirection2).orElse("asc"),
             page, 
-            size); 
+            size,
+            totalMode); 
 
+        return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache()).body(products);
+    }
+
+    @Operation(summary = "Method that streams every product matching the filters as CSV or NDJSON")
+    @GetMapping("/api/products/export")
+    public ResponseEntity<StreamingResponseBody> exportProducts(
+        @RequestParam(required = false) String name,
+        @RequestParam(required = false) List<String> category,
+        @RequestParam(required = false) String availability,
+        @RequestParam(required = false) Double minPrice,
+        @RequestParam(required = false) Double maxPrice,
+        @RequestParam(required = false) Integer minStock,
+        @RequestParam(required = false) Integer maxStock,
+        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate expiresFrom,
+        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate expiresTo,
+        @RequestParam(defaultValue = "ndjson") String format
+    ) {
+        boolean csv = format.equalsIgnoreCase("csv");
+        if (!csv && !format.equalsIgnoreCase("ndjson")) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown export format: " + format);
+        }
+        Boolean availabilityFilter = availabilityFilter(availability);
+        ProductRanges ranges = ranges(minPrice, maxPrice, minStock, maxStock, expiresFrom, expiresTo);
+
+        // Runs on an async thread once the handler returns and writes straight to the
+        // response, so the products are never collected in a list
+        StreamingResponseBody body = output -> {
+            Writer writer = new OutputStreamWriter(output, StandardCharsets.UTF_8);
+            ProductFeedWriter feed = csv ? new CsvProductFeedWriter(writer) : new NdjsonProductFeedWriter(writer, objectMapper);
+            productService.exportProducts(name, category, availabilityFilter, ranges, feed);
+        };
+
+        return ResponseEntity.ok()
+            .contentType(csv ? new MediaType("text", "csv", StandardCharsets.UTF_8) : new MediaType("application", "x-ndjson"))
+            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"products." + (csv ? "csv" : "ndjson") + "\"")
+            .body(body);
+    }
+
+    // The version is read before the response is built, so a write landing meanwhile gives
+    // the client a newer body under the older tag and the next poll fetches it again
+    private String etag(long version) {
+        return "\"" + etagPrefix + "-" + version + "\"";
+    }
+
+    private static ProductRanges ranges(Double minPrice, Double maxPrice, Integer minStock, Integer maxStock,
+                                        LocalDate expiresFrom, LocalDate expiresTo) {
+        try {
+            return new ProductRanges(minPrice, maxPrice, minStock, maxStock, expiresFrom, expiresTo);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    private static Boolean availabilityFilter(String availability) {
+        if (availability != null && !availability.isEmpty()) {
+            if (availability.equalsIgnoreCase("in_stock")) {
+                return true;
+            } else if (availability.equalsIgnoreCase("out_of_stock")) {
+                return false;
+            }
+        }
+        return null;
+    }
+
+    @Operation(summary = "Method that retrieves the products expiring in the next days (soonest first), or already expired (most recently expired first)")
+    @GetMapping("/api/products/expiring")
+    public ResponseEntity<List<Product>> getExpiringProducts(
+        @RequestParam(defaultValue = "7") int days,
+        @RequestParam(defaultValue = "false") boolean expired,
+        @RequestParam(defaultValue = "100") int limit
+    ) {
+        if (days < 0 || days > MAX_EXPIRING_DAYS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "days must be between 0 and " + MAX_EXPIRING_DAYS);
+        }
+        if (limit < 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit can't be negative");
+        }
+        LocalDate today = LocalDate.now();
+        List<Product> products = expired
+            ? productService.getExpiringProducts(null, today.minusDays(1), true, limit)
+            : productService.getExpiringProducts(today, today.plusDays(days), false, limit);
         return ResponseEntity.ok(products);
     }
 
+    @Operation(summary = "Method that retrieves the hit, miss and eviction counters of the product listing cache")
+    @GetMapping("/api/products/query-cache")
+    public ResponseEntity<QueryCacheStats> getQueryCacheStats() {
+        return ResponseEntity.ok(productService.getQueryCacheStats());
+    }
+
+    @Operation(summary = "Method that streams batches of product changes and metrics deltas as server-sent events")
+    @GetMapping(value = "/api/products/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter getChanges() throws IOException {
+        return productService.subscribeToChanges();
+    }
+
     @Operation(summary = "Method that retrieves the general metrics")
     @GetMapping("/api/products/metrics")
-	public ResponseEntity<List<Map<String, Object>>> getMetrics() {
-        System.out.println("Fetching metrics");
-
+	public ResponseEntity<List<Map<String, Object>>> getMetrics(WebRequest request) {
+        String etag = etag(productService.getVersion(null));
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
         List<Map<String, Object>> metrics = productService.getInventoryMetrics(); 
 
-        return ResponseEntity.ok(metrics);
+        return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache()).body(metrics);
     }
 
     @Operation(summary = "Method that retrieves all the available categories")
     @GetMapping("/api/products/categories")
-	public ResponseEntity<List<String>> getCategories() {
-        System.out.println("Fetching categories");
-
+	public ResponseEntity<List<String>> getCategories(WebRequest request) {
+        String etag = etag(productService.getVersion(null));
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
         List<String> categories = productService.getAllCategories(); 
 
-        return ResponseEntity.ok(categories);
+        return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache()).body(categories);
     }
 
     @Operation(summary = "Method that creates a new product")
     @PostMapping("/api/products")
     public ResponseEntity<Product> createProduct(@RequestBody Product product) {
-        System.out.println("Creating new product");
-        Product newProduct = productService.createProduct(product);
+        Product newProduct;
+        try {
+            newProduct = productService.createProduct(product);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
 
         return ResponseEntity.ok(newProduct);
     }
@@ -101,8 +273,12 @@ public class ProductController {
     @PutMapping("/api/products/{id}")
     public ResponseEntity<Product> updateProduct(@PathVariable Long id, @RequestBody Product product) {
         product.setId(id);
-        Product updatedProduct = productService.updateProduct(product);
-        System.out.println("Updating product: " + product.getId());
+        Product updatedProduct;
+        try {
+            updatedProduct = productService.updateProduct(product);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
 
         return ResponseEntity.ok(updatedProduct);
     }
@@ -119,10 +295,35 @@ public class ProductController {
     @PutMapping("/api/products/{id}/inStock")
     public ResponseEntity<Void> productInStock(@PathVariable Long id) {
         productService.productInStock(id);
-        System.out.println("Marking product as in stock");
         return ResponseEntity.noContent().build();
     }
 
+    @Operation(summary = "Method that applies many stock deltas in one call")
+    @PostMapping("/api/products/stock")
+    public ResponseEntity<List<StockAdjustmentResult>> adjustStocks(@RequestBody List<StockAdjustment> adjustments) {
+        List<StockAdjustmentResult> results = productService.adjustStocks(adjustments);
+
+        return ResponseEntity.ok(results);
+    }
+
+    @Operation(summary = "Method that imports products from a CSV or NDJSON feed, reading the body as it arrives")
+    @PostMapping(value = "/api/products/import", consumes = {"text/csv", "application/x-ndjson"})
+    public ResponseEntity<ImportReport> importProducts(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                                       InputStream body) throws IOException {
+        MediaType mediaType = MediaType.parseMediaType(contentType);
+        Charset charset = Optional.ofNullable(mediaType.getCharset()).orElse(StandardCharsets.UTF_8);
+        Reader reader = new InputStreamReader(body, charset);
+        ProductFeedReader feed = "csv".equalsIgnoreCase(mediaType.getSubtype())
+            ? new CsvProductFeedReader(reader)
+            : new NdjsonProductFeedReader(reader, objectMapper);
+
+        try {
+            return ResponseEntity.ok(productService.importProducts(feed));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
     @Operation(summary = "Method that deletes a product")
     @DeleteMapping("api/products/{id}")
     public ResponseEntity<Void> productDelete(@PathVariable Long id) {
@@ -0,0 +1,41 @@
+package com.example.models;
+
+// Running totals of one category, kept up to date by the repository on every write.
+// The inventory value is summed in whole cents so adding and removing the same products
+// returns to the exact same total, where a running double would drift with every write
+public class CategoryTotals {
+
+    private final String category;
+    private final long productCount;
+    private final long unitsInStock;
+    private final long inventoryCents;
+
+    public CategoryTotals(String category, long productCount, long unitsInStock, double inventoryValue) {
+        this(category, productCount, unitsInStock, Math.round(inventoryValue * 100));
+    }
+
+    private CategoryTotals(String category, long productCount, long unitsInStock, long inventoryCents) {
+        this.category = category;
+        this.productCount = productCount;
+        this.unitsInStock = unitsInStock;
+        this.inventoryCents = inventoryCents;
+    }
+
+    // Returns new totals with the product added (sign 1) or removed (sign -1)
+    public CategoryTotals plus(Product product, int sign) {
+        int stock = product.getInStock() == null ? 0 : product.getInStock();
+        long cents = stock > 0 ? Math.round(product.getUnitPrice() * stock * 100) : 0;
+        return new CategoryTotals(category, productCount + sign, unitsInStock + (long) sign * stock, inventoryCents + sign * cents);
+    }
+
+    // Returns the sum of both totals, for the same category
+    public CategoryTotals plus(CategoryTotals other) {
+        return new CategoryTotals(category, productCount + other.productCount, unitsInStock + other.unitsInStock,
+            inventoryCents + other.inventoryCents);
+    }
+
+    public String getCategory() { return category; }
+    public long getProductCount() { return productCount; }
+    public long getUnitsInStock() { return unitsInStock; }
+    public double getInventoryValue() { return inventoryCents / 100.0; }
+}
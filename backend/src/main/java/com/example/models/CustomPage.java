@@ -2,26 +2,55 @@ package com.example.models;
 
 import java.util.List;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
+
 public class CustomPage<T> {
     private List<T> content;
     private int pageNumber;
     private int pageSize;
     private int totalElements;
+    private TotalMode totalMode;
+    private boolean hasNext;
+    // Token that fetches the page after this one, null on the last page
+    private String nextCursor;
 
     public CustomPage(
         List<T> content, 
         int pageNumber, 
         int pageSize, 
         int totalElements
+    ){
+        this(content, pageNumber, pageSize, totalElements, TotalMode.EXACT,
+            (long) (pageNumber + 1) * pageSize < totalElements, null);
+    }
+
+    public CustomPage(
+        List<T> content,
+        int pageNumber,
+        int pageSize,
+        int totalElements,
+        TotalMode totalMode,
+        boolean hasNext,
+        String nextCursor
     ){
         this.content = content;
         this.pageNumber = pageNumber;
         this.pageSize = pageSize;
         this.totalElements = totalElements;
+        this.totalMode = totalMode;
+        this.hasNext = hasNext;
+        this.nextCursor = nextCursor;
     }
 
     public List<T> getContent(){ return content; }
     public int getPageNumber() { return pageNumber; }
     public int getPageSize() { return pageSize; }
     public int getTotalElements() { return totalElements; } 
+    public TotalMode getTotalMode() { return totalMode; }
+    public String getNextCursor() { return nextCursor; }
+
+    // Whether more rows follow this page, known even when the total isn't. Not a bean
+    // getter, so it is named for Jackson
+    @JsonProperty("hasNext")
+    public boolean hasNext() { return hasNext; }
 }
@@ -0,0 +1,27 @@
+package com.example.models;
+
+import java.time.LocalDate;
+import java.util.List;
+
+// What one tick of the expiration scheduler found: the products that entered the warning
+// window and the ones that expired since they were last announced
+public class ExpirationAlerts {
+
+    private final LocalDate date;
+    private final List<Product> expiringSoon;
+    private final List<Product> expired;
+
+    public ExpirationAlerts(LocalDate date, List<Product> expiringSoon, List<Product> expired) {
+        this.date = date;
+        this.expiringSoon = expiringSoon;
+        this.expired = expired;
+    }
+
+    public LocalDate getDate() { return date; }
+    public List<Product> getExpiringSoon() { return expiringSoon; }
+    public List<Product> getExpired() { return expired; }
+
+    public boolean isEmpty() {
+        return expiringSoon.isEmpty() && expired.isEmpty();
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.models;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Outcome of a bulk import. Only the first errors are listed so the report stays small
+// for any feed, failedRows still counts all of them
+public class ImportReport {
+
+    private long rowsRead;
+    private long importedRows;
+    private long failedRows;
+    private final List<ImportRowError> errors = new ArrayList<>();
+    private final int maxErrors;
+
+    public ImportReport(int maxErrors) {
+        this.maxErrors = maxErrors;
+    }
+
+    public void rowRead() {
+        rowsRead++;
+    }
+
+    public void imported(int rows) {
+        importedRows += rows;
+    }
+
+    public void failed(long row, String error) {
+        failedRows++;
+        if (errors.size() < maxErrors) {
+            errors.add(new ImportRowError(row, error));
+        }
+    }
+
+    public long getRowsRead() { return rowsRead; }
+    public long getImportedRows() { return importedRows; }
+    public long getFailedRows() { return failedRows; }
+    public List<ImportRowError> getErrors() { return errors; }
+    public boolean isErrorsTruncated() { return failedRows > errors.size(); }
+}
@@ -0,0 +1,16 @@
+package com.example.models;
+
+// A row of a bulk import that was rejected, rows are numbered from 1 without the CSV header
+public class ImportRowError {
+
+    private final long row;
+    private final String error;
+
+    public ImportRowError(long row, String error) {
+        this.row = row;
+        this.error = error;
+    }
+
+    public long getRow() { return row; }
+    public String getError() { return error; }
+}
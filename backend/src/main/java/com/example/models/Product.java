@@ -31,6 +31,19 @@ public class Product {
         this.updatedAt = updatedAt;
     };
 
+    // Copy constructor
+    // This constructor initializes a producto object with the same values as another one
+    public Product(Product other) {
+        this.id = other.id;
+        this.name = other.name;
+        this.category = other.category;
+        this.unitPrice = other.unitPrice;
+        this.expirationDate = other.expirationDate;
+        this.inStock = other.inStock;
+        this.createdAt = other.createdAt;
+        this.updatedAt = other.updatedAt;
+    }
+
     public Long getId() {
         return id;
     }
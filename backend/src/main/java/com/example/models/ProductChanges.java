@@ -0,0 +1,27 @@
+package com.example.models;
+
+import java.util.List;
+import java.util.Map;
+
+// One batch of the change feed: the products created or changed since the last batch (in
+// their latest version), the ids deleted, and the rows of the inventory metrics that moved
+public class ProductChanges {
+
+    private final List<Product> products;
+    private final List<Long> deletedIds;
+    private final List<Map<String, Object>> metrics;
+    private final List<String> removedCategories;
+
+    public ProductChanges(List<Product> products, List<Long> deletedIds,
+                          List<Map<String, Object>> metrics, List<String> removedCategories) {
+        this.products = products;
+        this.deletedIds = deletedIds;
+        this.metrics = metrics;
+        this.removedCategories = removedCategories;
+    }
+
+    public List<Product> getProducts() { return products; }
+    public List<Long> getDeletedIds() { return deletedIds; }
+    public List<Map<String, Object>> getMetrics() { return metrics; }
+    public List<String> getRemovedCategories() { return removedCategories; }
+}
@@ -0,0 +1,111 @@
+package com.example.models;
+
+import java.time.LocalDate;
+import java.util.Objects;
+
+// Range filters of a listing query: unit price, stock and expiration date, every bound
+// inclusive and optional. A product without stock or expiration date is outside any
+// range on that field. Immutable, so it can be part of a cache key
+public final class ProductRanges {
+    public static final ProductRanges NONE = new ProductRanges(null, null, null, null, null, null);
+
+    private final Double minPrice;
+    private final Double maxPrice;
+    private final Integer minStock;
+    private final Integer maxStock;
+    private final LocalDate expiresFrom;
+    private final LocalDate expiresTo;
+
+    public ProductRanges(Double minPrice, Double maxPrice, Integer minStock, Integer maxStock,
+                         LocalDate expiresFrom, LocalDate expiresTo) {
+        if (minPrice != null && maxPrice != null && minPrice > maxPrice) {
+            throw new IllegalArgumentException("minPrice is above maxPrice");
+        }
+        if (minStock != null && maxStock != null && minStock > maxStock) {
+            throw new IllegalArgumentException("minStock is above maxStock");
+        }
+        if (expiresFrom != null && expiresTo != null && expiresFrom.isAfter(expiresTo)) {
+            throw new IllegalArgumentException("expiresFrom is after expiresTo");
+        }
+        this.minPrice = minPrice;
+        this.maxPrice = maxPrice;
+        this.minStock = minStock;
+        this.maxStock = maxStock;
+        this.expiresFrom = expiresFrom;
+        this.expiresTo = expiresTo;
+    }
+
+    public Double getMinPrice() {
+        return minPrice;
+    }
+    public Double getMaxPrice() {
+        return maxPrice;
+    }
+    public Integer getMinStock() {
+        return minStock;
+    }
+    public Integer getMaxStock() {
+        return maxStock;
+    }
+    public LocalDate getExpiresFrom() {
+        return expiresFrom;
+    }
+    public LocalDate getExpiresTo() {
+        return expiresTo;
+    }
+
+    public boolean byPrice() {
+        return minPrice != null || maxPrice != null;
+    }
+
+    public boolean byStock() {
+        return minStock != null || maxStock != null;
+    }
+
+    public boolean byExpiration() {
+        return expiresFrom != null || expiresTo != null;
+    }
+
+    public boolean isEmpty() {
+        return !byPrice() && !byStock() && !byExpiration();
+    }
+
+    public boolean matchesPrice(double unitPrice) {
+        return (minPrice == null || unitPrice >= minPrice) && (maxPrice == null || unitPrice <= maxPrice);
+    }
+
+    public boolean matchesStock(Integer stock) {
+        return !byStock() || stock != null && (minStock == null || stock >= minStock) && (maxStock == null || stock <= maxStock);
+    }
+
+    public boolean matchesExpiration(LocalDate expirationDate) {
+        return !byExpiration() || expirationDate != null
+            && (expiresFrom == null || !expirationDate.isBefore(expiresFrom))
+            && (expiresTo == null || !expirationDate.isAfter(expiresTo));
+    }
+
+    public boolean matches(Product product) {
+        return matchesPrice(product.getUnitPrice())
+            && matchesStock(product.getInStock())
+            && matchesExpiration(product.getExpirationDate());
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof ProductRanges)) {
+            return false;
+        }
+        ProductRanges ranges = (ProductRanges) other;
+        return Objects.equals(minPrice, ranges.minPrice) && Objects.equals(maxPrice, ranges.maxPrice)
+            && Objects.equals(minStock, ranges.minStock) && Objects.equals(maxStock, ranges.maxStock)
+            && Objects.equals(expiresFrom, ranges.expiresFrom) && Objects.equals(expiresTo, ranges.expiresTo);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(minPrice, maxPrice, minStock, maxStock, expiresFrom, expiresTo);
+    }
+}
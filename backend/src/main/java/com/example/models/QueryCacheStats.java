@@ -0,0 +1,32 @@
+package com.example.models;
+
+// Counters of the product listing cache since startup
+public class QueryCacheStats {
+
+    private final long hits;
+    private final long misses;
+    // Entries found but out of date because their categories changed
+    private final long invalidations;
+    private final long evictions;
+    private final int entries;
+    private final long weight;
+    private final long maxWeight;
+
+    public QueryCacheStats(long hits, long misses, long invalidations, long evictions, int entries, long weight, long maxWeight) {
+        this.hits = hits;
+        this.misses = misses;
+        this.invalidations = invalidations;
+        this.evictions = evictions;
+        this.entries = entries;
+        this.weight = weight;
+        this.maxWeight = maxWeight;
+    }
+
+    public long getHits() { return hits; }
+    public long getMisses() { return misses; }
+    public long getInvalidations() { return invalidations; }
+    public long getEvictions() { return evictions; }
+    public int getEntries() { return entries; }
+    public long getWeight() { return weight; }
+    public long getMaxWeight() { return maxWeight; }
+}
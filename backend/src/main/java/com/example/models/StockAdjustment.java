@@ -0,0 +1,31 @@
+package com.example.models;
+
+public class StockAdjustment {
+
+    private Long id;
+    private int delta;
+
+    // Default constructor
+    // This constructor initializes an empty stock adjustment object
+    public StockAdjustment() {}
+
+    // Constructor with parameters
+    // This constructor initializes all fields of the stock adjustment class
+    public StockAdjustment(Long id, int delta) {
+        this.id = id;
+        this.delta = delta;
+    }
+
+    public Long getId() {
+        return id;
+    }
+    public void setId(Long id) {
+        this.id = id;
+    }
+    public int getDelta() {
+        return delta;
+    }
+    public void setDelta(int delta) {
+        this.delta = delta;
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.models;
+
+// Outcome of one adjustment of a bulk stock update, either the new stock or the error
+public class StockAdjustmentResult {
+
+    private Long id;
+    private Integer inStock;
+    private String error;
+
+    public StockAdjustmentResult(Long id, Integer inStock, String error) {
+        this.id = id;
+        this.inStock = inStock;
+        this.error = error;
+    }
+
+    public static StockAdjustmentResult applied(Long id, Integer inStock) {
+        return new StockAdjustmentResult(id, inStock, null);
+    }
+
+    public static StockAdjustmentResult failed(Long id, String error) {
+        return new StockAdjustmentResult(id, null, error);
+    }
+
+    public Long getId() { return id; }
+    public Integer getInStock() { return inStock; }
+    public String getError() { return error; }
+}
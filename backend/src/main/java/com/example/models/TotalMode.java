@@ -0,0 +1,15 @@
+package com.example.models;
+
+// How CustomPage.totalElements is worked out. Counting every match of a broad query can
+// cost far more than finding the page, so a client that doesn't show the exact total
+// can ask for less. When the exact total is as cheap, it is returned as EXACT anyway
+public enum TotalMode {
+    // Every match is counted
+    EXACT,
+    // Counting stops at a cap and totalElements is a lower bound ("1000+")
+    CAPPED,
+    // Estimated from index statistics and the rows looked at for the page
+    ESTIMATED,
+    // Not worked out, totalElements is -1
+    NONE
+}
@@ -0,0 +1,58 @@
+package com.example.repositories;
+
+import com.example.models.Product;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Change counters of the catalog, one per category plus one for the whole catalog.
+// Repositories move them after a change is visible to readers, so a result computed
+// after reading a counter is out of date as soon as the counter no longer matches
+public class CatalogVersions {
+    private final AtomicLong catalog = new AtomicLong();
+    private final ConcurrentMap<String, AtomicLong> categories = new ConcurrentHashMap<>();
+
+    public void changed(Product product) {
+        bump(product.getCategory());
+        catalog.incrementAndGet();
+    }
+
+    public void changed(Product previous, Product current) {
+        bump(current.getCategory());
+        if (!Objects.equals(previous.getCategory(), current.getCategory())) {
+            bump(previous.getCategory());
+        }
+        catalog.incrementAndGet();
+    }
+
+    // Moves the counter of each category of the products once
+    public void changed(Collection<Product> products) {
+        Set<String> changedCategories = new HashSet<>();
+        for (Product product : products) {
+            if (product.getCategory() != null && changedCategories.add(product.getCategory())) {
+                bump(product.getCategory());
+            }
+        }
+        catalog.incrementAndGet();
+    }
+
+    // Version of the products of a category, or of the whole catalog when null
+    public long of(String category) {
+        if (category == null) {
+            return catalog.get();
+        }
+        AtomicLong version = categories.get(category);
+        return version == null ? 0 : version.get();
+    }
+
+    private void bump(String category) {
+        if (category != null) {
+            categories.computeIfAbsent(category, c -> new AtomicLong()).incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,800 @@
+package com.example.repositories;
+
+import com.example.models.CategoryTotals;
+import com.example.models.CustomPage;
+import com.example.models.Product;
+import com.example.models.ProductRanges;
+import com.example.models.TotalMode;
+import com.example.repositories.index.CategoryDictionary;
+import com.example.repositories.index.CategoryTotalsIndex;
+import com.example.repositories.index.ExpirationIndex;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+// Keeps the catalog in primitive columns (see ProductColumns) instead of one Product
+// object per row: int stock, double price, epoch-day dates, epoch-nano timestamps and
+// dictionary-coded categories. Queries scan the columns and Product objects are only
+// created for the rows that are returned.
+// Writes take an exclusive lock, reads share it
+@Repository
+@ConditionalOnProperty(name = "inventory.repository.type", havingValue = "columnar")
+public class ColumnarProductRepository implements ProductRepository {
+    private static final int FOR_EACH_CHUNK = 256;
+    // Where counting stops with TotalMode.CAPPED, unless the page itself goes further
+    private static final int TOTAL_CAP = 1000;
+    // Slots sampled to estimate how many slots each check of a query rejects
+    private static final int PLANNER_SAMPLE = 64;
+    private static final Set<String> SORT_KEYS = Set.of("name", "category", "unitPrice", "inStock", "expirationDate");
+    private final CatalogVersions versions = new CatalogVersions();
+    private final LongAdder scanned = new LongAdder();
+    // Slots by expiration day, kept up to date by every write. A repository booted from a
+    // snapshot builds it on the first findExpiring, so booting doesn't read every record
+    private final ExpirationIndex expirationIndex = new ExpirationIndex();
+    private volatile boolean expirationIndexed;
+
+    // Package-private so OffHeapProductRepository can write them to a snapshot
+    final ProductColumns columns;
+    final CategoryDictionary categories;
+    final CategoryTotalsIndex categoryTotals;
+    final ReadWriteLock lock = new ReentrantReadWriteLock();
+    long idCounter;
+    int productCount;
+
+    public ColumnarProductRepository() {
+        this(new HeapProductColumns());
+    }
+
+    public ColumnarProductRepository(ProductColumns columns) {
+        this(columns, new CategoryDictionary(), new CategoryTotalsIndex(), 1, 0);
+    }
+
+    // Picks up the state of an earlier repository, see OffHeapProductRepository
+    ColumnarProductRepository(ProductColumns columns, CategoryDictionary categories, CategoryTotalsIndex categoryTotals,
+                              long idCounter, int productCount) {
+        this.columns = columns;
+        this.categories = categories;
+        this.categoryTotals = categoryTotals;
+        this.idCounter = idCounter;
+        this.productCount = productCount;
+        this.expirationIndexed = productCount == 0;
+    }
+
+    @Override
+    public Product save(Product product) {
+        lock.writeLock().lock();
+        try {
+            return saveLocked(product);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Takes the write lock once for the whole batch
+    @Override
+    public List<Product> saveAll(List<Product> products) {
+        lock.writeLock().lock();
+        try {
+            List<Product> savedProducts = new ArrayList<>(products.size());
+            for (Product product : products) {
+                try {
+                    savedProducts.add(saveLocked(product));
+                } catch (RuntimeException e) {
+                    throw new PartialSaveException(savedProducts, e);
+                }
+            }
+            return savedProducts;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Must be called holding the write lock. Every field is checked and encoded before a
+    // category is acquired or an id handed out, so a rejected product leaves nothing behind
+    private Product saveLocked(Product product) {
+        ProductRepository.checkPrice(product);
+        int expirationDay = toEpochDay(product.getExpirationDate());
+        if (product.getId() == null || product.getId() <= 0) {
+            int slot = slot(idCounter);
+            int categoryCode = acquireCategory(product.getCategory());
+            try {
+                write(slot, product, product.getCreatedAt(), categoryCode, expirationDay);
+            } catch (RuntimeException e) {
+                columns.clear(slot);
+                releaseCategory(product.getCategory());
+                throw e;
+            }
+            idCounter++;
+            productCount++;
+            expirationIndex.add(slot, product.getExpirationDate());
+            Product newProduct = materialize(slot);
+            categoryTotals.add(newProduct);
+            versions.changed(newProduct);
+
+            return newProduct;
+        } else {
+            int slot = existingSlot(product.getId());
+            Product existingProduct = materialize(slot);
+            boolean categoryChanged = !Objects.equals(existingProduct.getCategory(), product.getCategory());
+            int categoryCode = categoryChanged ? acquireCategory(product.getCategory()) : columns.categoryCode(slot);
+            try {
+                write(slot, product, existingProduct.getCreatedAt(), categoryCode, expirationDay);
+            } catch (RuntimeException e) {
+                if (categoryChanged) {
+                    releaseCategory(product.getCategory());
+                }
+                throw e;
+            }
+            if (categoryChanged) {
+                releaseCategory(existingProduct.getCategory());
+            }
+            Product updatedProduct = materialize(slot);
+            if (!Objects.equals(existingProduct.getExpirationDate(), updatedProduct.getExpirationDate())) {
+                expirationIndex.add(slot, updatedProduct.getExpirationDate());
+                expirationIndex.remove(slot, existingProduct.getExpirationDate());
+            }
+            categoryTotals.update(existingProduct, updatedProduct);
+            versions.changed(existingProduct, updatedProduct);
+
+            return updatedProduct;
+        }
+    }
+
+    @Override
+    public List<Product> findAll() {
+        lock.readLock().lock();
+        try {
+            List<Product> products = new ArrayList<>(productCount);
+            for (int slot = columns.nextLive(0); slot >= 0; slot = columns.nextLive(slot + 1)) {
+                products.add(materialize(slot));
+            }
+            return products;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<Product> findById(Long id) {
+        lock.readLock().lock();
+        try {
+            return isLive(id) ? Optional.of(materialize(slot(id))) : Optional.empty();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public CustomPage<Product> getProducts(String nameFilter, List<String> categoryFilters, Boolean availabilityFilter,
+                                           ProductRanges ranges, String sortBy1, String sortDirection1, String sortBy2,
+                                           String sortDirection2, int page, int size, TotalMode totalMode) {
+        lock.readLock().lock();
+        try {
+            IntPredicate filter = filter(nameFilter, categoryFilters, availabilityFilter, ranges);
+            if (isSlotOrder(sortBy1)) {
+                return slotOrderPage(filter, isDescending(sortDirection1), -1, page * size, page, size, totalMode);
+            }
+
+            Comparator<Integer> comparator = pageOrder(sortBy1, sortDirection1, sortBy2, sortDirection2);
+
+            // Same selection as InMemoryProductRepository: bounded heap for shallow pages
+            int start = page * size;
+            long wanted = (long) start + size;
+            List<Integer> matches = new ArrayList<>();
+            TopKSelector<Integer> selector = wanted * 2 <= productCount
+                ? new TopKSelector<>((int) wanted, comparator)
+                : null;
+            int totalItems = 0;
+            for (int slot = columns.nextLive(0); slot >= 0; slot = columns.nextLive(slot + 1)) {
+                if (filter.test(slot)) {
+                    totalItems++;
+                    if (selector != null) {
+                        selector.offer(slot);
+                    } else {
+                        matches.add(slot);
+                    }
+                }
+            }
+
+            scanned.add(productCount);
+
+            if (selector != null) {
+                matches = selector.sorted();
+            } else {
+                matches.sort(comparator);
+            }
+
+            int end = Math.min(start + size, matches.size());
+            List<Product> paginateProducts = new ArrayList<>();
+            for (int slot : matches.subList(Math.min(start, end), end)) {
+                paginateProducts.add(materialize(slot));
+            }
+
+            return new CustomPage<>(paginateProducts, page, size, totalItems);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Without sorted views a page after a cursor still needs a scan, but only the size
+    // products after it are kept instead of the start + size of an offset page
+    @Override
+    public CustomPage<Product> getProductsAfter(String nameFilter, List<String> categoryFilters, Boolean availabilityFilter,
+                                                ProductRanges ranges, String sortBy1, String sortDirection1, String sortBy2,
+                                                String sortDirection2, Product after, int size, TotalMode totalMode) {
+        lock.readLock().lock();
+        try {
+            IntPredicate filter = filter(nameFilter, categoryFilters, availabilityFilter, ranges);
+            if (isSlotOrder(sortBy1)) {
+                return slotOrderPage(filter, isDescending(sortDirection1), slot(after.getId()), 0, 0, size, totalMode);
+            }
+            Comparator<Integer> comparator = pageOrder(sortBy1, sortDirection1, sortBy2, sortDirection2);
+            IntPredicate isAfter = isAfter(after, sortBy1, sortDirection1, sortBy2, sortDirection2);
+
+            TopKSelector<Integer> selector = new TopKSelector<>(Math.max(size, 0) + 1, comparator);
+            int totalItems = 0;
+            for (int slot = columns.nextLive(0); slot >= 0; slot = columns.nextLive(slot + 1)) {
+                if (filter.test(slot)) {
+                    totalItems++;
+                    if (isAfter.test(slot)) {
+                        selector.offer(slot);
+                    }
+                }
+            }
+
+            scanned.add(productCount);
+            List<Product> paginateProducts = new ArrayList<>();
+            List<Integer> selected = selector.sorted();
+            for (int slot : selected.subList(0, Math.min(Math.max(size, 0), selected.size()))) {
+                paginateProducts.add(materialize(slot));
+            }
+
+            return new CustomPage<>(paginateProducts, 0, size, totalItems, TotalMode.EXACT, selected.size() > size, null);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Pages in plain slot order need no sorting, so the scan stops once the page and one
+    // more row are found. What is left of the total is then counted, counted up to a cap,
+    // extrapolated from the share of scanned products that matched, or skipped.
+    // Must be called holding the read lock
+    private CustomPage<Product> slotOrderPage(IntPredicate filter, boolean descending, int afterSlot, int start,
+                                              int page, int size, TotalMode totalMode) {
+        List<Product> paginateProducts = new ArrayList<>();
+        boolean hasNext = false;
+        int matched = 0;
+        int visited = 0;
+        int slot = afterSlot < 0
+            ? (descending ? columns.previousLive(columns.capacity() - 1) : columns.nextLive(0))
+            : nextSlot(afterSlot, descending);
+        for (; slot >= 0; slot = nextSlot(slot, descending)) {
+            visited++;
+            if (!filter.test(slot)) {
+                continue;
+            }
+            matched++;
+            if (matched > start) {
+                if (paginateProducts.size() >= size) {
+                    hasNext = true;
+                    break;
+                }
+                paginateProducts.add(materialize(slot));
+            }
+        }
+
+        scanned.add(visited);
+
+        // Slots after the last one scanned
+        int restFrom = descending ? 0 : slot + 1;
+        int restTo = descending ? slot : columns.capacity();
+        int totalItems;
+        TotalMode mode = totalMode;
+        if (afterSlot < 0 && !hasNext) {
+            totalItems = matched;
+            mode = TotalMode.EXACT;
+        } else if (totalMode == TotalMode.EXACT || totalMode == TotalMode.CAPPED) {
+            int cap = totalMode == TotalMode.EXACT ? Integer.MAX_VALUE : Math.max(TOTAL_CAP, start + size + 1);
+            totalItems = afterSlot < 0
+                ? matched + count(filter, restFrom, restTo, cap - matched)
+                : count(filter, 0, columns.capacity(), cap);
+            mode = totalItems < cap ? TotalMode.EXACT : TotalMode.CAPPED;
+        } else if (totalMode == TotalMode.ESTIMATED) {
+            double matchRate = (double) matched / Math.max(1, visited);
+            totalItems = afterSlot < 0
+                ? matched + (int) Math.round(matchRate * Math.max(0, productCount - visited))
+                : (int) Math.round(matchRate * productCount);
+            totalItems = Math.max(totalItems, paginateProducts.size());
+        } else {
+            totalItems = -1;
+        }
+
+        return new CustomPage<>(paginateProducts, page, size, totalItems, mode, hasNext, null);
+    }
+
+    // The live slot after (or before, descending) the slot, or -1
+    private int nextSlot(int slot, boolean descending) {
+        return descending ? (slot == 0 ? -1 : columns.previousLive(slot - 1)) : columns.nextLive(slot + 1);
+    }
+
+    private int count(IntPredicate filter, int from, int to, int limit) {
+        int count = 0;
+        int visited = 0;
+        for (int slot = columns.nextLive(from); slot >= 0 && slot < to && count < limit; slot = columns.nextLive(slot + 1)) {
+            visited++;
+            if (filter.test(slot)) {
+                count++;
+            }
+        }
+        scanned.add(visited);
+        return count;
+    }
+
+    private static boolean isSlotOrder(String sortBy) {
+        return sortBy == null || !SORT_KEYS.contains(sortBy);
+    }
+
+    private static boolean isDescending(String sortDirection) {
+        return "desc".equalsIgnoreCase(sortDirection);
+    }
+
+    // Reads the matches a chunk at a time under the read lock and releases it before handing
+    // them out, so a slow visitor never holds back writers
+    @Override
+    public void forEach(String nameFilter, List<String> categoryFilters, Boolean availabilityFilter, ProductRanges ranges,
+                        Predicate<Product> visitor) {
+        List<Product> chunk = new ArrayList<>(FOR_EACH_CHUNK);
+        IntPredicate filter = null;
+        // First slot not read yet
+        int next = 0;
+        while (true) {
+            lock.readLock().lock();
+            try {
+                if (filter == null) {
+                    filter = filter(nameFilter, categoryFilters, availabilityFilter, ranges);
+                }
+                for (int slot = columns.nextLive(next); slot >= 0 && chunk.size() < FOR_EACH_CHUNK; slot = columns.nextLive(slot + 1)) {
+                    next = slot + 1;
+                    if (filter.test(slot)) {
+                        chunk.add(materialize(slot));
+                    }
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            if (chunk.isEmpty()) {
+                return;
+            }
+            for (Product product : chunk) {
+                if (!visitor.test(product)) {
+                    return;
+                }
+            }
+            chunk.clear();
+        }
+    }
+
+    // Without indexes every live slot goes through the checks of the query. They are ordered
+    // from the one expected to reject the most slots, as estimated on a sample of the
+    // catalog, so most slots are turned down by the first check they meet. The name check
+    // decodes a string and always comes last.
+    // Must be called holding the read lock
+    private IntPredicate filter(String nameFilter, List<String> categoryFilters, Boolean availabilityFilter,
+                                ProductRanges ranges) {
+        String name = nameFilter == null ? null : nameFilter.toLowerCase();
+        List<IntPredicate> checks = new ArrayList<>();
+        if (categoryFilters != null && !categoryFilters.isEmpty()) {
+            BitSet wantedCodes = new BitSet();
+            for (String category : categoryFilters) {
+                int code = categories.codeOf(category);
+                if (code >= 0) {
+                    wantedCodes.set(code);
+                }
+            }
+            checks.add(slot -> {
+                int code = columns.categoryCode(slot);
+                return code >= 0 && wantedCodes.get(code);
+            });
+        }
+        if (availabilityFilter != null) {
+            checks.add(slot -> {
+                int stock = columns.stock(slot);
+                return stock != ProductColumns.NULL_INT && (availabilityFilter ? stock > 0 : stock == 0);
+            });
+        }
+        if (ranges.byPrice()) {
+            checks.add(slot -> ranges.matchesPrice(columns.unitPrice(slot)));
+        }
+        if (ranges.byStock()) {
+            int minStock = ranges.getMinStock() == null ? Integer.MIN_VALUE : ranges.getMinStock();
+            int maxStock = ranges.getMaxStock() == null ? Integer.MAX_VALUE : ranges.getMaxStock();
+            checks.add(slot -> {
+                int stock = columns.stock(slot);
+                return stock != ProductColumns.NULL_INT && stock >= minStock && stock <= maxStock;
+            });
+        }
+        if (ranges.byExpiration()) {
+            long fromDay = ranges.getExpiresFrom() == null ? Long.MIN_VALUE : ranges.getExpiresFrom().toEpochDay();
+            long toDay = ranges.getExpiresTo() == null ? Long.MAX_VALUE : ranges.getExpiresTo().toEpochDay();
+            checks.add(slot -> {
+                int day = columns.expirationDay(slot);
+                return day != ProductColumns.NULL_INT && day >= fromDay && day <= toDay;
+            });
+        }
+        if (checks.size() > 1) {
+            orderBySelectivity(checks);
+        }
+
+        IntPredicate[] ordered = checks.toArray(new IntPredicate[0]);
+        return slot -> {
+            if (!columns.isLive(slot)) {
+                return false;
+            }
+            for (IntPredicate check : ordered) {
+                if (!check.test(slot)) {
+                    return false;
+                }
+            }
+            if (name != null) {
+                String productName = columns.name(slot);
+                return productName != null && productName.toLowerCase().contains(name);
+            }
+            return true;
+        };
+    }
+
+    // Sorts the checks by the share of sampled live slots they accept, lowest first
+    private void orderBySelectivity(List<IntPredicate> checks) {
+        int capacity = columns.capacity();
+        if (capacity <= PLANNER_SAMPLE) {
+            return;
+        }
+        Map<IntPredicate, Integer> accepted = new IdentityHashMap<>();
+        checks.forEach(check -> accepted.put(check, 0));
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int sampled = 0;
+        for (int attempt = 0; attempt < 2 * PLANNER_SAMPLE && sampled < PLANNER_SAMPLE; attempt++) {
+            int slot = random.nextInt(capacity);
+            if (!columns.isLive(slot)) {
+                continue;
+            }
+            sampled++;
+            for (IntPredicate check : checks) {
+                if (check.test(slot)) {
+                    accepted.merge(check, 1, Integer::sum);
+                }
+            }
+        }
+        checks.sort(Comparator.comparingInt(accepted::get));
+    }
+
+    // Order of a page: the sort fields, then ascending id
+    private Comparator<Integer> pageOrder(String sortBy1, String sortDirection1, String sortBy2, String sortDirection2) {
+        Comparator<Integer> comparator = getSlotComparator(sortBy1, sortDirection1);
+        if (sortBy2 != null && !sortBy2.isEmpty()) {
+            comparator = comparator.thenComparing(getSlotComparator(sortBy2, sortDirection2));
+        }
+        return comparator.thenComparingInt(slot -> slot);
+    }
+
+    // Same order as the sorted views of InMemoryProductRepository: missing values last
+    // and a missing expiration date sorts as the latest date
+    private Comparator<Integer> getSlotComparator(String sortBy, String sortDirection) {
+        Comparator<Integer> comparator;
+        switch (sortBy == null ? "" : sortBy) {
+            case "name":
+                comparator = Comparator.comparing(columns::name, Comparator.nullsLast(Comparator.naturalOrder()));
+                break;
+            case "category":
+                comparator = Comparator.comparing(slot -> categories.valueOf(columns.categoryCode(slot)),
+                    Comparator.nullsLast(Comparator.naturalOrder()));
+                break;
+            case "unitPrice":
+                comparator = Comparator.comparingDouble(columns::unitPrice);
+                break;
+            case "inStock":
+                comparator = Comparator.comparingLong(slot -> columns.stock(slot) == ProductColumns.NULL_INT ? Long.MAX_VALUE : columns.stock(slot));
+                break;
+            case "expirationDate":
+                comparator = Comparator.comparingInt(slot -> columns.expirationDay(slot) == ProductColumns.NULL_INT ? Integer.MAX_VALUE : columns.expirationDay(slot));
+                break;
+            default:
+                comparator = Comparator.comparingInt(slot -> slot);
+                break;
+        }
+        return "desc".equalsIgnoreCase(sortDirection) ? comparator.reversed() : comparator;
+    }
+
+    // Whether a slot comes after the product in the order of pageOrder. Keys are compared
+    // the same way as getSlotComparator does
+    private IntPredicate isAfter(Product after, String sortBy1, String sortDirection1, String sortBy2, String sortDirection2) {
+        Comparable<?> key1 = productKey(after, sortBy1);
+        Comparable<?> key2 = productKey(after, sortBy2);
+        int sign1 = "desc".equalsIgnoreCase(sortDirection1) ? -1 : 1;
+        int sign2 = "desc".equalsIgnoreCase(sortDirection2) ? -1 : 1;
+        boolean twoKeys = sortBy2 != null && !sortBy2.isEmpty();
+        int afterSlot = slot(after.getId());
+        return slot -> {
+            int byKey = sign1 * compareKeys(slotKey(slot, sortBy1), key1);
+            if (byKey == 0 && twoKeys) {
+                byKey = sign2 * compareKeys(slotKey(slot, sortBy2), key2);
+            }
+            return byKey != 0 ? byKey > 0 : slot > afterSlot;
+        };
+    }
+
+    private Comparable<?> slotKey(int slot, String sortBy) {
+        switch (sortBy == null ? "" : sortBy) {
+            case "name":
+                return columns.name(slot);
+            case "category":
+                return categories.valueOf(columns.categoryCode(slot));
+            case "unitPrice":
+                return columns.unitPrice(slot);
+            case "inStock":
+                return columns.stock(slot) == ProductColumns.NULL_INT ? Long.MAX_VALUE : columns.stock(slot);
+            case "expirationDate":
+                return columns.expirationDay(slot) == ProductColumns.NULL_INT ? Long.MAX_VALUE : columns.expirationDay(slot);
+            default:
+                return (long) slot;
+        }
+    }
+
+    // The key of a product, comparable with the key of a slot
+    private static Comparable<?> productKey(Product product, String sortBy) {
+        switch (sortBy == null ? "" : sortBy) {
+            case "name":
+                return product.getName();
+            case "category":
+                return product.getCategory();
+            case "unitPrice":
+                return product.getUnitPrice();
+            case "inStock":
+                return product.getInStock() == null ? Long.MAX_VALUE : product.getInStock().longValue();
+            case "expirationDate":
+                return product.getExpirationDate() == null ? Long.MAX_VALUE : product.getExpirationDate().toEpochDay();
+            default:
+                return product.getId();
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compareKeys(Comparable a, Comparable b) {
+        if (a == null || b == null) {
+            return a == b ? 0 : a == null ? 1 : -1;
+        }
+        return a.compareTo(b);
+    }
+
+    @Override
+    public List<Product> findExpiring(LocalDate from, LocalDate to, boolean latestFirst, int limit) {
+        if (!expirationIndexed) {
+            indexExpirations();
+        }
+        lock.readLock().lock();
+        try {
+            List<Product> products = new ArrayList<>();
+            if (limit <= 0) {
+                return products;
+            }
+            expirationIndex.forEachBetween(from, to, latestFirst, (day, slot) -> {
+                if (columns.isLive(slot) && columns.expirationDay(slot) == day.toEpochDay()) {
+                    products.add(materialize(slot));
+                }
+                return products.size() < limit;
+            });
+            return products;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void indexExpirations() {
+        lock.writeLock().lock();
+        try {
+            if (expirationIndexed) {
+                return;
+            }
+            for (int slot = columns.nextLive(0); slot >= 0; slot = columns.nextLive(slot + 1)) {
+                if (columns.expirationDay(slot) != ProductColumns.NULL_INT) {
+                    expirationIndex.add(slot, LocalDate.ofEpochDay(columns.expirationDay(slot)));
+                }
+            }
+            expirationIndexed = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<String> findAllCategories() {
+        return categories.categories();
+    }
+
+    @Override
+    public long version(String category) {
+        return versions.of(category);
+    }
+
+    @Override
+    public List<CategoryTotals> getCategoryTotals() {
+        return categoryTotals.snapshot();
+    }
+
+    @Override
+    public long countAllProducts() {
+        lock.readLock().lock();
+        try {
+            return productCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public long productsScanned() {
+        return scanned.sum();
+    }
+
+    @Override
+    public void deleteById(Long id) {
+        lock.writeLock().lock();
+        try {
+            if (!isLive(id)) {
+                return;
+            }
+            Product removed = materialize(slot(id));
+            columns.clear(slot(id));
+            productCount--;
+            expirationIndex.remove(slot(id), removed.getExpirationDate());
+            releaseCategory(removed.getCategory());
+            categoryTotals.remove(removed);
+            versions.changed(removed);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Product adjustStock(Long id, int delta, LocalDateTime updatedAt) {
+        lock.writeLock().lock();
+        try {
+            int slot = existingSlot(id);
+            int stock = columns.stock(slot);
+            int newStock = Math.addExact(stock == ProductColumns.NULL_INT ? 0 : stock, delta);
+            if (newStock < 0) {
+                throw new IllegalArgumentException("Stock can't go below zero for product with ID: " + id);
+            }
+
+            return replaceStock(slot, newStock, updatedAt);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean compareAndSetStock(Long id, Integer expectedStock, int newStock, LocalDateTime updatedAt) {
+        lock.writeLock().lock();
+        try {
+            int slot = existingSlot(id);
+            if (!Objects.equals(fromStock(columns.stock(slot)), expectedStock)) {
+                return false;
+            }
+            replaceStock(slot, newStock, updatedAt);
+
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Must be called holding the write lock
+    private Product replaceStock(int slot, int stock, LocalDateTime updatedAt) {
+        Product existingProduct = materialize(slot);
+        columns.writeStock(slot, stock, toEpochNanos(updatedAt));
+        Product updatedProduct = materialize(slot);
+        categoryTotals.update(existingProduct, updatedProduct);
+        versions.changed(existingProduct, updatedProduct);
+
+        return updatedProduct;
+    }
+
+    private void write(int slot, Product product, LocalDateTime createdAt, int categoryCode, int expirationDay) {
+        columns.write(slot,
+            product.getName(),
+            categoryCode,
+            product.getUnitPrice(),
+            product.getInStock() == null ? ProductColumns.NULL_INT : product.getInStock(),
+            expirationDay,
+            toEpochNanos(createdAt),
+            toEpochNanos(product.getUpdatedAt()));
+    }
+
+    private Product materialize(int slot) {
+        Product product = new Product();
+        product.setId((long) slot);
+        product.setName(columns.name(slot));
+        product.setCategory(categories.valueOf(columns.categoryCode(slot)));
+        product.setUnitPrice(columns.unitPrice(slot));
+        product.setInStock(fromStock(columns.stock(slot)));
+        int expirationDay = columns.expirationDay(slot);
+        product.setExpirationDate(expirationDay == ProductColumns.NULL_INT ? null : LocalDate.ofEpochDay(expirationDay));
+        product.setCreatedAt(fromEpochNanos(columns.createdAt(slot)));
+        product.setUpdatedAt(fromEpochNanos(columns.updatedAt(slot)));
+        return product;
+    }
+
+    private int acquireCategory(String category) {
+        return category == null ? -1 : categories.acquire(category);
+    }
+
+    private void releaseCategory(String category) {
+        if (category != null) {
+            categories.release(category);
+        }
+    }
+
+    private boolean isLive(Long id) {
+        return id != null && id > 0 && id < idCounter && columns.isLive(slot(id));
+    }
+
+    private int existingSlot(Long id) {
+        if (!isLive(id)) {
+            throw new ProductNotFoundException(id);
+        }
+        return slot(id);
+    }
+
+    private static Integer fromStock(int stock) {
+        return stock == ProductColumns.NULL_INT ? null : stock;
+    }
+
+    private static int toEpochDay(LocalDate date) {
+        if (date == null) {
+            return ProductColumns.NULL_INT;
+        }
+        long day = date.toEpochDay();
+        if (day == ProductColumns.NULL_INT || day != (int) day) {
+            throw new IllegalArgumentException("Expiration date out of range: " + date);
+        }
+        return (int) day;
+    }
+
+    private static long toEpochNanos(LocalDateTime dateTime) {
+        if (dateTime == null) {
+            return ProductColumns.NULL_LONG;
+        }
+        return dateTime.toEpochSecond(ZoneOffset.UTC) * 1_000_000_000L + dateTime.getNano();
+    }
+
+    private static LocalDateTime fromEpochNanos(long nanos) {
+        if (nanos == ProductColumns.NULL_LONG) {
+            return null;
+        }
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(nanos, 1_000_000_000L), (int) Math.floorMod(nanos, 1_000_000_000L), ZoneOffset.UTC);
+    }
+
+    // Ids are handed out sequentially by idCounter, so they are used as column slots
+    private static int slot(long id) {
+        return Math.toIntExact(id);
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.repositories;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+// ProductColumns backed by plain Java arrays that grow with the highest id
+public class HeapProductColumns implements ProductColumns {
+    private final BitSet live = new BitSet();
+    private String[] names = new String[1024];
+    private int[] categoryCodes = new int[1024];
+    private double[] unitPrices = new double[1024];
+    private int[] stocks = new int[1024];
+    private int[] expirationDays = new int[1024];
+    private long[] createdAt = new long[1024];
+    private long[] updatedAt = new long[1024];
+
+    @Override
+    public int capacity() {
+        return live.length();
+    }
+
+    @Override
+    public boolean isLive(int slot) {
+        return live.get(slot);
+    }
+
+    @Override
+    public int nextLive(int slot) {
+        return live.nextSetBit(slot);
+    }
+
+    @Override
+    public int previousLive(int slot) {
+        return live.previousSetBit(slot);
+    }
+
+    @Override
+    public void write(int slot, String name, int categoryCode, double unitPrice, int stock, int expirationDay,
+                      long createdAt, long updatedAt) {
+        ensureCapacity(slot);
+        this.names[slot] = name;
+        this.categoryCodes[slot] = categoryCode;
+        this.unitPrices[slot] = unitPrice;
+        this.stocks[slot] = stock;
+        this.expirationDays[slot] = expirationDay;
+        this.createdAt[slot] = createdAt;
+        this.updatedAt[slot] = updatedAt;
+        live.set(slot);
+    }
+
+    @Override
+    public void writeStock(int slot, int stock, long updatedAt) {
+        this.stocks[slot] = stock;
+        this.updatedAt[slot] = updatedAt;
+    }
+
+    @Override
+    public void clear(int slot) {
+        live.clear(slot);
+        names[slot] = null;
+    }
+
+    @Override
+    public String name(int slot) { return names[slot]; }
+    @Override
+    public int categoryCode(int slot) { return categoryCodes[slot]; }
+    @Override
+    public double unitPrice(int slot) { return unitPrices[slot]; }
+    @Override
+    public int stock(int slot) { return stocks[slot]; }
+    @Override
+    public int expirationDay(int slot) { return expirationDays[slot]; }
+    @Override
+    public long createdAt(int slot) { return createdAt[slot]; }
+    @Override
+    public long updatedAt(int slot) { return updatedAt[slot]; }
+
+    private void ensureCapacity(int slot) {
+        if (slot < names.length) {
+            return;
+        }
+        int length = Math.max(slot + 1, names.length + (names.length >> 1));
+        names = Arrays.copyOf(names, length);
+        categoryCodes = Arrays.copyOf(categoryCodes, length);
+        unitPrices = Arrays.copyOf(unitPrices, length);
+        stocks = Arrays.copyOf(stocks, length);
+        expirationDays = Arrays.copyOf(expirationDays, length);
+        createdAt = Arrays.copyOf(createdAt, length);
+        updatedAt = Arrays.copyOf(updatedAt, length);
+    }
+}
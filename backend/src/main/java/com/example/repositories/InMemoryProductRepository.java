@@ -2,115 +2,683 @@ package com.example.repositories;
 
 import com.example.models.Product;
 import com.example.models.CustomPage;
+import com.example.models.CategoryTotals;
+import com.example.models.ProductRanges;
+import com.example.models.TotalMode;
+import com.example.repositories.index.CategoryDictionary;
+import com.example.repositories.index.CategoryIndex;
+import com.example.repositories.index.CategoryTotalsIndex;
+import com.example.repositories.index.ConcurrentBitSet;
+import com.example.repositories.index.ExpirationIndex;
+import com.example.repositories.index.NameIndex;
+import com.example.repositories.index.SortedView;
+import com.example.repositories.index.StockIndex;
 
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Comparator;
 
+// Stored products are never handed out directly, callers always receive copies
+// so the secondary indexes can't get out of sync with the data.
+//
+// Every write replaces the stored product with a new version instead of changing it,
+// and writes to the same product are serialized by a striped lock. Readers take no
+// lock: each product they see is a complete version, and the indexes are only used to
+// find candidates that are checked again against the version read from db
 @Repository
+@ConditionalOnProperty(name = "inventory.repository.type", havingValue = "in-memory", matchIfMissing = true)
 public class InMemoryProductRepository implements ProductRepository {
-    private final Map<Long, Product> db = new HashMap<>();
-    private long idCounter = 1;
+    private static final int LOCK_STRIPES = 64;
+    // Where counting stops with TotalMode.CAPPED, unless the page itself goes further
+    private static final int TOTAL_CAP = 1000;
+    // Products sampled to estimate how many products a range filter keeps
+    private static final int PLANNER_SAMPLE = 64;
+
+    private final ConcurrentMap<Long, Product> db = new ConcurrentHashMap<>();
+    private final ConcurrentBitSet ids = new ConcurrentBitSet();
+    private final CategoryDictionary categories = new CategoryDictionary();
+    private final CategoryIndex categoryIndex = new CategoryIndex();
+    private final StockIndex stockIndex = new StockIndex();
+    private final ExpirationIndex expirationIndex = new ExpirationIndex();
+    private final NameIndex nameIndex = new NameIndex();
+    private final CategoryTotalsIndex categoryTotals = new CategoryTotalsIndex();
+    private final CatalogVersions versions = new CatalogVersions();
+    private final Map<String, SortedView<?>> sortedViews = new HashMap<>();
+    private final SortedView<Double> priceView = new SortedView<>(Product::getUnitPrice);
+    private final SortedView<Integer> stockView = new SortedView<>(Product::getInStock);
+    // ReentrantLocks rather than monitors, a virtual thread waiting for one (or writing the
+    // journal while holding it) doesn't pin its carrier thread
+    private final Lock[] locks = new Lock[LOCK_STRIPES];
+    private final AtomicLong idCounter = new AtomicLong(1);
+    private final LongAdder scanned = new LongAdder();
+    private volatile ProductJournal journal = ProductJournal.NONE;
+
+    public InMemoryProductRepository() {
+        sortedViews.put("name", new SortedView<>(Product::getName));
+        sortedViews.put("category", new SortedView<>(Product::getCategory));
+        sortedViews.put("unitPrice", priceView);
+        sortedViews.put("inStock", stockView);
+        sortedViews.put("expirationDate", new SortedView<>(p -> p.getExpirationDate() == null ? LocalDate.MAX : p.getExpirationDate()));
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    // Changes are written to the journal before they are applied
+    public void setJournal(ProductJournal journal) {
+        this.journal = journal == null ? ProductJournal.NONE : journal;
+    }
 
     @Override
     public Product save(Product product) {
-       if (product.getId() == null || product.getId() <= 0) {
-            product.setId(idCounter++);
+        ProductJournal journal = this.journal;
+        long[] position = new long[1];
+        Product savedProduct = save(product, journal, position);
+        journal.awaitDurable(position[0]);
+
+        return savedProduct;
+    }
+
+    // Waits once for the whole batch to be durable instead of once per product. A batch of
+    // new products (an import) is also logged in one write and indexed as a whole
+    @Override
+    public List<Product> saveAll(List<Product> products) {
+        if (products.stream().allMatch(product -> product.getId() == null || product.getId() <= 0)) {
+            return createAll(products);
+        }
+        return saveEach(products);
+    }
+
+    private List<Product> saveEach(List<Product> products) {
+        ProductJournal journal = this.journal;
+        long[] position = new long[1];
+        long lastPosition = 0;
+        List<Product> savedProducts = new ArrayList<>(products.size());
+        try {
+            for (Product product : products) {
+                try {
+                    savedProducts.add(save(product, journal, position));
+                } catch (RuntimeException e) {
+                    throw new PartialSaveException(savedProducts, e);
+                }
+                lastPosition = Math.max(lastPosition, position[0]);
+            }
+        } finally {
+            journal.awaitDurable(lastPosition);
+        }
+
+        return savedProducts;
+    }
+
+    // The products are checked up front, the ones before the first invalid product are
+    // created. They are logged and stored while every product lock is held, like a
+    // checkpoint, so a snapshot never falls between the log and the catalog. That keeps
+    // other writers waiting for one batch, in exchange the indexes are updated per batch
+    // (one update per category, the sorted views in parallel) rather than per product
+    private List<Product> createAll(List<Product> products) {
+        List<Product> created = new ArrayList<>(products.size());
+        RuntimeException invalid = null;
+        for (Product product : products) {
+            try {
+                ProductRepository.checkPrice(product);
+            } catch (RuntimeException e) {
+                invalid = e;
+                break;
+            }
+            created.add(new Product(product));
+        }
+        if (!created.isEmpty()) {
+            ProductJournal journal = this.journal;
+            long firstId = idCounter.getAndAdd(created.size());
+            for (int i = 0; i < created.size(); i++) {
+                created.get(i).setId(firstId + i);
+            }
+            long[] position = new long[1];
+            boolean[] logged = new boolean[1];
+            checkpoint(() -> {
+                try {
+                    position[0] = journal.putAll(created);
+                } catch (RuntimeException e) {
+                    return;
+                }
+                logged[0] = true;
+                storeAll(created);
+            });
+            if (!logged[0]) {
+                // Nothing was stored, the products are saved one by one to find the one
+                // the journal refuses
+                return saveEach(products);
+            }
+            journal.awaitDurable(position[0]);
+        }
+
+        List<Product> savedProducts = new ArrayList<>(created.size());
+        for (Product product : created) {
+            savedProducts.add(new Product(product));
+        }
+        if (invalid != null) {
+            throw new PartialSaveException(savedProducts, invalid);
+        }
+        return savedProducts;
+    }
+
+    // Must be called holding every product lock. The ids are published after the sorted
+    // views and the versions last, in the same order as index()
+    private void storeAll(List<Product> products) {
+        for (Product product : products) {
+            product.setCategory(internCategory(product.getCategory()));
             db.put(product.getId(), product);
+        }
+        for (Product product : products) {
+            int id = slot(product.getId());
+            categoryIndex.add(id, categories.codeOf(product.getCategory()));
+            nameIndex.add(id, product.getName());
+            stockIndex.add(id, product.getInStock());
+            expirationIndex.add(id, product.getExpirationDate());
+        }
+        categoryTotals.addAll(products);
+        sortedViews.values().parallelStream().forEach(view -> view.addAll(products));
+        for (Product product : products) {
+            ids.set(slot(product.getId()));
+        }
+        versions.changed(products);
+    }
 
-            return product;
-        } else {
-            Product existingProduct = db.get(product.getId());
-            if (existingProduct == null) {
-                throw new RuntimeException("Product not found with ID: " + product.getId());
+    // Applies the save and stores its journal position in position[0], the caller waits for it
+    private Product save(Product product, ProductJournal journal, long[] position) {
+        ProductRepository.checkPrice(product);
+       if (product.getId() == null || product.getId() <= 0) {
+            Product newProduct = new Product(product);
+            newProduct.setId(idCounter.getAndIncrement());
+            Lock lock = lockFor(newProduct.getId());
+            lock.lock();
+            try {
+                position[0] = journal.put(newProduct);
+                newProduct.setCategory(internCategory(newProduct.getCategory()));
+                db.put(newProduct.getId(), newProduct);
+                index(newProduct);
+            } finally {
+                lock.unlock();
             }
-            existingProduct.setName(product.getName());
-            existingProduct.setCategory(product.getCategory());
-            existingProduct.setUnitPrice(product.getUnitPrice());
-            existingProduct.setExpirationDate(product.getExpirationDate());
-            existingProduct.setInStock(product.getInStock());
-            existingProduct.setUpdatedAt(product.getUpdatedAt());
 
-            db.replace(existingProduct.getId(), existingProduct);
+            return new Product(newProduct);
+        } else {
+            Product updatedProduct;
+            Lock lock = lockFor(product.getId());
+            lock.lock();
+            try {
+                Product existingProduct = getExisting(product.getId());
+                updatedProduct = new Product(existingProduct);
+                boolean categoryChanged = !Objects.equals(existingProduct.getCategory(), product.getCategory());
+                updatedProduct.setName(product.getName());
+                updatedProduct.setCategory(product.getCategory());
+                updatedProduct.setUnitPrice(product.getUnitPrice());
+                updatedProduct.setExpirationDate(product.getExpirationDate());
+                updatedProduct.setInStock(product.getInStock());
+                updatedProduct.setUpdatedAt(product.getUpdatedAt());
+
+                position[0] = journal.put(updatedProduct);
+                updatedProduct.setCategory(categoryChanged ? internCategory(product.getCategory()) : existingProduct.getCategory());
+                db.put(updatedProduct.getId(), updatedProduct);
+                reindex(existingProduct, updatedProduct);
+                if (categoryChanged) {
+                    releaseCategory(existingProduct.getCategory());
+                }
+            } finally {
+                lock.unlock();
+            }
 
-            return existingProduct;
+            return new Product(updatedProduct);
         }
     }
 
     @Override
     public List<Product> findAll() {
-        return new ArrayList<>(db.values());
+        return db.values().stream()
+            .map(Product::new)
+            .collect(Collectors.toList());
+    }
+
+    // Live view of the stored versions, for snapshots. A write replaces the stored product
+    // instead of changing it, so they are read without a copy and must not be changed
+    public Collection<Product> storedProducts() {
+        return Collections.unmodifiableCollection(db.values());
     }
 
     @Override
     public CustomPage<Product> getProducts(String nameFilter, List<String> categoryFilters, Boolean availabilityFilter,
-                                           String sortBy1, String sortDirection1, String sortBy2, String sortDirection2, 
-                                           int page, int size) {
-        List<Product> filteredProducts = db.values().stream()
-            .filter(p -> nameFilter == null || p.getName().toLowerCase().contains(nameFilter.toLowerCase()))
-            .filter(p -> categoryFilters == null || categoryFilters.isEmpty() || categoryFilters.contains(p.getCategory()))
-            .filter(p -> availabilityFilter == null || (availabilityFilter && p.getInStock() > 0) || (!availabilityFilter && p.getInStock() == 0))
-            .collect(Collectors.toList());
+                                           ProductRanges ranges, String sortBy1, String sortDirection1, String sortBy2,
+                                           String sortDirection2, int page, int size, TotalMode totalMode) {
+        String name = nameFilter == null ? null : nameFilter.toLowerCase();
+        boolean[] exact = new boolean[1];
+        BitSet candidates = candidates(name, categoryFilters, availabilityFilter, ranges, exact);
+        if (candidates.isEmpty()) {
+            return emptyPage(page, size);
+        }
+        Predicate<Product> filter = filter(name, categoryFilters, availabilityFilter, ranges);
 
-        Comparator<Product> comparator = getProductComparator(sortBy1, sortDirection1);
-        if(sortBy2 != null && !sortBy2.isEmpty()) {
-            comparator = comparator.thenComparing(getProductComparator(sortBy2, sortDirection2));
+        int start = page * size;
+        boolean singleSort = sortBy2 == null || sortBy2.isEmpty();
+
+        if (singleSort && size > 0 && shouldWalkView(sortBy1, candidates.cardinality(), start + size)) {
+            int[] walked = new int[2];
+            List<Product> paginateProducts = walkPage(candidates, filter, sortBy1, isDescending(sortDirection1), null, start, size + 1, walked);
+
+            return walkedPage(paginateProducts, page, size, start, true, exact[0], candidates, filter, walked, totalMode);
         }
 
-        filteredProducts.sort(comparator);
+        Comparator<Product> comparator = pageOrder(sortBy1, sortDirection1, sortBy2, sortDirection2);
 
-        int totalItems = filteredProducts.size();
-        int start = page * size;
-        int end = Math.min(start + size, totalItems);
+        // Shallow pages only need the best start + size products, deep ones are cheaper to sort
+        long wanted = (long) start + size;
+        List<Product> filteredProducts = new ArrayList<>();
+        TopKSelector<Product> selector = wanted * 2 <= candidates.cardinality()
+            ? new TopKSelector<>((int) wanted, comparator)
+            : null;
+        int totalItems = 0;
+        for (int id = candidates.nextSetBit(0); id >= 0; id = candidates.nextSetBit(id + 1)) {
+            Product p = db.get((long) id);
+            if (p != null && filter.test(p)) {
+                totalItems++;
+                if (selector != null) {
+                    selector.offer(p);
+                } else {
+                    filteredProducts.add(p);
+                }
+            }
+        }
+
+        scanned.add(candidates.cardinality());
+
+        if (selector != null) {
+            filteredProducts = selector.sorted();
+        } else {
+            filteredProducts.sort(comparator);
+        }
 
-        List<Product> paginateProducts = filteredProducts.subList(start, end);
+        int end = Math.min(start + size, filteredProducts.size());
 
+        List<Product> paginateProducts = filteredProducts.subList(Math.min(start, end), end).stream()
+            .map(Product::new)
+            .collect(Collectors.toList());
+
+        // Every match was visited, so the exact total came for free
         return new CustomPage<>(paginateProducts, page, size, totalItems);
     }
 
-    private Comparator<Product> getProductComparator(String sortBy, String sortDirection) {
-        Comparator<Product> comparator;
-        if (sortBy == null) {
-            comparator = Comparator.comparing(Product::getId);
+    // Seeks past the cursor instead of skipping start products: a walk of a sorted view
+    // starts at the cursor, anything else keeps only the best size products after it.
+    // Products inserted or deleted before the cursor don't move the next page
+    @Override
+    public CustomPage<Product> getProductsAfter(String nameFilter, List<String> categoryFilters, Boolean availabilityFilter,
+                                                ProductRanges ranges, String sortBy1, String sortDirection1, String sortBy2,
+                                                String sortDirection2, Product after, int size, TotalMode totalMode) {
+        String name = nameFilter == null ? null : nameFilter.toLowerCase();
+        boolean[] exact = new boolean[1];
+        BitSet candidates = candidates(name, categoryFilters, availabilityFilter, ranges, exact);
+        if (candidates.isEmpty()) {
+            return emptyPage(0, size);
+        }
+        Predicate<Product> filter = filter(name, categoryFilters, availabilityFilter, ranges);
+        boolean singleSort = sortBy2 == null || sortBy2.isEmpty();
+
+        if (size > 0 && singleSort && shouldWalkView(sortBy1, candidates.cardinality(), size)) {
+            int[] walked = new int[2];
+            List<Product> paginateProducts = walkPage(candidates, filter, sortBy1, isDescending(sortDirection1), after, 0, size + 1, walked);
+
+            return walkedPage(paginateProducts, 0, size, 0, false, exact[0], candidates, filter, walked, totalMode);
+        }
+
+        Comparator<Product> comparator = pageOrder(sortBy1, sortDirection1, sortBy2, sortDirection2);
+        TopKSelector<Product> selector = new TopKSelector<>(Math.max(size, 0) + 1, comparator);
+        int totalItems = 0;
+        for (int id = candidates.nextSetBit(0); id >= 0; id = candidates.nextSetBit(id + 1)) {
+            Product p = db.get((long) id);
+            if (p != null && filter.test(p)) {
+                totalItems++;
+                if (comparator.compare(p, after) > 0) {
+                    selector.offer(p);
+                }
+            }
+        }
+        scanned.add(candidates.cardinality());
+        List<Product> selected = selector.sorted();
+        boolean hasNext = selected.size() > size;
+        List<Product> paginateProducts = selected.subList(0, Math.min(Math.max(size, 0), selected.size())).stream()
+            .map(Product::new)
+            .collect(Collectors.toList());
+
+        return new CustomPage<>(paginateProducts, 0, size, totalItems, TotalMode.EXACT, hasNext, null);
+    }
+
+    // Nothing can match, e.g. an unknown category, so no view is walked
+    private static CustomPage<Product> emptyPage(int page, int size) {
+        return new CustomPage<>(new ArrayList<>(), page, size, 0, TotalMode.EXACT, false, null);
+    }
+
+    // Builds a page read by walkPage with one row more than the page size, the extra row
+    // only tells whether a next page exists. The candidates are exact unless a name or range
+    // filter has to be checked on the products, and only then counting the total costs a pass
+    // over every candidate, which the total mode lets the client skip. walked holds the
+    // candidates the walk looked at and how many of them matched, which is every match
+    // when a walk from the first product ran out
+    private CustomPage<Product> walkedPage(List<Product> walkedProducts, int page, int size, int start, boolean fromFirst,
+                                           boolean exact, BitSet candidates, Predicate<Product> filter, int[] walked,
+                                           TotalMode totalMode) {
+        boolean hasNext = walkedProducts.size() > size;
+        List<Product> paginateProducts = hasNext ? walkedProducts.subList(0, size) : walkedProducts;
+        int seen = walked[1];
+        scanned.add(walked[0]);
+
+        int totalItems;
+        TotalMode mode = totalMode;
+        if (exact) {
+            totalItems = candidates.cardinality();
+            mode = TotalMode.EXACT;
+        } else if (fromFirst && !hasNext) {
+            totalItems = seen;
+            mode = TotalMode.EXACT;
+        } else if (totalMode == TotalMode.CAPPED) {
+            int cap = Math.max(TOTAL_CAP, start + size + 1);
+            totalItems = count(candidates, filter, cap);
+            mode = totalItems < cap ? TotalMode.EXACT : TotalMode.CAPPED;
+        } else if (totalMode == TotalMode.ESTIMATED) {
+            // The share of the walked candidates that matched, applied to all of them
+            double matchRate = walked[0] == 0 ? 1 : (double) walked[1] / walked[0];
+            totalItems = Math.max(seen, (int) Math.round(candidates.cardinality() * matchRate));
+        } else if (totalMode == TotalMode.NONE) {
+            totalItems = -1;
         } else {
-            switch(sortBy) {
-                case "name":
-                    comparator = Comparator.comparing(Product::getName);
-                    break;
-                case "category":
-                    comparator = Comparator.comparing(Product::getCategory);
-                    break;
-                case "unitPrice":
-                    comparator = Comparator.comparing(Product::getUnitPrice);
-                    break;
-                case "inStock":
-                    comparator = Comparator.comparing(Product::getInStock);
-                    break;
-                case "expirationDate":
-                    comparator = Comparator.comparing(p -> p.getExpirationDate() == null ? LocalDate.MAX : p.getExpirationDate());
-                    break;
-                default:
-                    comparator = Comparator.comparing(Product::getId);
+            totalItems = count(candidates, filter, Integer.MAX_VALUE);
+        }
+
+        return new CustomPage<>(paginateProducts, page, size, totalItems, mode, hasNext, null);
+    }
+
+    // Streams the matching products in id order. Only the candidate bitset is built up front,
+    // each product is copied right before it is handed to the visitor
+    @Override
+    public void forEach(String nameFilter, List<String> categoryFilters, Boolean availabilityFilter, ProductRanges ranges,
+                        Predicate<Product> visitor) {
+        String name = nameFilter == null ? null : nameFilter.toLowerCase();
+        BitSet candidates = candidates(name, categoryFilters, availabilityFilter, ranges, new boolean[1]);
+        Predicate<Product> filter = filter(name, categoryFilters, availabilityFilter, ranges);
+        for (int id = candidates.nextSetBit(0); id >= 0; id = candidates.nextSetBit(id + 1)) {
+            Product p = db.get((long) id);
+            if (p != null && filter.test(p) && !visitor.test(new Product(p))) {
+                return;
+            }
+        }
+    }
+
+    // Ids that may match the filters, from the indexes. exact[0] tells whether every
+    // candidate matches, short of a concurrent write
+    private BitSet candidates(String name, List<String> categoryFilters, Boolean availabilityFilter, ProductRanges ranges,
+                              boolean[] exact) {
+        BitSet candidates = ids.snapshot();
+        if (categoryFilters != null && !categoryFilters.isEmpty()) {
+            candidates.and(categoryIndex.anyOf(categoryFilters.stream().mapToInt(categories::codeOf).toArray()));
+        }
+        if (availabilityFilter != null) {
+            candidates.and(stockIndex.matching(availabilityFilter).snapshot());
+        }
+        BitSet nameCandidates = name == null ? null : nameIndex.candidates(name);
+        if (nameCandidates != null) {
+            candidates.and(nameCandidates);
+        }
+        boolean rangesLookedUp = ranges.isEmpty() || narrowByRanges(candidates, ranges);
+        exact[0] = (name == null || nameIndex.isExact(name)) && rangesLookedUp;
+        return candidates;
+    }
+
+    // The bitset indexes above cost the same whatever they match, a range costs a walk over
+    // the entries of its sorted view (or days of the expiration index) it covers. So the
+    // ranges are taken from the most to the least selective, as estimated on a sample of
+    // the catalog, and each one is only looked up while it is expected to cover less than
+    // half the candidates left: walking an entry costs about as much as checking a
+    // candidate, so a broader range saves fewer checks than its walk costs and is left to
+    // the filter. Returns whether every range was looked up
+    private boolean narrowByRanges(BitSet candidates, ProductRanges ranges) {
+        int remaining = candidates.cardinality();
+        if (remaining <= PLANNER_SAMPLE) {
+            return false;
+        }
+        List<RangeLookup> lookups = new ArrayList<>(3);
+        if (ranges.byPrice()) {
+            lookups.add(new RangeLookup(p -> ranges.matchesPrice(p.getUnitPrice()),
+                (into, limit) -> priceView.collect(ranges.getMinPrice(), ranges.getMaxPrice(), into, limit)));
+        }
+        if (ranges.byStock()) {
+            lookups.add(new RangeLookup(p -> ranges.matchesStock(p.getInStock()),
+                (into, limit) -> stockView.collect(ranges.getMinStock(), ranges.getMaxStock(), into, limit)));
+        }
+        if (ranges.byExpiration()) {
+            lookups.add(new RangeLookup(p -> ranges.matchesExpiration(p.getExpirationDate()), (into, limit) -> {
+                into.or(expirationIndex.between(ranges.getExpiresFrom(), ranges.getExpiresTo()));
+                return true;
+            }));
+        }
+
+        List<Product> sample = sample();
+        for (RangeLookup lookup : lookups) {
+            long matches = sample.stream().filter(lookup.range).count();
+            lookup.estimate = sample.isEmpty() ? db.size() : (double) matches / sample.size() * db.size();
+        }
+        lookups.sort(Comparator.comparingDouble(lookup -> lookup.estimate));
+
+        boolean allLookedUp = true;
+        for (RangeLookup lookup : lookups) {
+            if (lookup.estimate * 2 >= remaining) {
+                allLookedUp = false;
+                continue;
+            }
+            // An estimate far off stops the walk once it covers twice the candidates left
+            BitSet matching = new BitSet();
+            if (lookup.index.collect(matching, 2 * remaining)) {
+                candidates.and(matching);
+                remaining = candidates.cardinality();
+            } else {
+                allLookedUp = false;
+            }
+        }
+        return allLookedUp;
+    }
+
+    // Random products of the catalog, ids are dense enough that few lookups miss
+    private List<Product> sample() {
+        long bound = idCounter.get();
+        List<Product> sample = new ArrayList<>(PLANNER_SAMPLE);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int attempt = 0; bound > 1 && attempt < 2 * PLANNER_SAMPLE && sample.size() < PLANNER_SAMPLE; attempt++) {
+            Product p = db.get(random.nextLong(1, bound));
+            if (p != null) {
+                sample.add(p);
+            }
+        }
+        return sample;
+    }
+
+    private static final class RangeLookup {
+        private final Predicate<Product> range;
+        private final RangeIndex index;
+        private double estimate;
+
+        private RangeLookup(Predicate<Product> range, RangeIndex index) {
+            this.range = range;
+            this.index = index;
+        }
+    }
+
+    // Sets the ids in the range, giving up and returning false past limit entries
+    private interface RangeIndex {
+        boolean collect(BitSet into, int limit);
+    }
+
+    // The indexes may lag behind a concurrent write, so every candidate is checked
+    // again against the version it resolves to
+    private Predicate<Product> filter(String name, List<String> categoryFilters, Boolean availabilityFilter,
+                                      ProductRanges ranges) {
+        boolean byCategory = categoryFilters != null && !categoryFilters.isEmpty();
+        return p -> matchesName(p, name)
+            && (!byCategory || categoryFilters.contains(p.getCategory()))
+            && (availabilityFilter == null || matchesAvailability(p, availabilityFilter))
+            && ranges.matches(p);
+    }
+
+    // Walking a view visits about (start + size) * catalog / candidates entries,
+    // it is only worth it while that stays below the cost of sorting the candidates
+    private boolean shouldWalkView(String sortBy, int candidateCount, int wanted) {
+        if (!sortedViews.containsKey(sortBy)) {
+            return true;
+        }
+        double walkCost = (double) wanted * db.size() / candidateCount;
+        double sortCost = candidateCount * (Math.log(candidateCount) / Math.log(2) + 1);
+        return walkCost <= sortCost;
+    }
+
+    // Reads a page from a sorted view (or the candidates in id order), starting right after
+    // the given product when there is one
+    private List<Product> walkPage(BitSet candidates, Predicate<Product> filter, String sortBy, boolean descending,
+                                   Product after, int start, int size, int[] walked) {
+        List<Product> pageProducts = new ArrayList<>(Math.min(size, candidates.cardinality()));
+        int[] matches = {0};
+        // A product moved by a concurrent update can be met again further down the view
+        BitSet visited = new BitSet();
+        Predicate<Product> visitor = p -> {
+            int id = slot(p.getId());
+            if (!candidates.get(id) || visited.get(id)) {
+                return true;
+            }
+            visited.set(id);
+            walked[0]++;
+            if (!filter.test(p)) {
+                return true;
+            }
+            walked[1]++;
+            if (matches[0]++ >= start) {
+                pageProducts.add(new Product(p));
+            }
+            return pageProducts.size() < size;
+        };
+
+        SortedView<?> view = sortedViews.get(sortBy);
+        if (view != null) {
+            view.walk(descending, after, id -> db.get((long) id), visitor);
+        } else {
+            // Without a view the products are sorted by id, which is the order of the bitset
+            int id;
+            if (after == null) {
+                id = descending ? candidates.previousSetBit(candidates.length() - 1) : candidates.nextSetBit(0);
+            } else {
+                id = descending ? candidates.previousSetBit(slot(after.getId()) - 1) : candidates.nextSetBit(slot(after.getId()) + 1);
+            }
+            while (id >= 0) {
+                Product p = db.get((long) id);
+                if (p != null && !visitor.test(p)) {
                     break;
+                }
+                id = descending ? candidates.previousSetBit(id - 1) : candidates.nextSetBit(id + 1);
             }
         }
-        return sortDirection.equalsIgnoreCase("desc") ? comparator.reversed() : comparator;
+        return pageProducts;
+    }
+
+    // Matching candidates, counting stops at the limit
+    private int count(BitSet candidates, Predicate<Product> filter, int limit) {
+        int count = 0;
+        int tested = 0;
+        for (int id = candidates.nextSetBit(0); id >= 0 && count < limit; id = candidates.nextSetBit(id + 1)) {
+            Product p = db.get((long) id);
+            tested++;
+            if (p != null && filter.test(p)) {
+                count++;
+            }
+        }
+        scanned.add(tested);
+        return count;
+    }
+
+    private boolean matchesName(Product product, String name) {
+        return name == null || nameIndex.matches(slot(product.getId()), product.getName(), name);
+    }
+
+    private static boolean matchesAvailability(Product product, boolean available) {
+        Integer stock = product.getInStock();
+        return stock != null && (available ? stock > 0 : stock == 0);
+    }
+
+    private static boolean isDescending(String sortDirection) {
+        return "desc".equalsIgnoreCase(sortDirection);
+    }
+
+    // Order of a page: the sort fields, then ascending id
+    private Comparator<Product> pageOrder(String sortBy1, String sortDirection1, String sortBy2, String sortDirection2) {
+        Comparator<Product> comparator = getProductComparator(sortBy1, sortDirection1);
+        if (sortBy2 != null && !sortBy2.isEmpty()) {
+            comparator = comparator.thenComparing(getProductComparator(sortBy2, sortDirection2));
+        }
+        return comparator.thenComparing(Product::getId);
+    }
+
+    private Comparator<Product> getProductComparator(String sortBy, String sortDirection) {
+        SortedView<?> view = sortBy == null ? null : sortedViews.get(sortBy);
+        Comparator<Product> comparator = view != null ? view.comparator() : Comparator.comparing(Product::getId);
+        return isDescending(sortDirection) ? comparator.reversed() : comparator;
+    }
+
+    // A product whose date changes is briefly in both buckets, it is only taken from the
+    // bucket of the date it has now
+    @Override
+    public List<Product> findExpiring(LocalDate from, LocalDate to, boolean latestFirst, int limit) {
+        List<Product> products = new ArrayList<>();
+        if (limit <= 0) {
+            return products;
+        }
+        expirationIndex.forEachBetween(from, to, latestFirst, (day, id) -> {
+            Product p = db.get((long) id);
+            if (p != null && day.equals(p.getExpirationDate())) {
+                products.add(new Product(p));
+            }
+            return products.size() < limit;
+        });
+        return products;
     }
 
     @Override
     public List<String> findAllCategories() {
-        return db.values().stream()
-            .map(Product::getCategory)
-            .distinct()
-            .collect(Collectors.toList());
+        return categories.categories();
+    }
+
+    @Override
+    public long version(String category) {
+        return versions.of(category);
+    }
+
+    @Override
+    public List<CategoryTotals> getCategoryTotals() {
+        return categoryTotals.snapshot();
     }
 
     @Override
@@ -118,14 +686,253 @@ public class InMemoryProductRepository implements ProductRepository {
         return db.size();
     }
 
+    @Override
+    public long productsScanned() {
+        return scanned.sum();
+    }
+
     @Override
     public Optional<Product> findById(Long id) {
-        return Optional.ofNullable(db.get(id));
+        return Optional.ofNullable(db.get(id)).map(Product::new);
     }
 
     @Override
     public void deleteById(Long id) {
-        db.remove(id);
+        ProductJournal journal = this.journal;
+        long position;
+        Lock lock = lockFor(id);
+        lock.lock();
+        try {
+            if (!db.containsKey(id)) {
+                return;
+            }
+            position = journal.delete(id);
+            Product removed = db.remove(id);
+            unindex(removed);
+            releaseCategory(removed.getCategory());
+        } finally {
+            lock.unlock();
+        }
+        journal.awaitDurable(position);
     }
-    
+
+    @Override
+    public Product adjustStock(Long id, int delta, LocalDateTime updatedAt) {
+        ProductJournal journal = this.journal;
+        Product updatedProduct;
+        long position;
+        Lock lock = lockFor(id);
+        lock.lock();
+        try {
+            Product existingProduct = getExisting(id);
+            int currentStock = existingProduct.getInStock() == null ? 0 : existingProduct.getInStock();
+            int newStock = Math.addExact(currentStock, delta);
+            if (newStock < 0) {
+                throw new IllegalArgumentException("Stock can't go below zero for product with ID: " + id);
+            }
+
+            updatedProduct = withStock(existingProduct, newStock, updatedAt);
+            position = journal.put(updatedProduct);
+            replace(existingProduct, updatedProduct);
+        } finally {
+            lock.unlock();
+        }
+        journal.awaitDurable(position);
+
+        return new Product(updatedProduct);
+    }
+
+    @Override
+    public boolean compareAndSetStock(Long id, Integer expectedStock, int newStock, LocalDateTime updatedAt) {
+        ProductJournal journal = this.journal;
+        long position;
+        Lock lock = lockFor(id);
+        lock.lock();
+        try {
+            Product existingProduct = getExisting(id);
+            if (!Objects.equals(existingProduct.getInStock(), expectedStock)) {
+                return false;
+            }
+            Product updatedProduct = withStock(existingProduct, newStock, updatedAt);
+            position = journal.put(updatedProduct);
+            replace(existingProduct, updatedProduct);
+        } finally {
+            lock.unlock();
+        }
+        journal.awaitDurable(position);
+
+        return true;
+    }
+
+    // Recovery: puts a product back with its id and makes sure the id is never handed out again.
+    // Not written to the journal
+    public void restore(Product product) {
+        Lock lock = lockFor(product.getId());
+        lock.lock();
+        try {
+            Product restoredProduct = new Product(product);
+            restoredProduct.setCategory(internCategory(product.getCategory()));
+            Product previous = db.put(restoredProduct.getId(), restoredProduct);
+            if (previous == null) {
+                index(restoredProduct);
+            } else {
+                reindex(previous, restoredProduct);
+                releaseCategory(previous.getCategory());
+            }
+        } finally {
+            lock.unlock();
+        }
+        advanceIdCounter(product.getId() + 1);
+    }
+
+    // Recovery: fills an empty repository with the products of a snapshot, which it keeps
+    // instead of copying. They all go into db first and then every index is built in one
+    // pass: the name index from postings collected in plain bit sets, and the sorted views
+    // in parallel, each from its entries sorted at once.
+    // Not written to the journal
+    public void restoreAll(List<Product> products) {
+        checkpoint(() -> {
+            if (!db.isEmpty()) {
+                throw new IllegalStateException("Only an empty repository can be restored at once");
+            }
+            long nextId = idCounter.get();
+            for (Product product : products) {
+                product.setCategory(internCategory(product.getCategory()));
+                db.put(product.getId(), product);
+                nextId = Math.max(nextId, product.getId() + 1);
+            }
+            for (Product product : products) {
+                int id = slot(product.getId());
+                categoryIndex.add(id, categories.codeOf(product.getCategory()));
+                stockIndex.add(id, product.getInStock());
+                expirationIndex.add(id, product.getExpirationDate());
+                categoryTotals.add(product);
+                ids.set(id);
+                versions.changed(product);
+            }
+            nameIndex.addAll(products);
+            sortedViews.values().parallelStream().forEach(view -> view.addAll(products));
+            advanceIdCounter(nextId);
+        });
+    }
+
+    // Recovery: the next product created gets at least this id
+    public void advanceIdCounter(long nextId) {
+        idCounter.accumulateAndGet(nextId, Math::max);
+    }
+
+    public long nextId() {
+        return idCounter.get();
+    }
+
+    // Runs the action while every product lock is held, so no write is half done:
+    // a change that reached the journal has also been applied to the repository
+    public void checkpoint(Runnable action) {
+        checkpoint(0, action);
+    }
+
+    private void checkpoint(int stripe, Runnable action) {
+        if (stripe == LOCK_STRIPES) {
+            action.run();
+            return;
+        }
+        locks[stripe].lock();
+        try {
+            checkpoint(stripe + 1, action);
+        } finally {
+            locks[stripe].unlock();
+        }
+    }
+
+    // Must be called holding the lock of the product
+    private Product getExisting(Long id) {
+        Product existingProduct = db.get(id);
+        if (existingProduct == null) {
+            throw new ProductNotFoundException(id);
+        }
+        return existingProduct;
+    }
+
+    private static Product withStock(Product existingProduct, int stock, LocalDateTime updatedAt) {
+        Product updatedProduct = new Product(existingProduct);
+        updatedProduct.setInStock(stock);
+        updatedProduct.setUpdatedAt(updatedAt);
+
+        return updatedProduct;
+    }
+
+    // Must be called holding the lock of the product
+    private void replace(Product existingProduct, Product updatedProduct) {
+        db.put(updatedProduct.getId(), updatedProduct);
+        reindex(existingProduct, updatedProduct);
+    }
+
+    private void index(Product product) {
+        int id = slot(product.getId());
+        categoryIndex.add(id, categories.codeOf(product.getCategory()));
+        nameIndex.add(id, product.getName());
+        stockIndex.add(id, product.getInStock());
+        expirationIndex.add(id, product.getExpirationDate());
+        categoryTotals.add(product);
+        for (SortedView<?> view : sortedViews.values()) {
+            view.add(id, product);
+        }
+        ids.set(id);
+        versions.changed(product);
+    }
+
+    private void reindex(Product previous, Product current) {
+        int id = slot(current.getId());
+        if (!Objects.equals(previous.getCategory(), current.getCategory())) {
+            categoryIndex.add(id, categories.codeOf(current.getCategory()));
+            categoryIndex.remove(id, categories.codeOf(previous.getCategory()));
+        }
+        nameIndex.update(id, previous.getName(), current.getName());
+        stockIndex.update(id, previous.getInStock(), current.getInStock());
+        if (!Objects.equals(previous.getExpirationDate(), current.getExpirationDate())) {
+            expirationIndex.add(id, current.getExpirationDate());
+            expirationIndex.remove(id, previous.getExpirationDate());
+        }
+        categoryTotals.update(previous, current);
+        for (SortedView<?> view : sortedViews.values()) {
+            view.update(id, previous, current);
+        }
+        versions.changed(previous, current);
+    }
+
+    private void unindex(Product product) {
+        int id = slot(product.getId());
+        ids.clear(id);
+        categoryIndex.remove(id, categories.codeOf(product.getCategory()));
+        nameIndex.remove(id, product.getName());
+        stockIndex.remove(id, product.getInStock());
+        expirationIndex.remove(id, product.getExpirationDate());
+        categoryTotals.remove(product);
+        for (SortedView<?> view : sortedViews.values()) {
+            view.remove(id, product);
+        }
+        versions.changed(product);
+    }
+
+    // Products keep the dictionary's instance of their category, so each category
+    // string is stored once no matter how many products use it
+    private String internCategory(String category) {
+        return category == null ? null : categories.valueOf(categories.acquire(category));
+    }
+
+    private void releaseCategory(String category) {
+        if (category != null) {
+            categories.release(category);
+        }
+    }
+
+    private Lock lockFor(Long id) {
+        return locks[(int) Math.floorMod(id, (long) LOCK_STRIPES)];
+    }
+
+    // Ids are handed out sequentially by idCounter, so they fit in a bitset index
+    private static int slot(Long id) {
+        return Math.toIntExact(id);
+    }
+
 }
@@ -0,0 +1,153 @@
+package com.example.repositories;
+
+import com.example.models.CategoryTotals;
+import com.example.repositories.index.CategoryDictionary;
+import com.example.repositories.index.CategoryTotalsIndex;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+// Binary image of an OffHeapProductRepository. The file starts with a header holding the
+// on-heap state (id counter, category dictionary, category totals and the slot -> record
+// index), followed by the off-heap chunks exactly as they are in memory. Booting reads the
+// header and maps the chunks, so records are only paged in when a request touches them.
+// Chunks are stored in native byte order and a file from a machine with the other order
+// is rejected
+class MappedCatalogSnapshot {
+    private static final int MAGIC = 0x494E5643;
+    private static final int VERSION = 1;
+    private static final int PAGE_SIZE = 4096;
+
+    final OffHeapProductColumns columns;
+    final CategoryDictionary categories;
+    final CategoryTotalsIndex categoryTotals;
+    final long nextId;
+    final int productCount;
+
+    private MappedCatalogSnapshot(OffHeapProductColumns columns, CategoryDictionary categories,
+                                  CategoryTotalsIndex categoryTotals, long nextId, int productCount) {
+        this.columns = columns;
+        this.categories = categories;
+        this.categoryTotals = categoryTotals;
+        this.nextId = nextId;
+        this.productCount = productCount;
+    }
+
+    static MappedCatalogSnapshot empty() {
+        return new MappedCatalogSnapshot(new OffHeapProductColumns(), new CategoryDictionary(), new CategoryTotalsIndex(), 1, 0);
+    }
+
+    // Writes to a temporary file that replaces the target once complete, so a file that is
+    // mapped by the running repository can be overwritten safely
+    static void write(Path file, OffHeapProductColumns columns, CategoryDictionary categories,
+                      List<CategoryTotals> totals, long nextId, int productCount) throws IOException {
+        ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(headerBytes);
+        header.writeInt(MAGIC);
+        header.writeInt(VERSION);
+        header.writeBoolean(ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN);
+        header.writeLong(nextId);
+        header.writeInt(productCount);
+
+        int[] references = categories.referenceCounts();
+        header.writeInt(references.length);
+        for (int code = 0; code < references.length; code++) {
+            String category = categories.valueOf(code);
+            header.writeBoolean(category != null);
+            if (category != null) {
+                header.writeUTF(category);
+            }
+            header.writeInt(references[code]);
+        }
+        header.writeInt(totals.size());
+        for (CategoryTotals categoryTotals : totals) {
+            header.writeUTF(categoryTotals.getCategory());
+            header.writeLong(categoryTotals.getProductCount());
+            header.writeLong(categoryTotals.getUnitsInStock());
+            header.writeDouble(categoryTotals.getInventoryValue());
+        }
+        columns.writeIndex(header);
+        header.flush();
+
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer start = ByteBuffer.allocate(4 + headerBytes.size());
+            start.putInt(headerBytes.size()).put(headerBytes.toByteArray()).flip();
+            long position = 0;
+            while (start.hasRemaining()) {
+                position += channel.write(start, position);
+            }
+            columns.writeChunks(channel, chunksStart(headerBytes.size()));
+            channel.force(true);
+        }
+        Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    static MappedCatalogSnapshot read(Path file) throws IOException {
+        // PRIVATE mappings need a channel open for writing, though the file is never changed
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer length = ByteBuffer.allocate(4);
+            readFully(channel, length, 0);
+            int headerLength = length.flip().getInt();
+            ByteBuffer headerBytes = ByteBuffer.allocate(headerLength);
+            readFully(channel, headerBytes, 4);
+            DataInputStream header = new DataInputStream(new ByteArrayInputStream(headerBytes.array()));
+
+            if (header.readInt() != MAGIC || header.readInt() != VERSION) {
+                throw new IllegalStateException("Not a catalog snapshot: " + file);
+            }
+            if (header.readBoolean() != (ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN)) {
+                throw new IllegalStateException("Catalog snapshot was written with another byte order: " + file);
+            }
+            long nextId = header.readLong();
+            int productCount = header.readInt();
+
+            int codeCount = header.readInt();
+            String[] categoryValues = new String[codeCount];
+            int[] references = new int[codeCount];
+            for (int code = 0; code < codeCount; code++) {
+                categoryValues[code] = header.readBoolean() ? header.readUTF() : null;
+                references[code] = header.readInt();
+            }
+            int totalsCount = header.readInt();
+            List<CategoryTotals> totals = new ArrayList<>(totalsCount);
+            for (int i = 0; i < totalsCount; i++) {
+                totals.add(new CategoryTotals(header.readUTF(), header.readLong(), header.readLong(), header.readDouble()));
+            }
+            // Mappings stay valid once the channel is closed
+            OffHeapProductColumns columns = OffHeapProductColumns.map(header, channel, chunksStart(headerLength));
+
+            return new MappedCatalogSnapshot(columns, new CategoryDictionary(categoryValues, references),
+                new CategoryTotalsIndex(totals), nextId, productCount);
+        }
+    }
+
+    // The chunks start on a page boundary after the header
+    private static long chunksStart(int headerLength) {
+        long end = 4L + headerLength;
+        return (end + PAGE_SIZE - 1) / PAGE_SIZE * PAGE_SIZE;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IllegalStateException("Truncated catalog snapshot");
+            }
+            position += read;
+        }
+    }
+}
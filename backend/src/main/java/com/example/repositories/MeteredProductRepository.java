@@ -0,0 +1,184 @@
+package com.example.repositories;
+
+import com.example.models.CategoryTotals;
+import com.example.models.CustomPage;
+import com.example.models.Product;
+import com.example.models.ProductRanges;
+import com.example.models.TotalMode;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Predicate;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+// Times every call to the repository it wraps (inventory.repository, one timer per method)
+// and counts the rows the listing queries return next to the products they scanned.
+// Meters are created once, so a call only pays for a clock read and a timer update.
+// Also publishes the size of the catalog and the number of categories, read when scraped
+public class MeteredProductRepository implements ProductRepository {
+    private final ProductRepository repository;
+    private final Timer save;
+    private final Timer saveAll;
+    private final Timer findAll;
+    private final Timer findById;
+    private final Timer getProducts;
+    private final Timer getProductsAfter;
+    private final Timer forEach;
+    private final Timer findExpiring;
+    private final Timer findAllCategories;
+    private final Timer version;
+    private final Timer getCategoryTotals;
+    private final Timer countAllProducts;
+    private final Timer deleteById;
+    private final Timer adjustStock;
+    private final Timer compareAndSetStock;
+    private final Counter returned;
+
+    public MeteredProductRepository(ProductRepository repository, MeterRegistry registry) {
+        this.repository = repository;
+        save = timer(registry, "save");
+        saveAll = timer(registry, "saveAll");
+        findAll = timer(registry, "findAll");
+        findById = timer(registry, "findById");
+        getProducts = timer(registry, "getProducts");
+        getProductsAfter = timer(registry, "getProductsAfter");
+        forEach = timer(registry, "forEach");
+        findExpiring = timer(registry, "findExpiring");
+        findAllCategories = timer(registry, "findAllCategories");
+        version = timer(registry, "version");
+        getCategoryTotals = timer(registry, "getCategoryTotals");
+        countAllProducts = timer(registry, "countAllProducts");
+        deleteById = timer(registry, "deleteById");
+        adjustStock = timer(registry, "adjustStock");
+        compareAndSetStock = timer(registry, "compareAndSetStock");
+
+        returned = Counter.builder("inventory.listing.returned")
+            .description("Products returned by the listing queries")
+            .register(registry);
+        FunctionCounter.builder("inventory.listing.scanned", repository, ProductRepository::productsScanned)
+            .description("Products tested against the filters by the listing queries")
+            .register(registry);
+        Gauge.builder("inventory.catalog.size", repository, ProductRepository::countAllProducts)
+            .description("Products in the catalog")
+            .register(registry);
+        Gauge.builder("inventory.catalog.categories", repository, r -> r.findAllCategories().size())
+            .description("Categories with at least one product")
+            .register(registry);
+    }
+
+    private static Timer timer(MeterRegistry registry, String method) {
+        return Timer.builder("inventory.repository")
+            .description("Calls to the product repository")
+            .tag("method", method)
+            .register(registry);
+    }
+
+    @Override
+    public Product save(Product product) {
+        return save.record(() -> repository.save(product));
+    }
+
+    @Override
+    public List<Product> saveAll(List<Product> products) {
+        return saveAll.record(() -> repository.saveAll(products));
+    }
+
+    @Override
+    public List<Product> findAll() {
+        return findAll.record(repository::findAll);
+    }
+
+    @Override
+    public Optional<Product> findById(Long id) {
+        return findById.record(() -> repository.findById(id));
+    }
+
+    @Override
+    public CustomPage<Product> getProducts(String nameFilter, List<String> categoryFilters, Boolean availabilityFilter,
+                                           String sortBy1, String sortDirection1, String sortBy2, String sortDirection2,
+                                           int page, int size) {
+        return returned(getProducts.record(() -> repository.getProducts(nameFilter, categoryFilters, availabilityFilter,
+            sortBy1, sortDirection1, sortBy2, sortDirection2, page, size)));
+    }
+
+    @Override
+    public CustomPage<Product> getProducts(String nameFilter, List<String> categoryFilters, Boolean availabilityFilter,
+                                           ProductRanges ranges, String sortBy1, String sortDirection1, String sortBy2,
+                                           String sortDirection2, int page, int size, TotalMode totalMode) {
+        return returned(getProducts.record(() -> repository.getProducts(nameFilter, categoryFilters, availabilityFilter,
+            ranges, sortBy1, sortDirection1, sortBy2, sortDirection2, page, size, totalMode)));
+    }
+
+    @Override
+    public CustomPage<Product> getProductsAfter(String nameFilter, List<String> categoryFilters, Boolean availabilityFilter,
+                                                ProductRanges ranges, String sortBy1, String sortDirection1, String sortBy2,
+                                                String sortDirection2, Product after, int size, TotalMode totalMode) {
+        return returned(getProductsAfter.record(() -> repository.getProductsAfter(nameFilter, categoryFilters, availabilityFilter,
+            ranges, sortBy1, sortDirection1, sortBy2, sortDirection2, after, size, totalMode)));
+    }
+
+    private CustomPage<Product> returned(CustomPage<Product> products) {
+        if (products != null) {
+            returned.increment(products.getContent().size());
+        }
+        return products;
+    }
+
+    @Override
+    public void forEach(String nameFilter, List<String> categoryFilters, Boolean availabilityFilter, ProductRanges ranges,
+                        Predicate<Product> visitor) {
+        forEach.record(() -> repository.forEach(nameFilter, categoryFilters, availabilityFilter, ranges, visitor));
+    }
+
+    @Override
+    public List<Product> findExpiring(LocalDate from, LocalDate to, boolean latestFirst, int limit) {
+        return findExpiring.record(() -> repository.findExpiring(from, to, latestFirst, limit));
+    }
+
+    @Override
+    public List<String> findAllCategories() {
+        return findAllCategories.record(repository::findAllCategories);
+    }
+
+    @Override
+    public long version(String category) {
+        return version.record(() -> repository.version(category));
+    }
+
+    @Override
+    public List<CategoryTotals> getCategoryTotals() {
+        return getCategoryTotals.record(repository::getCategoryTotals);
+    }
+
+    @Override
+    public long countAllProducts() {
+        return countAllProducts.record(repository::countAllProducts);
+    }
+
+    @Override
+    public long productsScanned() {
+        return repository.productsScanned();
+    }
+
+    @Override
+    public void deleteById(Long id) {
+        deleteById.record(() -> repository.deleteById(id));
+    }
+
+    @Override
+    public Product adjustStock(Long id, int delta, LocalDateTime updatedAt) {
+        return adjustStock.record(() -> repository.adjustStock(id, delta, updatedAt));
+    }
+
+    @Override
+    public boolean compareAndSetStock(Long id, Integer expectedStock, int newStock, LocalDateTime updatedAt) {
+        return compareAndSetStock.record(() -> repository.compareAndSetStock(id, expectedStock, newStock, updatedAt));
+    }
+}
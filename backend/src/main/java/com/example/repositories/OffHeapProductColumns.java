@@ -0,0 +1,324 @@
+package com.example.repositories;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+// ProductColumns kept outside the Java heap. Every product is a fixed 48 byte record in
+// direct ByteBuffers and names are UTF-8 bytes in a separate off-heap string area.
+// The only on-heap state is the slot -> record index, a bitmap of the live slots and the
+// free list of records, so the heap (and the work of the GC) doesn't grow with the catalog.
+// Not thread-safe on its own, writers must be serialized by the caller
+public class OffHeapProductColumns implements ProductColumns {
+    // Record layout
+    private static final int NAME_REF = 0;
+    private static final int CREATED_AT = 8;
+    private static final int UPDATED_AT = 16;
+    private static final int UNIT_PRICE = 24;
+    private static final int NAME_LENGTH = 32;
+    private static final int CATEGORY_CODE = 36;
+    private static final int STOCK = 40;
+    private static final int EXPIRATION_DAY = 44;
+    private static final int RECORD_SIZE = 48;
+
+    private static final int RECORDS_PER_CHUNK_BITS = 14;
+    private static final int RECORDS_PER_CHUNK = 1 << RECORDS_PER_CHUNK_BITS;
+    private static final int NAME_CHUNK_SIZE = 1 << 20;
+    private static final long NO_NAME = -1;
+
+    private final List<ByteBuffer> recordChunks = new ArrayList<>();
+    private final List<ByteBuffer> nameChunks = new ArrayList<>();
+    // Record of each slot plus one, 0 when the slot is empty
+    private int[] recordOf = new int[1024];
+    private final BitSet live = new BitSet();
+    private int[] freeRecords = new int[64];
+    private int freeCount = 0;
+    private int recordCount = 0;
+    private int capacity = 0;
+    private long usedNameBytes = 0;
+    private long wastedNameBytes = 0;
+
+    @Override
+    public int capacity() {
+        return capacity;
+    }
+
+    @Override
+    public boolean isLive(int slot) {
+        return slot < recordOf.length && recordOf[slot] != 0;
+    }
+
+    @Override
+    public int nextLive(int slot) {
+        return live.nextSetBit(slot);
+    }
+
+    @Override
+    public int previousLive(int slot) {
+        return live.previousSetBit(slot);
+    }
+
+    @Override
+    public void write(int slot, String name, int categoryCode, double unitPrice, int stock, int expirationDay,
+                      long createdAt, long updatedAt) {
+        int record = isLive(slot) ? recordOf[slot] - 1 : allocateRecord(slot);
+        ByteBuffer chunk = recordChunk(record);
+        int offset = recordOffset(record);
+        writeName(chunk, offset, name);
+        chunk.putLong(offset + CREATED_AT, createdAt);
+        chunk.putLong(offset + UPDATED_AT, updatedAt);
+        chunk.putDouble(offset + UNIT_PRICE, unitPrice);
+        chunk.putInt(offset + CATEGORY_CODE, categoryCode);
+        chunk.putInt(offset + STOCK, stock);
+        chunk.putInt(offset + EXPIRATION_DAY, expirationDay);
+    }
+
+    @Override
+    public void writeStock(int slot, int stock, long updatedAt) {
+        int record = recordOf[slot] - 1;
+        recordChunk(record).putInt(recordOffset(record) + STOCK, stock);
+        recordChunk(record).putLong(recordOffset(record) + UPDATED_AT, updatedAt);
+    }
+
+    @Override
+    public void clear(int slot) {
+        if (!isLive(slot)) {
+            return;
+        }
+        int record = recordOf[slot] - 1;
+        ByteBuffer chunk = recordChunk(record);
+        int offset = recordOffset(record);
+        if (chunk.getLong(offset + NAME_REF) != NO_NAME) {
+            wastedNameBytes += chunk.getInt(offset + NAME_LENGTH);
+        }
+        recordOf[slot] = 0;
+        live.clear(slot);
+        if (freeCount == freeRecords.length) {
+            freeRecords = Arrays.copyOf(freeRecords, freeCount * 2);
+        }
+        freeRecords[freeCount++] = record;
+    }
+
+    @Override
+    public String name(int slot) {
+        int record = recordOf[slot] - 1;
+        ByteBuffer chunk = recordChunk(record);
+        int offset = recordOffset(record);
+        long ref = chunk.getLong(offset + NAME_REF);
+        if (ref == NO_NAME) {
+            return null;
+        }
+        byte[] bytes = new byte[chunk.getInt(offset + NAME_LENGTH)];
+        nameChunks.get((int) (ref >>> 32)).get((int) ref, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public int categoryCode(int slot) { return readInt(slot, CATEGORY_CODE); }
+    @Override
+    public double unitPrice(int slot) {
+        int record = recordOf[slot] - 1;
+        return recordChunk(record).getDouble(recordOffset(record) + UNIT_PRICE);
+    }
+    @Override
+    public int stock(int slot) { return readInt(slot, STOCK); }
+    @Override
+    public int expirationDay(int slot) { return readInt(slot, EXPIRATION_DAY); }
+    @Override
+    public long createdAt(int slot) { return readLong(slot, CREATED_AT); }
+    @Override
+    public long updatedAt(int slot) { return readLong(slot, UPDATED_AT); }
+
+    private int readInt(int slot, int field) {
+        int record = recordOf[slot] - 1;
+        return recordChunk(record).getInt(recordOffset(record) + field);
+    }
+
+    private long readLong(int slot, int field) {
+        int record = recordOf[slot] - 1;
+        return recordChunk(record).getLong(recordOffset(record) + field);
+    }
+
+    // Reuses the record of a deleted product before growing the record area
+    private int allocateRecord(int slot) {
+        int record;
+        if (freeCount > 0) {
+            record = freeRecords[--freeCount];
+        } else {
+            record = recordCount++;
+            if (record >>> RECORDS_PER_CHUNK_BITS == recordChunks.size()) {
+                recordChunks.add(allocate(RECORDS_PER_CHUNK * RECORD_SIZE));
+            }
+        }
+        ByteBuffer chunk = recordChunk(record);
+        chunk.putLong(recordOffset(record) + NAME_REF, NO_NAME);
+        chunk.putInt(recordOffset(record) + NAME_LENGTH, 0);
+
+        if (slot >= recordOf.length) {
+            recordOf = Arrays.copyOf(recordOf, Math.max(slot + 1, recordOf.length + (recordOf.length >> 1)));
+        }
+        recordOf[slot] = record + 1;
+        live.set(slot);
+        capacity = Math.max(capacity, slot + 1);
+        return record;
+    }
+
+    // A name that fits in the bytes of the previous one is written in place, otherwise it is
+    // appended and the old bytes are counted as garbage until the next compaction
+    private void writeName(ByteBuffer chunk, int offset, String name) {
+        long ref = chunk.getLong(offset + NAME_REF);
+        int length = chunk.getInt(offset + NAME_LENGTH);
+        if (ref != NO_NAME) {
+            wastedNameBytes += length;
+        }
+        if (name == null) {
+            chunk.putLong(offset + NAME_REF, NO_NAME);
+            chunk.putInt(offset + NAME_LENGTH, 0);
+            return;
+        }
+
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        if (ref != NO_NAME && bytes.length <= length) {
+            wastedNameBytes -= bytes.length;
+            nameChunks.get((int) (ref >>> 32)).put((int) ref, bytes);
+        } else {
+            ref = appendName(bytes);
+        }
+        chunk.putLong(offset + NAME_REF, ref);
+        chunk.putInt(offset + NAME_LENGTH, bytes.length);
+
+        if (wastedNameBytes > NAME_CHUNK_SIZE && wastedNameBytes > usedNameBytes / 2) {
+            compactNames();
+        }
+    }
+
+    private long appendName(byte[] bytes) {
+        ByteBuffer target = nameChunks.isEmpty() ? null : nameChunks.get(nameChunks.size() - 1);
+        if (target == null || target.remaining() < bytes.length) {
+            target = allocate(Math.max(NAME_CHUNK_SIZE, bytes.length));
+            nameChunks.add(target);
+        }
+        int position = target.position();
+        target.put(bytes);
+        usedNameBytes += bytes.length;
+        return ((long) (nameChunks.size() - 1) << 32) | position;
+    }
+
+    // Copies the names of the live records into fresh chunks, dropping the garbage
+    private void compactNames() {
+        List<ByteBuffer> oldChunks = new ArrayList<>(nameChunks);
+        nameChunks.clear();
+        usedNameBytes = 0;
+        wastedNameBytes = 0;
+        for (int slot = nextLive(0); slot >= 0; slot = nextLive(slot + 1)) {
+            int record = recordOf[slot] - 1;
+            ByteBuffer chunk = recordChunk(record);
+            int offset = recordOffset(record);
+            long ref = chunk.getLong(offset + NAME_REF);
+            if (ref == NO_NAME) {
+                continue;
+            }
+            byte[] bytes = new byte[chunk.getInt(offset + NAME_LENGTH)];
+            oldChunks.get((int) (ref >>> 32)).get((int) ref, bytes);
+            chunk.putLong(offset + NAME_REF, appendName(bytes));
+        }
+    }
+
+    // Snapshot support (see MappedCatalogSnapshot): writeIndex writes the on-heap state and
+    // writeChunks the off-heap chunks as they are, so map() can rebuild the columns over
+    // mappings of the file without decoding a single record
+    void writeIndex(DataOutputStream output) throws IOException {
+        output.writeInt(capacity);
+        for (int slot = 0; slot < capacity; slot++) {
+            output.writeInt(recordOf[slot]);
+        }
+        output.writeInt(freeCount);
+        for (int i = 0; i < freeCount; i++) {
+            output.writeInt(freeRecords[i]);
+        }
+        output.writeInt(recordCount);
+        output.writeLong(usedNameBytes);
+        output.writeLong(wastedNameBytes);
+        output.writeInt(recordChunks.size());
+        output.writeInt(nameChunks.size());
+        for (ByteBuffer chunk : nameChunks) {
+            output.writeInt(chunk.capacity());
+            output.writeInt(chunk.position());
+        }
+    }
+
+    // Writes every chunk at the position and returns the position after the last one
+    long writeChunks(FileChannel channel, long position) throws IOException {
+        List<ByteBuffer> chunks = new ArrayList<>(recordChunks);
+        chunks.addAll(nameChunks);
+        for (ByteBuffer chunk : chunks) {
+            ByteBuffer content = chunk.duplicate();
+            content.clear();
+            while (content.hasRemaining()) {
+                position += channel.write(content, position);
+            }
+        }
+        return position;
+    }
+
+    // The chunks are PRIVATE mappings: pages are read from the file the first time they are
+    // touched, and later writes stay in memory instead of changing the file
+    static OffHeapProductColumns map(DataInputStream index, FileChannel channel, long position) throws IOException {
+        OffHeapProductColumns columns = new OffHeapProductColumns();
+        columns.capacity = index.readInt();
+        columns.recordOf = new int[Math.max(1024, columns.capacity)];
+        for (int slot = 0; slot < columns.capacity; slot++) {
+            columns.recordOf[slot] = index.readInt();
+            if (columns.recordOf[slot] != 0) {
+                columns.live.set(slot);
+            }
+        }
+        columns.freeCount = index.readInt();
+        columns.freeRecords = new int[Math.max(64, columns.freeCount)];
+        for (int i = 0; i < columns.freeCount; i++) {
+            columns.freeRecords[i] = index.readInt();
+        }
+        columns.recordCount = index.readInt();
+        columns.usedNameBytes = index.readLong();
+        columns.wastedNameBytes = index.readLong();
+
+        int recordChunkCount = index.readInt();
+        for (int i = 0; i < recordChunkCount; i++) {
+            columns.recordChunks.add(map(channel, position, RECORDS_PER_CHUNK * RECORD_SIZE));
+            position += RECORDS_PER_CHUNK * RECORD_SIZE;
+        }
+        int nameChunkCount = index.readInt();
+        for (int i = 0; i < nameChunkCount; i++) {
+            int size = index.readInt();
+            ByteBuffer chunk = map(channel, position, size);
+            chunk.position(index.readInt());
+            columns.nameChunks.add(chunk);
+            position += size;
+        }
+        return columns;
+    }
+
+    private static ByteBuffer map(FileChannel channel, long position, int size) throws IOException {
+        return channel.map(FileChannel.MapMode.PRIVATE, position, size).order(ByteOrder.nativeOrder());
+    }
+
+    private ByteBuffer recordChunk(int record) {
+        return recordChunks.get(record >>> RECORDS_PER_CHUNK_BITS);
+    }
+
+    private static int recordOffset(int record) {
+        return (record & (RECORDS_PER_CHUNK - 1)) * RECORD_SIZE;
+    }
+
+    private static ByteBuffer allocate(int size) {
+        return ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder());
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.repositories;
+
+import jakarta.annotation.PreDestroy;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+// The columnar repository with its columns in direct memory (see OffHeapProductColumns).
+// When inventory.off-heap.snapshot names a file, the catalog boots from it by mapping it
+// (see MappedCatalogSnapshot) and is exported to it again on shutdown
+@Repository
+@ConditionalOnProperty(name = "inventory.repository.type", havingValue = "off-heap")
+public class OffHeapProductRepository extends ColumnarProductRepository {
+    private final Path snapshotFile;
+
+    public OffHeapProductRepository() {
+        this(null, MappedCatalogSnapshot.empty());
+    }
+
+    @Autowired
+    public OffHeapProductRepository(@Value("${inventory.off-heap.snapshot:}") String snapshotFile) throws IOException {
+        this(snapshotFile.isEmpty() ? null : Paths.get(snapshotFile));
+    }
+
+    private OffHeapProductRepository(Path snapshotFile) throws IOException {
+        this(snapshotFile, snapshotFile != null && Files.exists(snapshotFile)
+            ? MappedCatalogSnapshot.read(snapshotFile)
+            : MappedCatalogSnapshot.empty());
+    }
+
+    private OffHeapProductRepository(Path snapshotFile, MappedCatalogSnapshot snapshot) {
+        super(snapshot.columns, snapshot.categories, snapshot.categoryTotals, snapshot.nextId, snapshot.productCount);
+        this.snapshotFile = snapshotFile;
+    }
+
+    // Boots a repository from a file written by exportSnapshot
+    public static OffHeapProductRepository boot(Path snapshotFile) throws IOException {
+        return new OffHeapProductRepository(snapshotFile, MappedCatalogSnapshot.read(snapshotFile));
+    }
+
+    public void exportSnapshot(Path file) throws IOException {
+        lock.readLock().lock();
+        try {
+            MappedCatalogSnapshot.write(file, (OffHeapProductColumns) columns, categories, categoryTotals.snapshot(),
+                idCounter, productCount);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @PreDestroy
+    public void exportOnShutdown() throws IOException {
+        if (snapshotFile != null) {
+            exportSnapshot(snapshotFile);
+        }
+    }
+}
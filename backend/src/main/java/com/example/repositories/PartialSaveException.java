@@ -0,0 +1,20 @@
+package com.example.repositories;
+
+import com.example.models.Product;
+
+import java.util.List;
+
+// Thrown by saveAll when one of the products fails to save. The products before it were
+// stored and are in getSaved(), the ones after it were not attempted
+public class PartialSaveException extends RuntimeException {
+    private final List<Product> saved;
+
+    public PartialSaveException(List<Product> saved, RuntimeException cause) {
+        super(cause.getMessage(), cause);
+        this.saved = saved;
+    }
+
+    public List<Product> getSaved() {
+        return saved;
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.repositories;
+
+// Storage of the product fields as primitive columns, one row per slot.
+// The slot of a product is its id, so there is no id column.
+// NULL_INT and NULL_LONG stand for the missing optional values
+public interface ProductColumns {
+    int NULL_INT = Integer.MIN_VALUE;
+    long NULL_LONG = Long.MIN_VALUE;
+
+    // Number of slots that may hold a product
+    int capacity();
+    boolean isLive(int slot);
+    // The first live slot at or after the slot, or -1. Scans jump between live slots, so
+    // the slots of deleted products cost a bit each instead of a visit
+    int nextLive(int slot);
+    // The last live slot at or before the slot, or -1
+    int previousLive(int slot);
+
+    void write(int slot, String name, int categoryCode, double unitPrice, int stock, int expirationDay,
+               long createdAt, long updatedAt);
+    void writeStock(int slot, int stock, long updatedAt);
+    void clear(int slot);
+
+    String name(int slot);
+    int categoryCode(int slot);
+    double unitPrice(int slot);
+    int stock(int slot);
+    int expirationDay(int slot);
+    long createdAt(int slot);
+    long updatedAt(int slot);
+}
@@ -0,0 +1,34 @@
+package com.example.repositories;
+
+import com.example.models.Product;
+
+import java.util.List;
+
+// Receives every change of InMemoryProductRepository before it is applied.
+// put and delete are called holding the lock of the product, so the changes of a product
+// reach the journal in the order they are applied. They return a position that the writer
+// passes to awaitDurable once it has released the lock
+public interface ProductJournal {
+    ProductJournal NONE = new ProductJournal() {
+        @Override
+        public long put(Product product) { return 0; }
+        @Override
+        public long delete(Long id) { return 0; }
+        @Override
+        public void awaitDurable(long position) {}
+    };
+
+    long put(Product product);
+
+    // Logs new products as one write, the returned position covers all of them
+    default long putAll(List<Product> products) {
+        long position = 0;
+        for (Product product : products) {
+            position = Math.max(position, put(product));
+        }
+        return position;
+    }
+
+    long delete(Long id);
+    void awaitDurable(long position);
+}
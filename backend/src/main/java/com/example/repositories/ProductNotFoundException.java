@@ -0,0 +1,9 @@
+package com.example.repositories;
+
+// Thrown when a write names a product that doesn't exist, or was deleted meanwhile
+public class ProductNotFoundException extends RuntimeException {
+
+    public ProductNotFoundException(Long id) {
+        super("Product not found with ID: " + id);
+    }
+}
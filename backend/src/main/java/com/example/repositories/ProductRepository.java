@@ -2,18 +2,101 @@ package com.example.repositories;
 
 import com.example.models.Product;
 import com.example.models.CustomPage;
+import com.example.models.CategoryTotals;
+import com.example.models.ProductRanges;
+import com.example.models.TotalMode;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Predicate;
 
 public interface ProductRepository {
     Product save(Product product);
+
+    // Saves the products in order and returns what was stored, implementations may share
+    // the locking and durability work between them. Stops at the first product that fails
+    // with a PartialSaveException holding the ones stored before it
+    default List<Product> saveAll(List<Product> products) {
+        List<Product> saved = new ArrayList<>(products.size());
+        for (Product product : products) {
+            try {
+                saved.add(save(product));
+            } catch (RuntimeException e) {
+                throw new PartialSaveException(saved, e);
+            }
+        }
+        return saved;
+    }
+
     List<Product> findAll();
     Optional<Product> findById(Long id);
-    CustomPage<Product> getProducts(String nameFilter, List<String> categoryFilters, Boolean availabilityFilter,
+    default CustomPage<Product> getProducts(String nameFilter, List<String> categoryFilters, Boolean availabilityFilter,
                                            String sortBy1, String sortDirection1, String sortBy2, String sortDirection2, 
-                                           int page, int size);
+                                           int page, int size) {
+        return getProducts(nameFilter, categoryFilters, availabilityFilter, sortBy1, sortDirection1, sortBy2, sortDirection2,
+            page, size, TotalMode.EXACT);
+    }
+    default CustomPage<Product> getProducts(String nameFilter, List<String> categoryFilters, Boolean availabilityFilter,
+                                            String sortBy1, String sortDirection1, String sortBy2, String sortDirection2,
+                                            int page, int size, TotalMode totalMode) {
+        return getProducts(nameFilter, categoryFilters, availabilityFilter, ProductRanges.NONE,
+            sortBy1, sortDirection1, sortBy2, sortDirection2, page, size, totalMode);
+    }
+    // Same, also keeping only the products inside the price, stock and expiration ranges
+    CustomPage<Product> getProducts(String nameFilter, List<String> categoryFilters, Boolean availabilityFilter,
+                                    ProductRanges ranges, String sortBy1, String sortDirection1, String sortBy2,
+                                    String sortDirection2, int page, int size, TotalMode totalMode);
+    default CustomPage<Product> getProductsAfter(String nameFilter, List<String> categoryFilters, Boolean availabilityFilter,
+                                                 String sortBy1, String sortDirection1, String sortBy2, String sortDirection2,
+                                                 Product after, int size, TotalMode totalMode) {
+        return getProductsAfter(nameFilter, categoryFilters, availabilityFilter, ProductRanges.NONE,
+            sortBy1, sortDirection1, sortBy2, sortDirection2, after, size, totalMode);
+    }
+    // Keyset pagination: the size products that come right after the given one in the same
+    // order as getProducts. Only the id of after and the fields sorted by are looked at
+    CustomPage<Product> getProductsAfter(String nameFilter, List<String> categoryFilters, Boolean availabilityFilter,
+                                         ProductRanges ranges, String sortBy1, String sortDirection1, String sortBy2,
+                                         String sortDirection2, Product after, int size, TotalMode totalMode);
+    default void forEach(String nameFilter, List<String> categoryFilters, Boolean availabilityFilter, Predicate<Product> visitor) {
+        forEach(nameFilter, categoryFilters, availabilityFilter, ProductRanges.NONE, visitor);
+    }
+    // Hands the products matching the same filters as getProducts to the visitor in id order,
+    // one at a time, until it returns false
+    void forEach(String nameFilter, List<String> categoryFilters, Boolean availabilityFilter, ProductRanges ranges,
+                 Predicate<Product> visitor);
+    // Up to limit products expiring between both dates (inclusive, a null date leaves that
+    // side open), by expiration date (the latest first when asked) and then id. Read from an
+    // index of the expiration days, the cost follows the products returned rather than the
+    // size of the catalog
+    List<Product> findExpiring(LocalDate from, LocalDate to, boolean latestFirst, int limit);
+
+    default List<Product> findExpiring(LocalDate from, LocalDate to, int limit) {
+        return findExpiring(from, to, false, limit);
+    }
+
+    // The unit price is a primitive, a product sent without one (or with null) is priced 0.
+    // A price that isn't a finite number would stay in the category totals for good, so
+    // saves reject it before any index is touched
+    static void checkPrice(Product product) {
+        if (!Double.isFinite(product.getUnitPrice())) {
+            throw new IllegalArgumentException("unitPrice must be a finite number");
+        }
+    }
     List<String> findAllCategories();
+    // Version of the products of a category, or of the whole catalog when null. It changes
+    // after every write touching them, so results can be cached against it
+    long version(String category);
+    List<CategoryTotals> getCategoryTotals();
     long countAllProducts();
+    // Products tested against the filters by the listing queries since startup, which is
+    // the work they did beyond the rows returned
+    long productsScanned();
     void deleteById(Long id);
+
+    // Atomic stock changes, the stock is never read and written back by the caller
+    Product adjustStock(Long id, int delta, LocalDateTime updatedAt);
+    boolean compareAndSetStock(Long id, Integer expectedStock, int newStock, LocalDateTime updatedAt);
 }
@@ -0,0 +1,38 @@
+package com.example.repositories;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+// Keeps the k smallest elements seen according to an order, using a bounded
+// heap whose head is the worst element kept so far. Selecting from n elements
+// costs O(n log k) instead of the O(n log n) of sorting all of them
+public class TopKSelector<T> {
+    private final int k;
+    private final Comparator<? super T> order;
+    private final PriorityQueue<T> heap;
+
+    public TopKSelector(int k, Comparator<? super T> order) {
+        this.k = k;
+        this.order = order;
+        this.heap = new PriorityQueue<>(Math.max(1, k), Collections.reverseOrder(order));
+    }
+
+    public void offer(T element) {
+        if (heap.size() < k) {
+            heap.add(element);
+        } else if (k > 0 && order.compare(element, heap.peek()) < 0) {
+            heap.poll();
+            heap.add(element);
+        }
+    }
+
+    // Returns the selected elements in ascending order
+    public List<T> sorted() {
+        List<T> result = new ArrayList<>(heap);
+        result.sort(order);
+        return result;
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.repositories.index;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Maps every category in use to a small int code and keeps one shared String per
+// category. Each product holds a reference to its category, and once the last one
+// is released the code goes back to a free list to be reused by a new category.
+// Writes hold a ReentrantLock (no carrier pinning for virtual threads), lookups and the
+// category listing take no lock
+public class CategoryDictionary {
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Deque<Integer> freeCodes = new ArrayDeque<>();
+    private volatile String[] values = new String[16];
+    private int nextCode = 0;
+
+    public CategoryDictionary() {}
+
+    // Rebuilds a dictionary from referenceCounts() and the values of its codes,
+    // so every category keeps its code
+    public CategoryDictionary(String[] categories, int[] references) {
+        values = new String[Math.max(16, categories.length)];
+        nextCode = categories.length;
+        for (int code = categories.length - 1; code >= 0; code--) {
+            if (categories[code] == null) {
+                freeCodes.push(code);
+            } else {
+                Entry entry = new Entry(code);
+                entry.references = references[code];
+                entries.put(categories[code], entry);
+                values[code] = categories[code];
+            }
+        }
+    }
+
+    // Adds a reference to the category and returns its code
+    public int acquire(String category) {
+        lock.lock();
+        try {
+            Entry entry = entries.get(category);
+            if (entry == null) {
+                int code = freeCodes.isEmpty() ? nextCode++ : freeCodes.pop();
+                String[] current = values;
+                if (code >= current.length) {
+                    String[] grown = new String[current.length * 2];
+                    System.arraycopy(current, 0, grown, 0, current.length);
+                    current = grown;
+                }
+                current[code] = category;
+                values = current;
+                entry = new Entry(code);
+                entries.put(category, entry);
+            }
+            entry.references++;
+            return entry.code;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Drops a reference to the category, freeing its code when it was the last one
+    public void release(String category) {
+        lock.lock();
+        try {
+            Entry entry = entries.get(category);
+            if (entry == null || --entry.references > 0) {
+                return;
+            }
+            entries.remove(category);
+            String[] current = values;
+            current[entry.code] = null;
+            values = current;
+            freeCodes.push(entry.code);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Returns the code of the category, or -1 when no product uses it
+    public int codeOf(String category) {
+        Entry entry = category == null ? null : entries.get(category);
+        return entry == null ? -1 : entry.code;
+    }
+
+    public String valueOf(int code) {
+        String[] current = values;
+        return code >= 0 && code < current.length ? current[code] : null;
+    }
+
+    // Returns the categories in use ordered by code
+    public List<String> categories() {
+        List<String> categories = new ArrayList<>();
+        for (String category : values) {
+            if (category != null) {
+                categories.add(category);
+            }
+        }
+        return categories;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    // Number of references to each code handed out so far, 0 for a free code
+    public int[] referenceCounts() {
+        lock.lock();
+        try {
+            int[] references = new int[nextCode];
+            for (Entry entry : entries.values()) {
+                references[entry.code] = entry.references;
+            }
+            return references;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static final class Entry {
+        private final int code;
+        private int references;
+
+        private Entry(int code) {
+            this.code = code;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.repositories.index;
+
+import java.util.BitSet;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Keeps, for every category code of the CategoryDictionary, the set of product ids
+// that belong to it. Reads go through the volatile array, new codes grow it under a
+// ReentrantLock so virtual threads don't pin their carrier while waiting
+public class CategoryIndex {
+    private volatile ConcurrentBitSet[] idsByCode = new ConcurrentBitSet[0];
+    private final ReentrantLock growLock = new ReentrantLock();
+
+    public void add(int id, int code) {
+        if (code < 0) {
+            return;
+        }
+        idsFor(code).set(id);
+    }
+
+    public void remove(int id, int code) {
+        ConcurrentBitSet[] current = idsByCode;
+        if (code >= 0 && code < current.length && current[code] != null) {
+            current[code].clear(id);
+        }
+    }
+
+    // Returns a new set with the ids that belong to any of the given codes
+    public BitSet anyOf(int[] codes) {
+        ConcurrentBitSet[] current = idsByCode;
+        BitSet result = new BitSet();
+        for (int code : codes) {
+            if (code >= 0 && code < current.length && current[code] != null) {
+                current[code].orInto(result);
+            }
+        }
+        return result;
+    }
+
+    private ConcurrentBitSet idsFor(int code) {
+        ConcurrentBitSet[] current = idsByCode;
+        if (code < current.length && current[code] != null) {
+            return current[code];
+        }
+        growLock.lock();
+        try {
+            current = idsByCode;
+            if (code >= current.length) {
+                ConcurrentBitSet[] grown = new ConcurrentBitSet[Math.max(code + 1, current.length * 2)];
+                System.arraycopy(current, 0, grown, 0, current.length);
+                current = grown;
+            }
+            if (current[code] == null) {
+                current[code] = new ConcurrentBitSet();
+            }
+            idsByCode = current;
+            return current[code];
+        } finally {
+            growLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.repositories.index;
+
+import com.example.models.CategoryTotals;
+import com.example.models.Product;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+// Keeps the product count, units in stock and inventory value of every category,
+// so the metrics cost O(categories) instead of a pass over the catalog per category.
+// Products without category are not counted
+public class CategoryTotalsIndex {
+    private final ConcurrentNavigableMap<String, CategoryTotals> totalsByCategory = new ConcurrentSkipListMap<>();
+
+    public CategoryTotalsIndex() {}
+
+    // Starts from totals taken earlier with snapshot()
+    public CategoryTotalsIndex(List<CategoryTotals> totals) {
+        for (CategoryTotals categoryTotals : totals) {
+            totalsByCategory.put(categoryTotals.getCategory(), categoryTotals);
+        }
+    }
+
+    public void add(Product product) {
+        apply(product, 1);
+    }
+
+    // Sums the products of each category first, then updates every category once
+    public void addAll(Collection<Product> products) {
+        Map<String, CategoryTotals> added = new HashMap<>();
+        for (Product product : products) {
+            if (product.getCategory() != null) {
+                added.compute(product.getCategory(), (category, totals) ->
+                    (totals == null ? new CategoryTotals(category, 0, 0, 0.0) : totals).plus(product, 1));
+            }
+        }
+        added.forEach((category, totals) ->
+            totalsByCategory.merge(category, totals, CategoryTotals::plus));
+    }
+
+    public void remove(Product product) {
+        apply(product, -1);
+    }
+
+    public void update(Product previous, Product current) {
+        remove(previous);
+        add(current);
+    }
+
+    // Returns the totals of every category ordered by category name
+    public List<CategoryTotals> snapshot() {
+        return new ArrayList<>(totalsByCategory.values());
+    }
+
+    private void apply(Product product, int sign) {
+        if (product.getCategory() == null) {
+            return;
+        }
+        totalsByCategory.compute(product.getCategory(), (category, totals) -> {
+            CategoryTotals updated = (totals == null ? new CategoryTotals(category, 0, 0, 0.0) : totals).plus(product, sign);
+            return updated.getProductCount() == 0 ? null : updated;
+        });
+    }
+}
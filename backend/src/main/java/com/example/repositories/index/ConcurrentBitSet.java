@@ -0,0 +1,170 @@
+package com.example.repositories.index;
+
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Bit set that can be read and written from many threads without a global lock.
+// Bits live in fixed-size segments that are created on demand and never copied,
+// so a word is only ever updated with a CAS and no write can be lost while the
+// segment directory grows. Only the (rare) directory growth takes a lock, a
+// ReentrantLock so a virtual thread waiting for it doesn't pin its carrier
+public class ConcurrentBitSet {
+    private static final int SEGMENT_SHIFT = 12;
+    private static final int SEGMENT_BITS = 1 << SEGMENT_SHIFT;
+    private static final int WORDS_PER_SEGMENT = SEGMENT_BITS / Long.SIZE;
+
+    private volatile AtomicLongArray[] segments = new AtomicLongArray[0];
+    private final ReentrantLock growLock = new ReentrantLock();
+
+    // A set holding the bits of a plain BitSet, written in whole words
+    public static ConcurrentBitSet of(BitSet bits) {
+        ConcurrentBitSet result = new ConcurrentBitSet();
+        long[] words = bits.toLongArray();
+        AtomicLongArray[] segments = new AtomicLongArray[(words.length + WORDS_PER_SEGMENT - 1) / WORDS_PER_SEGMENT];
+        for (int i = 0; i < words.length; i++) {
+            if (words[i] == 0) {
+                continue;
+            }
+            int segment = i / WORDS_PER_SEGMENT;
+            if (segments[segment] == null) {
+                segments[segment] = new AtomicLongArray(WORDS_PER_SEGMENT);
+            }
+            segments[segment].set(i % WORDS_PER_SEGMENT, words[i]);
+        }
+        result.segments = segments;
+        return result;
+    }
+
+    public void set(int index) {
+        AtomicLongArray segment = segmentFor(index);
+        int word = wordIndex(index);
+        long mask = 1L << index;
+        long current;
+        do {
+            current = segment.get(word);
+        } while ((current & mask) == 0 && !segment.compareAndSet(word, current, current | mask));
+    }
+
+    public void clear(int index) {
+        AtomicLongArray segment = existingSegment(index);
+        if (segment == null) {
+            return;
+        }
+        int word = wordIndex(index);
+        long mask = 1L << index;
+        long current;
+        do {
+            current = segment.get(word);
+        } while ((current & mask) != 0 && !segment.compareAndSet(word, current, current & ~mask));
+    }
+
+    public boolean get(int index) {
+        AtomicLongArray segment = existingSegment(index);
+        return segment != null && (segment.get(wordIndex(index)) & (1L << index)) != 0;
+    }
+
+    public boolean isEmpty() {
+        for (AtomicLongArray segment : segments) {
+            if (segment == null) {
+                continue;
+            }
+            for (int i = 0; i < WORDS_PER_SEGMENT; i++) {
+                if (segment.get(i) != 0) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    public int cardinality() {
+        int count = 0;
+        for (AtomicLongArray segment : segments) {
+            if (segment == null) {
+                continue;
+            }
+            for (int i = 0; i < WORDS_PER_SEGMENT; i++) {
+                count += Long.bitCount(segment.get(i));
+            }
+        }
+        return count;
+    }
+
+    // Index of the first bit set at or after from, or -1. Segments that were never
+    // written are skipped, so a sparse set is walked without reading the whole range
+    public int nextSetBit(int from) {
+        AtomicLongArray[] current = segments;
+        int first = Math.max(from, 0);
+        for (int s = first >>> SEGMENT_SHIFT; s < current.length; s++) {
+            if (current[s] == null) {
+                continue;
+            }
+            boolean firstSegment = s == first >>> SEGMENT_SHIFT;
+            for (int i = firstSegment ? wordIndex(first) : 0; i < WORDS_PER_SEGMENT; i++) {
+                long word = current[s].get(i);
+                if (firstSegment && i == wordIndex(first)) {
+                    word &= -1L << first;
+                }
+                if (word != 0) {
+                    return (s << SEGMENT_SHIFT) + i * Long.SIZE + Long.numberOfTrailingZeros(word);
+                }
+            }
+        }
+        return -1;
+    }
+
+    // Copies the current bits into a plain BitSet that the caller owns
+    public BitSet snapshot() {
+        AtomicLongArray[] current = segments;
+        long[] words = new long[current.length * WORDS_PER_SEGMENT];
+        for (int s = 0; s < current.length; s++) {
+            if (current[s] == null) {
+                continue;
+            }
+            for (int i = 0; i < WORDS_PER_SEGMENT; i++) {
+                words[s * WORDS_PER_SEGMENT + i] = current[s].get(i);
+            }
+        }
+        return BitSet.valueOf(words);
+    }
+
+    // Adds the current bits to the given set
+    public void orInto(BitSet target) {
+        target.or(snapshot());
+    }
+
+    private AtomicLongArray existingSegment(int index) {
+        AtomicLongArray[] current = segments;
+        int segment = index >>> SEGMENT_SHIFT;
+        return segment < current.length ? current[segment] : null;
+    }
+
+    private AtomicLongArray segmentFor(int index) {
+        AtomicLongArray segment = existingSegment(index);
+        if (segment != null) {
+            return segment;
+        }
+        growLock.lock();
+        try {
+            AtomicLongArray[] current = segments;
+            int position = index >>> SEGMENT_SHIFT;
+            if (position >= current.length) {
+                AtomicLongArray[] grown = new AtomicLongArray[Math.max(position + 1, current.length * 2)];
+                System.arraycopy(current, 0, grown, 0, current.length);
+                current = grown;
+            }
+            if (current[position] == null) {
+                current[position] = new AtomicLongArray(WORDS_PER_SEGMENT);
+            }
+            segments = current;
+            return current[position];
+        } finally {
+            growLock.unlock();
+        }
+    }
+
+    private static int wordIndex(int index) {
+        return (index & (SEGMENT_BITS - 1)) >>> 6;
+    }
+}
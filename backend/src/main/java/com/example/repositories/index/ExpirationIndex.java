@@ -0,0 +1,70 @@
+package com.example.repositories.index;
+
+import java.time.LocalDate;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+// Groups the product ids in one bucket per expiration day, so the products expiring in
+// a window are found without looking at the rest of the catalog.
+// Products without expiration date are not indexed. A bucket stays in the map once it is
+// empty: dropping it could race with an add to the same day, whose bit would be set on
+// the bucket thrown away. There is at most one per distinct date, which is little
+public class ExpirationIndex {
+    private final ConcurrentNavigableMap<LocalDate, ConcurrentBitSet> idsByDay = new ConcurrentSkipListMap<>();
+
+    public void add(int id, LocalDate expirationDate) {
+        if (expirationDate == null) {
+            return;
+        }
+        idsByDay.computeIfAbsent(expirationDate, d -> new ConcurrentBitSet()).set(id);
+    }
+
+    public void remove(int id, LocalDate expirationDate) {
+        if (expirationDate == null) {
+            return;
+        }
+        ConcurrentBitSet ids = idsByDay.get(expirationDate);
+        if (ids != null) {
+            ids.clear(id);
+        }
+    }
+
+    // Returns a new set with the ids expiring between both dates (inclusive, a null date
+    // leaves that side open)
+    public BitSet between(LocalDate from, LocalDate to) {
+        BitSet result = new BitSet();
+        for (ConcurrentBitSet ids : days(from, to).values()) {
+            ids.orInto(result);
+        }
+        return result;
+    }
+
+    // Visits the ids expiring between both dates (same bounds as between) day by day, the
+    // latest day first when asked, and by id within a day, until the visitor returns false.
+    // Only the buckets of the days in the range are read, whatever the size of the catalog
+    public void forEachBetween(LocalDate from, LocalDate to, boolean latestFirst, Visitor visitor) {
+        NavigableMap<LocalDate, ConcurrentBitSet> days = days(from, to);
+        for (Map.Entry<LocalDate, ConcurrentBitSet> day : (latestFirst ? days.descendingMap() : days).entrySet()) {
+            ConcurrentBitSet ids = day.getValue();
+            for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+                if (!visitor.visit(day.getKey(), id)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private NavigableMap<LocalDate, ConcurrentBitSet> days(LocalDate from, LocalDate to) {
+        if (from == null) {
+            return to == null ? idsByDay : idsByDay.headMap(to, true);
+        }
+        return to == null ? idsByDay.tailMap(from, true) : idsByDay.subMap(from, true, to, true);
+    }
+
+    public interface Visitor {
+        boolean visit(LocalDate day, int id);
+    }
+}
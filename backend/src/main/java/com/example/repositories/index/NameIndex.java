@@ -0,0 +1,173 @@
+package com.example.repositories.index;
+
+import com.example.models.Product;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+// Trigram inverted index over the lowercased product names. Every substring of at
+// least three characters shares all of its trigrams with the names that contain it,
+// so intersecting their postings gives a superset of the matches without scanning
+// the catalog. The candidates still have to be confirmed with matches().
+// The lowercased names are kept as well, so confirming doesn't lowercase again
+public class NameIndex {
+    private static final int GRAM = 3;
+
+    private final ConcurrentMap<Long, ConcurrentBitSet> idsByTrigram = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, IndexedName> namesById = new ConcurrentHashMap<>();
+
+    public void add(int id, String name) {
+        if (name == null) {
+            return;
+        }
+        String lowerName = name.toLowerCase();
+        namesById.put(id, new IndexedName(name, lowerName));
+        for (long trigram : trigrams(lowerName)) {
+            addPosting(trigram, id);
+        }
+    }
+
+    // Fills an empty index with many products at once: the postings are collected in
+    // plain bit sets and each one is published once, instead of a compute per trigram
+    public void addAll(Collection<Product> products) {
+        if (!namesById.isEmpty()) {
+            throw new IllegalStateException("Only an empty index can be filled at once");
+        }
+        Map<Long, BitSet> postings = new HashMap<>();
+        for (Product product : products) {
+            String name = product.getName();
+            if (name == null) {
+                continue;
+            }
+            int id = product.getId().intValue();
+            String lowerName = name.toLowerCase();
+            namesById.put(id, new IndexedName(name, lowerName));
+            for (int i = 0; i + GRAM <= lowerName.length(); i++) {
+                postings.computeIfAbsent(trigram(lowerName, i), t -> new BitSet()).set(id);
+            }
+        }
+        postings.forEach((trigram, ids) -> idsByTrigram.put(trigram, ConcurrentBitSet.of(ids)));
+    }
+
+    public void remove(int id, String name) {
+        if (name == null) {
+            return;
+        }
+        namesById.remove(id);
+        for (long trigram : trigrams(name.toLowerCase())) {
+            removePosting(trigram, id);
+        }
+    }
+
+    // Postings of the new name are added before the stale ones are removed
+    public void update(int id, String previous, String current) {
+        if (previous == null || current == null) {
+            remove(id, previous);
+            add(id, current);
+            return;
+        }
+        if (previous.equals(current)) {
+            return;
+        }
+        String lowerName = current.toLowerCase();
+        Set<Long> currentTrigrams = trigrams(lowerName);
+        namesById.put(id, new IndexedName(current, lowerName));
+        for (long trigram : currentTrigrams) {
+            addPosting(trigram, id);
+        }
+        for (long trigram : trigrams(previous.toLowerCase())) {
+            if (!currentTrigrams.contains(trigram)) {
+                removePosting(trigram, id);
+            }
+        }
+    }
+
+    // Returns a new set with the ids whose name may contain the lowercased query,
+    // or null when the query is too short to narrow the search
+    public BitSet candidates(String lowerQuery) {
+        if (lowerQuery.length() < GRAM) {
+            return null;
+        }
+        List<ConcurrentBitSet> postings = new ArrayList<>();
+        for (long trigram : trigrams(lowerQuery)) {
+            ConcurrentBitSet ids = idsByTrigram.get(trigram);
+            if (ids == null) {
+                return new BitSet();
+            }
+            postings.add(ids);
+        }
+
+        // Start from the rarest trigram so the intersections stay small
+        postings.sort(Comparator.comparingInt(ConcurrentBitSet::cardinality));
+        BitSet result = postings.get(0).snapshot();
+        for (int i = 1; i < postings.size() && !result.isEmpty(); i++) {
+            result.and(postings.get(i).snapshot());
+        }
+        return result;
+    }
+
+    // A query of exactly one trigram has no false positives among the candidates
+    public boolean isExact(String lowerQuery) {
+        return lowerQuery.length() == GRAM;
+    }
+
+    // Exact substring check, same semantics as name.toLowerCase().contains(lowerQuery)
+    public boolean matches(int id, String name, String lowerQuery) {
+        if (name == null) {
+            return false;
+        }
+        IndexedName indexed = namesById.get(id);
+        String lowerName = indexed != null && indexed.name.equals(name) ? indexed.lowerName : name.toLowerCase();
+        return lowerName.contains(lowerQuery);
+    }
+
+    private void addPosting(long trigram, int id) {
+        idsByTrigram.compute(trigram, (t, ids) -> {
+            ConcurrentBitSet result = ids == null ? new ConcurrentBitSet() : ids;
+            result.set(id);
+            return result;
+        });
+    }
+
+    private void removePosting(long trigram, int id) {
+        idsByTrigram.computeIfPresent(trigram, (t, ids) -> {
+            ids.clear(id);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+
+    // Each trigram is packed as three 16 bit chars in a long and multiplied by an odd
+    // constant, which keeps the keys distinct. Long.hashCode of the plain packing xors the
+    // first char into the last one, so most ASCII trigrams collided in idsByTrigram
+    private static Set<Long> trigrams(String text) {
+        Set<Long> trigrams = new HashSet<>();
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            trigrams.add(trigram(text, i));
+        }
+        return trigrams;
+    }
+
+    private static long trigram(String text, int start) {
+        long packed = ((long) text.charAt(start) << 32) | ((long) text.charAt(start + 1) << 16) | text.charAt(start + 2);
+        return packed * 0x9E3779B97F4A7C15L;
+    }
+
+    private static final class IndexedName {
+        private final String name;
+        private final String lowerName;
+
+        private IndexedName(String name, String lowerName) {
+            this.name = name;
+            this.lowerName = lowerName;
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package com.example.repositories.index;
+
+import com.example.models.Product;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+
+// Keeps the product ids ordered by one sortable field so a page can be read
+// without sorting the whole catalog. Ties are always ordered by ascending id
+public class SortedView<K extends Comparable<? super K>> {
+    private final Function<Product, K> key;
+    private final Comparator<K> keyOrder = Comparator.nullsLast(Comparator.naturalOrder());
+    // Categories are interned, so equal keys are often the same instance
+    private final Comparator<Entry<K>> entryOrder = (a, b) -> {
+        int byKey = a.key == b.key ? 0 : keyOrder.compare(a.key, b.key);
+        return byKey != 0 ? byKey : Integer.compare(a.id, b.id);
+    };
+    // A skip list map rather than a set, only the map can be built from sorted entries in one pass
+    private volatile ConcurrentSkipListMap<Entry<K>, Boolean> entries = new ConcurrentSkipListMap<>(entryOrder);
+
+    public SortedView(Function<Product, K> key) {
+        this.key = key;
+    }
+
+    public void add(int id, Product product) {
+        entries.put(new Entry<>(key.apply(product), id), Boolean.TRUE);
+    }
+
+    // Adds many products at once. An empty view is built in a single pass: adding them one
+    // by one in key order keeps the index levels of the skip list thin, so the entries are
+    // sorted in an array first and the skip list is built from it. Callers keep any other
+    // writer out while the view is filled
+    public void addAll(Collection<Product> products) {
+        if (!entries.isEmpty()) {
+            for (Product product : products) {
+                add(product.getId().intValue(), product);
+            }
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        Entry<K>[] sorted = new Entry[products.size()];
+        int i = 0;
+        for (Product product : products) {
+            sorted[i++] = new Entry<>(key.apply(product), product.getId().intValue());
+        }
+        Arrays.sort(sorted, entryOrder);
+        entries = new ConcurrentSkipListMap<>(new SortedEntries<>(sorted, entryOrder));
+    }
+
+    public void remove(int id, Product product) {
+        entries.remove(new Entry<>(key.apply(product), id));
+    }
+
+    // The new entry is added before the old one goes away, readers skip whichever is stale
+    public void update(int id, Product previous, Product current) {
+        K previousKey = key.apply(previous);
+        K currentKey = key.apply(current);
+        if (keyOrder.compare(previousKey, currentKey) == 0) {
+            return;
+        }
+        entries.put(new Entry<>(currentKey, id), Boolean.TRUE);
+        entries.remove(new Entry<>(previousKey, id));
+    }
+
+    // Comparator equivalent to the order of the view, without the id tie-break
+    public Comparator<Product> comparator() {
+        return Comparator.comparing(key, keyOrder);
+    }
+
+    // Sets the ids with a key between both bounds (inclusive, a null bound is open) in the
+    // given set, products without a key are left out. Gives up as soon as more than limit
+    // entries are in the range and returns false, the set is then incomplete.
+    // Entries left behind by a concurrent update may be included
+    public boolean collect(K from, K to, BitSet into, int limit) {
+        NavigableSet<Entry<K>> entries = this.entries.keySet();
+        Iterable<Entry<K>> range = from == null ? entries : entries.tailSet(new Entry<>(from, Integer.MIN_VALUE), true);
+        int count = 0;
+        for (Entry<K> entry : range) {
+            if (entry.key == null || to != null && keyOrder.compare(entry.key, to) > 0) {
+                return true;
+            }
+            if (++count > limit) {
+                return false;
+            }
+            into.set(entry.id);
+        }
+        return true;
+    }
+
+    // Visits the current version of each product in order until the visitor returns false.
+    // Entries left behind by a concurrent update don't match the current key and are skipped
+    public void walk(boolean descending, IntFunction<Product> lookup, Predicate<Product> visitor) {
+        walk(descending, null, lookup, visitor);
+    }
+
+    // Same, starting right after the position of a product (its key and id) instead of at
+    // the first entry. The product doesn't need to be in the view
+    public void walk(boolean descending, Product after, IntFunction<Product> lookup, Predicate<Product> visitor) {
+        NavigableSet<Entry<K>> entries = this.entries.keySet();
+        Entry<K> from = after == null ? null : new Entry<>(key.apply(after), after.getId().intValue());
+        if (!descending) {
+            for (Entry<K> entry : from == null ? entries : entries.tailSet(from, false)) {
+                if (!visit(entry, lookup, visitor)) {
+                    return;
+                }
+            }
+            return;
+        }
+
+        // Walk the keys backwards but keep each group of equal keys in ascending id order
+        Entry<K> last;
+        if (from == null) {
+            // A null key sorts last, so this sentinel is above every entry
+            last = entries.floor(new Entry<>(null, Integer.MAX_VALUE));
+        } else {
+            // The rest of the group of the starting key comes first
+            for (Entry<K> entry : entries.subSet(from, false, new Entry<>(from.key, Integer.MAX_VALUE), true)) {
+                if (!visit(entry, lookup, visitor)) {
+                    return;
+                }
+            }
+            last = entries.lower(new Entry<>(from.key, Integer.MIN_VALUE));
+        }
+        while (last != null) {
+            Entry<K> groupStart = new Entry<>(last.key, Integer.MIN_VALUE);
+            for (Entry<K> entry : entries.subSet(groupStart, true, last, true)) {
+                if (!visit(entry, lookup, visitor)) {
+                    return;
+                }
+            }
+            last = entries.lower(groupStart);
+        }
+    }
+
+    private boolean visit(Entry<K> entry, IntFunction<Product> lookup, Predicate<Product> visitor) {
+        Product product = lookup.apply(entry.id);
+        if (product == null || keyOrder.compare(key.apply(product), entry.key) != 0) {
+            return true;
+        }
+        return visitor.test(product);
+    }
+
+    // Just enough of a SortedMap over a sorted array for the ConcurrentSkipListMap
+    // constructor, which only reads the comparator and iterates the entries
+    private static final class SortedEntries<E> extends AbstractMap<E, Boolean>
+            implements SortedMap<E, Boolean> {
+        private final E[] sorted;
+        private final Comparator<E> order;
+
+        private SortedEntries(E[] sorted, Comparator<E> order) {
+            this.sorted = sorted;
+            this.order = order;
+        }
+
+        @Override
+        public Comparator<? super E> comparator() {
+            return order;
+        }
+
+        @Override
+        public Set<Map.Entry<E, Boolean>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Map.Entry<E, Boolean>> iterator() {
+                    return Arrays.stream(sorted).map(entry -> Map.entry(entry, Boolean.TRUE)).iterator();
+                }
+
+                @Override
+                public int size() {
+                    return sorted.length;
+                }
+            };
+        }
+
+        @Override
+        public E firstKey() {
+            return sorted[0];
+        }
+
+        @Override
+        public E lastKey() {
+            return sorted[sorted.length - 1];
+        }
+
+        @Override
+        public SortedMap<E, Boolean> subMap(E fromKey, E toKey) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public SortedMap<E, Boolean> headMap(E toKey) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public SortedMap<E, Boolean> tailMap(E fromKey) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static final class Entry<K> {
+        private final K key;
+        private final int id;
+
+        private Entry(K key, int id) {
+            this.key = key;
+            this.id = id;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.repositories.index;
+
+// Splits the product ids between the ones with stock and the ones without it
+public class StockIndex {
+    private final ConcurrentBitSet inStock = new ConcurrentBitSet();
+    private final ConcurrentBitSet outOfStock = new ConcurrentBitSet();
+
+    public void add(int id, Integer stock) {
+        update(id, null, stock);
+    }
+
+    public void remove(int id, Integer stock) {
+        update(id, stock, null);
+    }
+
+    // The id is added to its new set before leaving the old one, so concurrent
+    // readers find it in at least one of them during the move
+    public void update(int id, Integer previous, Integer current) {
+        ConcurrentBitSet from = setFor(previous);
+        ConcurrentBitSet to = setFor(current);
+        if (from == to) {
+            return;
+        }
+        if (to != null) {
+            to.set(id);
+        }
+        if (from != null) {
+            from.clear(id);
+        }
+    }
+
+    // Returns the live set for the requested availability, callers must not modify it
+    public ConcurrentBitSet matching(boolean available) {
+        return available ? inStock : outOfStock;
+    }
+
+    private ConcurrentBitSet setFor(Integer stock) {
+        if (stock == null) {
+            return null;
+        }
+        if (stock > 0) {
+            return inStock;
+        }
+        return stock == 0 ? outOfStock : null;
+    }
+}
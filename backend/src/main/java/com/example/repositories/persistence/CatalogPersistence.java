@@ -0,0 +1,187 @@
+package com.example.repositories.persistence;
+
+import com.example.models.Product;
+import com.example.repositories.InMemoryProductRepository;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+// Makes InMemoryProductRepository survive restarts. On startup the latest snapshot is
+// loaded and the log written after it is replayed, then every change is logged before it
+// is applied. A snapshot is taken periodically (when something changed) and on shutdown,
+// after which the older snapshots and log segments are deleted.
+// Only the in-memory repository is persisted this way, with the other types the setting
+// is ignored (off-heap has its own snapshot, inventory.off-heap.snapshot). The condition
+// reads both properties because @ConditionalOnBean is unreliable on scanned components
+@Component
+@ConditionalOnExpression("${inventory.persistence.enabled:false} and '${inventory.repository.type:in-memory}' == 'in-memory'")
+public class CatalogPersistence implements MeterBinder {
+    private static final Logger logger = LoggerFactory.getLogger(CatalogPersistence.class);
+
+    private final InMemoryProductRepository repository;
+    private final Path directory;
+    private final FsyncPolicy fsyncPolicy;
+    private final long fsyncIntervalMillis;
+    private final long snapshotIntervalSeconds;
+    // Snapshots write files, so they are serialized without a monitor
+    private final ReentrantLock snapshotLock = new ReentrantLock();
+    private WriteAheadLog log;
+    private ScheduledExecutorService snapshots;
+    private boolean snapshotNeeded;
+    private final LongAdder snapshotFailures = new LongAdder();
+
+    public CatalogPersistence(InMemoryProductRepository repository,
+                              @Value("${inventory.persistence.directory:data}") String directory,
+                              @Value("${inventory.persistence.fsync:batch}") FsyncPolicy fsyncPolicy,
+                              @Value("${inventory.persistence.fsync-interval-ms:100}") long fsyncIntervalMillis,
+                              @Value("${inventory.persistence.snapshot-interval-seconds:300}") long snapshotIntervalSeconds) {
+        this.repository = repository;
+        this.directory = Paths.get(directory);
+        this.fsyncPolicy = fsyncPolicy;
+        this.fsyncIntervalMillis = fsyncIntervalMillis;
+        this.snapshotIntervalSeconds = snapshotIntervalSeconds;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        Files.createDirectories(directory);
+        long nextSegment = recover() + 1;
+        log = new WriteAheadLog(directory, nextSegment, fsyncPolicy, fsyncIntervalMillis);
+        repository.setJournal(log);
+
+        if (snapshotIntervalSeconds > 0) {
+            snapshots = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "catalog-snapshot");
+                thread.setDaemon(true);
+                return thread;
+            });
+            snapshots.scheduleWithFixedDelay(this::scheduledSnapshot, snapshotIntervalSeconds, snapshotIntervalSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("inventory.persistence.snapshot.failures", snapshotFailures, LongAdder::sum)
+            .register(registry);
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        if (snapshots != null) {
+            snapshots.shutdown();
+        }
+        snapshot();
+        log.close();
+    }
+
+    // Loads the latest snapshot and replays the log after it. Returns the number of the
+    // last segment found, 0 when the directory is empty
+    private long recover() throws IOException {
+        long startTime = System.currentTimeMillis();
+        List<Long> snapshotNumbers = SnapshotFile.snapshots(directory);
+        long fromSegment = 0;
+        long products = 0;
+        if (!snapshotNumbers.isEmpty()) {
+            fromSegment = snapshotNumbers.get(snapshotNumbers.size() - 1);
+            // The whole snapshot is loaded before anything is indexed, then only the log
+            // records after it are applied one by one
+            List<Product> loaded = new ArrayList<>();
+            long nextId = SnapshotFile.read(SnapshotFile.path(directory, fromSegment), loaded::add);
+            repository.restoreAll(loaded);
+            repository.advanceIdCounter(nextId);
+            products = loaded.size();
+        }
+
+        List<Long> segments = WriteAheadLog.segments(directory);
+        long records = 0;
+        long lastSegment = fromSegment;
+        for (int i = 0; i < segments.size(); i++) {
+            long segment = segments.get(i);
+            if (segment < fromSegment) {
+                continue;
+            }
+            records += WriteAheadLog.replay(WriteAheadLog.segmentPath(directory, segment), i == segments.size() - 1, record -> {
+                if (record.isDelete()) {
+                    repository.deleteById(record.getId());
+                    repository.advanceIdCounter(record.getId() + 1);
+                } else {
+                    repository.restore(record.getProduct());
+                }
+            });
+            lastSegment = segment;
+        }
+        snapshotNeeded = records > 0;
+
+        logger.info("Recovered {} products from snapshot and {} log records in {} ms",
+            products, records, System.currentTimeMillis() - startTime);
+        return lastSegment;
+    }
+
+    private void scheduledSnapshot() {
+        try {
+            snapshot();
+        } catch (IOException | RuntimeException e) {
+            snapshotFailures.increment();
+            logger.error("Catalog snapshot failed", e);
+        }
+    }
+
+    // Starts a new log segment while no write is in progress, then copies the catalog.
+    // Writes that land while the copy is made are also in the new segment, and replaying
+    // them over the snapshot is harmless because every record holds a whole version
+    public void snapshot() throws IOException {
+        snapshotLock.lock();
+        try {
+            if (!snapshotNeeded && log.recordsInSegment() == 0) {
+                return;
+            }
+            long[] segment = new long[1];
+            repository.checkpoint(() -> {
+                try {
+                    segment[0] = log.rotate();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            // Read before the copy, recovery also moves the counter past every restored id
+            SnapshotFile.write(directory, segment[0], repository.nextId(), repository.storedProducts());
+            snapshotNeeded = false;
+
+            for (long snapshot : SnapshotFile.snapshots(directory)) {
+                if (snapshot < segment[0]) {
+                    Files.deleteIfExists(SnapshotFile.path(directory, snapshot));
+                }
+            }
+            for (long oldSegment : WriteAheadLog.segments(directory)) {
+                if (oldSegment < segment[0]) {
+                    Files.deleteIfExists(WriteAheadLog.segmentPath(directory, oldSegment));
+                }
+            }
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+}
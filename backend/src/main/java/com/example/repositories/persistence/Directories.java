@@ -0,0 +1,22 @@
+package com.example.repositories.persistence;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+final class Directories {
+    private Directories() {}
+
+    // Makes a file created or renamed in the directory survive a crash, the entry is
+    // only durable once the directory itself is forced. Windows can't open a directory,
+    // and there NTFS journals the rename already
+    static void force(Path directory) throws IOException {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (AccessDeniedException e) {
+            // Windows
+        }
+    }
+}
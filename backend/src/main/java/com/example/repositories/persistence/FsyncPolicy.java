@@ -0,0 +1,13 @@
+package com.example.repositories.persistence;
+
+// When the write-ahead log forces its records to disk
+public enum FsyncPolicy {
+    // Every change is forced before the write returns, one fsync per change
+    ALWAYS,
+    // Writers wait for their change to be forced, but the changes that arrive while an
+    // fsync is running are forced together by the next one (group commit)
+    BATCH,
+    // Writers don't wait, the log is forced every interval. A crash may lose the
+    // changes of the last interval
+    INTERVAL
+}
@@ -0,0 +1,178 @@
+package com.example.repositories.persistence;
+
+import com.example.models.Product;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.zip.CRC32;
+
+// A change of one product as stored in the log and in snapshots: the full new version
+// of the product, or its deletion. Replaying a record twice has the same effect as once.
+// Framed as [body length][CRC32 of body][body] so a torn or corrupt tail can be detected
+public class ProductRecord {
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    private static final int HEADER_LENGTH = 8;
+    private static final int MAX_BODY_LENGTH = 1 << 24;
+
+    private final Long id;
+    private final Product product;
+    private final int length;
+
+    private ProductRecord(Long id, Product product, int length) {
+        this.id = id;
+        this.product = product;
+        this.length = length;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    // The stored version, null for a deletion
+    public Product getProduct() {
+        return product;
+    }
+
+    public boolean isDelete() {
+        return product == null;
+    }
+
+    // Bytes the framed record takes
+    public int getLength() {
+        return length;
+    }
+
+    public static byte[] put(Product product) {
+        return frame(body -> {
+            body.writeByte(PUT);
+            body.writeLong(product.getId());
+            writeString(body, product.getName());
+            writeString(body, product.getCategory());
+            body.writeDouble(product.getUnitPrice());
+            body.writeBoolean(product.getExpirationDate() != null);
+            if (product.getExpirationDate() != null) {
+                body.writeLong(product.getExpirationDate().toEpochDay());
+            }
+            body.writeBoolean(product.getInStock() != null);
+            if (product.getInStock() != null) {
+                body.writeInt(product.getInStock());
+            }
+            writeDateTime(body, product.getCreatedAt());
+            writeDateTime(body, product.getUpdatedAt());
+        });
+    }
+
+    public static byte[] delete(Long id) {
+        return frame(body -> {
+            body.writeByte(DELETE);
+            body.writeLong(id);
+        });
+    }
+
+    // Returns null at the end of the input, and also when the rest of it is a torn or
+    // corrupt record
+    public static ProductRecord read(DataInputStream input) throws IOException {
+        byte[] body;
+        try {
+            int length = input.readInt();
+            int checksum = input.readInt();
+            if (length <= 0 || length > MAX_BODY_LENGTH) {
+                return null;
+            }
+            body = new byte[length];
+            input.readFully(body);
+            if (checksum != checksum(body)) {
+                return null;
+            }
+        } catch (EOFException e) {
+            return null;
+        }
+
+        DataInputStream fields = new DataInputStream(new ByteArrayInputStream(body));
+        byte type = fields.readByte();
+        Long id = fields.readLong();
+        if (type == DELETE) {
+            return new ProductRecord(id, null, HEADER_LENGTH + body.length);
+        }
+        Product product = new Product();
+        product.setId(id);
+        product.setName(readString(fields));
+        product.setCategory(readString(fields));
+        product.setUnitPrice(fields.readDouble());
+        product.setExpirationDate(fields.readBoolean() ? LocalDate.ofEpochDay(fields.readLong()) : null);
+        product.setInStock(fields.readBoolean() ? fields.readInt() : null);
+        product.setCreatedAt(readDateTime(fields));
+        product.setUpdatedAt(readDateTime(fields));
+        return new ProductRecord(id, product, HEADER_LENGTH + body.length);
+    }
+
+    private interface BodyWriter {
+        void write(DataOutputStream body) throws IOException;
+    }
+
+    private static byte[] frame(BodyWriter writer) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(96);
+            DataOutputStream body = new DataOutputStream(bytes);
+            writer.write(body);
+            byte[] content = bytes.toByteArray();
+
+            ByteArrayOutputStream framed = new ByteArrayOutputStream(content.length + HEADER_LENGTH);
+            DataOutputStream output = new DataOutputStream(framed);
+            output.writeInt(content.length);
+            output.writeInt(checksum(content));
+            output.write(content);
+            return framed.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static int checksum(byte[] body) {
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        return (int) crc.getValue();
+    }
+
+    private static void writeString(DataOutputStream body, String value) throws IOException {
+        if (value == null) {
+            body.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        body.writeInt(bytes.length);
+        body.write(bytes);
+    }
+
+    private static String readString(DataInputStream fields) throws IOException {
+        int length = fields.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        fields.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeDateTime(DataOutputStream body, LocalDateTime value) throws IOException {
+        body.writeBoolean(value != null);
+        if (value != null) {
+            body.writeLong(value.toEpochSecond(ZoneOffset.UTC));
+            body.writeInt(value.getNano());
+        }
+    }
+
+    private static LocalDateTime readDateTime(DataInputStream fields) throws IOException {
+        return fields.readBoolean() ? LocalDateTime.ofEpochSecond(fields.readLong(), fields.readInt(), ZoneOffset.UTC) : null;
+    }
+}
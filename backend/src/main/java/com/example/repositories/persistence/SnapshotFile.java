@@ -0,0 +1,92 @@
+package com.example.repositories.persistence;
+
+import com.example.models.Product;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Compact copy of the whole catalog (snapshot-<n>.bin). Snapshot n is taken right after
+// segment n of the log was started, so recovery loads it and replays the segments >= n.
+// Written to a temporary file that is renamed once complete, so a snapshot on disk is
+// never partial
+public class SnapshotFile {
+    private static final Pattern SNAPSHOT_NAME = Pattern.compile("snapshot-(\\d+)\\.bin");
+    private static final int MAGIC = 0x494E5653;
+    private static final int VERSION = 1;
+    // After the magic, the version and the next id
+    private static final long COUNT_OFFSET = 16;
+
+    private SnapshotFile() {}
+
+    public static Path path(Path directory, long segment) {
+        return directory.resolve(String.format("snapshot-%016d.bin", segment));
+    }
+
+    // Numbers of the snapshots in the directory, in ascending order
+    public static List<Long> snapshots(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> SNAPSHOT_NAME.matcher(file.getFileName().toString()))
+                .filter(Matcher::matches)
+                .map(matcher -> Long.parseLong(matcher.group(1)))
+                .sorted()
+                .collect(Collectors.toList());
+        }
+    }
+
+    // Streams the products into the file, they may change while it is written. The count
+    // in the header is only known at the end, so it is filled in before the file is synced
+    public static void write(Path directory, long segment, long nextId, Iterable<Product> products) throws IOException {
+        Path target = path(directory, segment);
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(temporary.toFile());
+             DataOutputStream output = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeLong(nextId);
+            output.writeInt(0);
+            int count = 0;
+            for (Product product : products) {
+                output.write(ProductRecord.put(product));
+                count++;
+            }
+            output.flush();
+            file.getChannel().write(ByteBuffer.allocate(Integer.BYTES).putInt(0, count), COUNT_OFFSET);
+            file.getFD().sync();
+        }
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        Directories.force(directory);
+    }
+
+    // Passes every product of the snapshot to the consumer and returns the next id
+    public static long read(Path file, Consumer<Product> consumer) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                throw new IllegalStateException("Not a catalog snapshot: " + file);
+            }
+            long nextId = input.readLong();
+            int count = input.readInt();
+            for (int i = 0; i < count; i++) {
+                ProductRecord record = ProductRecord.read(input);
+                if (record == null || record.isDelete()) {
+                    throw new IllegalStateException("Corrupt catalog snapshot: " + file);
+                }
+                consumer.accept(record.getProduct());
+            }
+            return nextId;
+        }
+    }
+}
@@ -0,0 +1,329 @@
+package com.example.repositories.persistence;
+
+import com.example.models.Product;
+import com.example.repositories.ProductJournal;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Append-only log of product changes, split in numbered segments (wal-<n>.log).
+// A new segment is started by rotate() when a snapshot is taken, so the snapshot plus
+// the segments from its number on hold the whole catalog.
+//
+// With BATCH and INTERVAL the changes are buffered and a flusher thread writes and forces
+// everything buffered at once. Lock order is ioLock, then stateLock. Both are
+// ReentrantLocks, so a virtual thread blocked on them or on the file doesn't pin its carrier
+public class WriteAheadLog implements ProductJournal, Closeable {
+    private static final Pattern SEGMENT_NAME = Pattern.compile("wal-(\\d+)\\.log");
+
+    private final Path directory;
+    private final FsyncPolicy policy;
+    private final long intervalMillis;
+    private final ReentrantLock ioLock = new ReentrantLock();
+    private final ReentrantLock stateLock = new ReentrantLock();
+    private final Condition stateChanged = stateLock.newCondition();
+    private final AtomicLong recordsInSegment = new AtomicLong();
+    private final Thread flusher;
+    // Guarded by ioLock
+    private FileChannel channel;
+    private long segment;
+    // Guarded by stateLock
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private long appended = 0;
+    private long durable = 0;
+    private volatile IOException failure;
+    private volatile boolean closed = false;
+
+    public WriteAheadLog(Path directory, long segment, FsyncPolicy policy, long intervalMillis) throws IOException {
+        this.directory = directory;
+        this.policy = policy;
+        this.intervalMillis = intervalMillis;
+        this.segment = segment;
+        this.channel = open(segmentPath(directory, segment));
+        Directories.force(directory);
+        if (policy == FsyncPolicy.ALWAYS) {
+            flusher = null;
+        } else {
+            flusher = new Thread(this::flushLoop, "wal-flusher");
+            flusher.setDaemon(true);
+            flusher.start();
+        }
+    }
+
+    @Override
+    public long put(Product product) {
+        return append(ProductRecord.put(product), 1);
+    }
+
+    // One append for the whole batch, so the flusher forces it at once instead of waking
+    // up for the first records and syncing the batch in pieces
+    @Override
+    public long putAll(List<Product> products) {
+        ByteArrayOutputStream records = new ByteArrayOutputStream(products.size() * 64);
+        for (Product product : products) {
+            records.writeBytes(ProductRecord.put(product));
+        }
+        return append(records.toByteArray(), products.size());
+    }
+
+    @Override
+    public long delete(Long id) {
+        return append(ProductRecord.delete(id), 1);
+    }
+
+    @Override
+    public void awaitDurable(long position) {
+        if (policy != FsyncPolicy.BATCH) {
+            return;
+        }
+        stateLock.lock();
+        try {
+            try {
+                while (durable < position && failure == null) {
+                    stateChanged.await();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new UncheckedIOException(new InterruptedIOException("Interrupted waiting for the write-ahead log"));
+            }
+            if (durable < position) {
+                throw new UncheckedIOException("Write-ahead log failed", failure);
+            }
+        } finally {
+            stateLock.unlock();
+        }
+    }
+
+    private long append(byte[] records, int count) {
+        if (policy == FsyncPolicy.ALWAYS) {
+            ioLock.lock();
+            try {
+                try {
+                    ensureOpen();
+                    write(records);
+                    channel.force(false);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Write-ahead log failed", e);
+                }
+                recordsInSegment.addAndGet(count);
+                return 0;
+            } finally {
+                ioLock.unlock();
+            }
+        }
+        stateLock.lock();
+        try {
+            try {
+                ensureOpen();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Write-ahead log failed", e);
+            }
+            pending.writeBytes(records);
+            recordsInSegment.addAndGet(count);
+            if (policy == FsyncPolicy.BATCH) {
+                stateChanged.signalAll();
+            }
+            return ++appended;
+        } finally {
+            stateLock.unlock();
+        }
+    }
+
+    // Must be called holding stateLock, or ioLock with ALWAYS
+    private void ensureOpen() throws IOException {
+        if (failure != null) {
+            throw failure;
+        }
+        if (closed) {
+            throw new IllegalStateException("Write-ahead log is closed");
+        }
+    }
+
+    private void flushLoop() {
+        try {
+            while (true) {
+                stateLock.lock();
+                try {
+                    if (policy == FsyncPolicy.INTERVAL) {
+                        if (!closed) {
+                            stateChanged.await(intervalMillis, TimeUnit.MILLISECONDS);
+                        }
+                    } else {
+                        while (pending.size() == 0 && !closed) {
+                            stateChanged.await();
+                        }
+                    }
+                    if (closed && pending.size() == 0) {
+                        return;
+                    }
+                } finally {
+                    stateLock.unlock();
+                }
+                flush();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            stateLock.lock();
+            try {
+                failure = e;
+                stateChanged.signalAll();
+            } finally {
+                stateLock.unlock();
+            }
+        }
+    }
+
+    // Writes and forces everything buffered so far into the current segment
+    private void flush() throws IOException {
+        ioLock.lock();
+        try {
+            byte[] batch;
+            long upTo;
+            stateLock.lock();
+            try {
+                batch = pending.toByteArray();
+                pending.reset();
+                upTo = appended;
+            } finally {
+                stateLock.unlock();
+            }
+            if (batch.length > 0) {
+                write(batch);
+                channel.force(false);
+            }
+            stateLock.lock();
+            try {
+                durable = Math.max(durable, upTo);
+                stateChanged.signalAll();
+            } finally {
+                stateLock.unlock();
+            }
+        } finally {
+            ioLock.unlock();
+        }
+    }
+
+    // Closes the current segment and starts the next one, returning its number.
+    // The caller must make sure no change is being appended meanwhile
+    public long rotate() throws IOException {
+        ioLock.lock();
+        try {
+            flush();
+            channel.close();
+            segment++;
+            channel = open(segmentPath(directory, segment));
+            Directories.force(directory);
+            recordsInSegment.set(0);
+            return segment;
+        } finally {
+            ioLock.unlock();
+        }
+    }
+
+    public long recordsInSegment() {
+        return recordsInSegment.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        stateLock.lock();
+        try {
+            closed = true;
+            stateChanged.signalAll();
+        } finally {
+            stateLock.unlock();
+        }
+        if (flusher != null) {
+            try {
+                flusher.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        ioLock.lock();
+        try {
+            if (channel.isOpen()) {
+                flush();
+                channel.close();
+            }
+        } finally {
+            ioLock.unlock();
+        }
+    }
+
+    // Must be called holding ioLock
+    private void write(byte[] bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static FileChannel open(Path path) throws IOException {
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    public static Path segmentPath(Path directory, long segment) {
+        return directory.resolve(String.format("wal-%016d.log", segment));
+    }
+
+    // Numbers of the segments in the directory, in ascending order
+    public static List<Long> segments(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> SEGMENT_NAME.matcher(file.getFileName().toString()))
+                .filter(Matcher::matches)
+                .map(matcher -> Long.parseLong(matcher.group(1)))
+                .sorted()
+                .collect(Collectors.toList());
+        }
+    }
+
+    // Passes every record of a segment to the consumer and returns how many there were.
+    // A torn tail is expected after a crash in the last segment and is cut off, anywhere
+    // else it means the log is damaged
+    public static long replay(Path segment, boolean last, Consumer<ProductRecord> consumer) throws IOException {
+        long size = Files.size(segment);
+        long position = 0;
+        long records = 0;
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(segment), 1 << 16))) {
+            ProductRecord record;
+            while ((record = ProductRecord.read(input)) != null) {
+                consumer.accept(record);
+                position += record.getLength();
+                records++;
+            }
+        }
+
+        if (position < size) {
+            if (!last) {
+                throw new IllegalStateException("Corrupt write-ahead log segment: " + segment);
+            }
+            try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+                channel.truncate(position);
+                channel.force(false);
+            }
+        }
+        return records;
+    }
+}
@@ -0,0 +1,327 @@
+package com.example.service;
+
+import com.example.models.Product;
+import com.example.models.ProductChanges;
+import com.example.repositories.ProductRepository;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+// Server-sent events for the products changed through ProductService. Writes only record
+// the id they touched; once per tick the ids collected are resolved to their latest version
+// (or to a deletion), the metrics rows that moved are worked out, and the batch is
+// serialized once and sent to every subscriber. A burst of writes to the same products
+// becomes a single event per tick, and nothing is recorded while nobody listens.
+// Subscribers are async requests, an idle one costs a socket and no thread. The tick thread
+// never writes to a socket: every subscriber has a bounded queue of events, drained by a
+// small pool of sender threads, and a subscriber whose queue is full has fallen behind and
+// is completed, its client reconnects and starts again from the whole metrics table
+@Component
+public class ChangeFeed implements MeterBinder {
+    private static final Logger logger = LoggerFactory.getLogger(ChangeFeed.class);
+    // Past this many changed ids in one tick subscribers get a reset event and refetch
+    private static final int MAX_PENDING = 10000;
+    private static final long HEARTBEAT_MILLIS = 20000;
+    // Events a subscriber may have waiting before it's dropped, 8 seconds of ticks by default
+    private static final int QUEUE_CAPACITY = 32;
+
+    private final ProductRepository repository;
+    private final ObjectMapper objectMapper;
+    private final long tickMillis;
+    private final int senderThreads;
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final LongAdder dropped = new LongAdder();
+    private final ReentrantLock pendingLock = new ReentrantLock();
+    // Guarded by pendingLock
+    private Set<Long> pending = new LinkedHashSet<>();
+    private boolean overflowed = false;
+    // Metrics rows as of the last batch, written by the tick thread and by the first subscriber
+    private volatile Map<String, Map<String, Object>> lastMetrics = Map.of();
+    private long lastSend = System.currentTimeMillis();
+    private ScheduledExecutorService ticks;
+    // Until started events are sent by the thread that queues them
+    private ExecutorService senders;
+    private volatile Executor sender = Runnable::run;
+
+    @Autowired
+    public ChangeFeed(ProductRepository repository, ObjectMapper objectMapper,
+                      @Value("${inventory.change-feed.tick-ms:250}") long tickMillis,
+                      @Value("${inventory.change-feed.sender-threads:2}") int senderThreads) {
+        this.repository = repository;
+        this.objectMapper = objectMapper;
+        this.tickMillis = tickMillis;
+        this.senderThreads = senderThreads;
+    }
+
+    public ChangeFeed(ProductRepository repository, ObjectMapper objectMapper, long tickMillis) {
+        this(repository, objectMapper, tickMillis, 2);
+    }
+
+    @PostConstruct
+    public void start() {
+        ticks = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "change-feed");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticks.scheduleWithFixedDelay(this::scheduledTick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+        senders = Executors.newFixedThreadPool(senderThreads, runnable -> {
+            Thread thread = new Thread(runnable, "change-feed-sender");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sender = senders;
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (ticks != null) {
+            ticks.shutdown();
+        }
+        if (senders != null) {
+            senders.shutdown();
+        }
+        for (Subscriber subscriber : subscribers) {
+            subscriber.emitter.complete();
+        }
+    }
+
+    // The first event holds the whole metrics table, later ones what changed since
+    public SseEmitter subscribe() throws IOException {
+        // No timeout, dead connections are found by the heartbeat
+        SseEmitter emitter = new SseEmitter(0L);
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(error -> subscribers.remove(subscriber));
+        Map<String, Map<String, Object>> metrics = metricsByCategory();
+        emitter.send(SseEmitter.event().name("changes").data(objectMapper.writeValueAsString(
+            new ProductChanges(List.of(), List.of(), new ArrayList<>(metrics.values()), List.of()))));
+        if (subscribers.isEmpty()) {
+            // Nothing was published while nobody listened, deltas start from here
+            lastMetrics = metrics;
+        }
+        subscribers.add(subscriber);
+        return emitter;
+    }
+
+    public int subscriberCount() {
+        return subscribers.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("inventory.change-feed.subscribers", this, ChangeFeed::subscriberCount)
+            .register(registry);
+        FunctionCounter.builder("inventory.change-feed.dropped-subscribers", dropped, LongAdder::sum)
+            .register(registry);
+    }
+
+    public void changed(Long id) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        pendingLock.lock();
+        try {
+            if (pending.size() < MAX_PENDING) {
+                pending.add(id);
+            } else {
+                overflowed = true;
+            }
+        } finally {
+            pendingLock.unlock();
+        }
+    }
+
+    public void changed(List<Product> products) {
+        for (Product product : products) {
+            changed(product.getId());
+        }
+    }
+
+    // Sends an event of its own right away, serialized once for every subscriber
+    public void publish(String name, Object data) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        try {
+            send(SseEmitter.event().name(name).data(objectMapper.writeValueAsString(data)));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void scheduledTick() {
+        try {
+            tick();
+        } catch (RuntimeException e) {
+            logger.warn("Change feed tick failed", e);
+        }
+    }
+
+    // Publishes what changed since the last tick, or a heartbeat when idle for long enough.
+    // Without subscribers there is nobody to tell, the first one gets the whole table anyway
+    public void tick() {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        Set<Long> ids;
+        boolean reset;
+        pendingLock.lock();
+        try {
+            ids = pending;
+            reset = overflowed;
+            pending = new LinkedHashSet<>();
+            overflowed = false;
+        } finally {
+            pendingLock.unlock();
+        }
+
+        long now = System.currentTimeMillis();
+        if (reset) {
+            lastMetrics = Map.of();
+            send(SseEmitter.event().name("reset").data("{}"));
+        } else if (!ids.isEmpty()) {
+            send(SseEmitter.event().name("changes").data(changes(ids)));
+        } else if (now - lastSend >= HEARTBEAT_MILLIS) {
+            send(SseEmitter.event().comment("heartbeat"));
+        } else {
+            return;
+        }
+        lastSend = now;
+    }
+
+    private String changes(Set<Long> ids) {
+        List<Product> products = new ArrayList<>();
+        List<Long> deletedIds = new ArrayList<>();
+        for (Long id : ids) {
+            Optional<Product> product = repository.findById(id);
+            if (product.isPresent()) {
+                products.add(product.get());
+            } else {
+                deletedIds.add(id);
+            }
+        }
+
+        Map<String, Map<String, Object>> metrics = metricsByCategory();
+        List<Map<String, Object>> changedMetrics = new ArrayList<>();
+        for (Map.Entry<String, Map<String, Object>> row : metrics.entrySet()) {
+            if (!row.getValue().equals(lastMetrics.get(row.getKey()))) {
+                changedMetrics.add(row.getValue());
+            }
+        }
+        List<String> removedCategories = new ArrayList<>();
+        for (String category : lastMetrics.keySet()) {
+            if (!metrics.containsKey(category)) {
+                removedCategories.add(category);
+            }
+        }
+        lastMetrics = metrics;
+
+        try {
+            return objectMapper.writeValueAsString(new ProductChanges(products, deletedIds, changedMetrics, removedCategories));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Map<String, Map<String, Object>> metricsByCategory() {
+        Map<String, Map<String, Object>> metrics = new LinkedHashMap<>();
+        for (Map<String, Object> row : ProductService.metricsTable(repository.getCategoryTotals())) {
+            metrics.put((String) row.get("category"), row);
+        }
+        return metrics;
+    }
+
+    // Queues the event for every subscriber, dropping the ones that fell behind
+    private void send(SseEmitter.SseEventBuilder event) {
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.queue.offer(event)) {
+                subscriber.schedule();
+            } else {
+                logger.debug("Dropping a change feed subscriber that fell behind");
+                dropped.increment();
+                subscribers.remove(subscriber);
+                subscriber.queue.clear();
+                subscriber.emitter.complete();
+            }
+        }
+    }
+
+    private final class Subscriber {
+        private final SseEmitter emitter;
+        private final BlockingQueue<SseEmitter.SseEventBuilder> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        // Set while a sender drains the queue, so one subscriber gets its events in order
+        private final AtomicBoolean draining = new AtomicBoolean();
+
+        private Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        private void schedule() {
+            if (draining.compareAndSet(false, true)) {
+                try {
+                    sender.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    // Shutting down
+                    draining.set(false);
+                }
+            }
+        }
+
+        private void drain() {
+            try {
+                SseEmitter.SseEventBuilder event;
+                while ((event = queue.poll()) != null) {
+                    emitter.send(event);
+                }
+            } catch (IOException | IllegalStateException e) {
+                subscribers.remove(this);
+                queue.clear();
+                emitter.completeWithError(e);
+            } finally {
+                draining.set(false);
+            }
+            // An event queued after the last poll but before draining was cleared
+            if (!queue.isEmpty() && subscribers.contains(this)) {
+                schedule();
+            }
+        }
+    }
+}
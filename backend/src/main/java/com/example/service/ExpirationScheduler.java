@@ -0,0 +1,173 @@
+package com.example.service;
+
+import com.example.models.ExpirationAlerts;
+import com.example.models.Product;
+import com.example.repositories.ProductNotFoundException;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+// Announces on the change feed (as "expiration" events) the products that enter the
+// warning window and the ones that expire, and optionally sets the stock of the expired
+// ones to 0. Every tick reads only the days of the two windows from the expiration index,
+// so its cost follows the products expiring rather than the size of the catalog.
+// Products are announced once per expiration date, a product whose date changes is
+// announced again. Expired products are looked for as far back as the warning window (at
+// least a day), older ones are left to GET /api/products/expiring?expired=true
+@Component
+public class ExpirationScheduler implements MeterBinder {
+    private static final Logger logger = LoggerFactory.getLogger(ExpirationScheduler.class);
+
+    private final ProductService productService;
+    private final ChangeFeed changeFeed;
+    private final long tickMillis;
+    private final int warningDays;
+    private final boolean markOutOfStock;
+    private final ReentrantLock tickLock = new ReentrantLock();
+    // Id -> expiration date announced, only touched by tick
+    private final Map<Long, LocalDate> announcedExpiring = new HashMap<>();
+    private final Map<Long, LocalDate> announcedExpired = new HashMap<>();
+    private final LongAdder expiringAlerts = new LongAdder();
+    private final LongAdder expiredAlerts = new LongAdder();
+    private final LongAdder markedOutOfStock = new LongAdder();
+    private final LongAdder failedTicks = new LongAdder();
+    private ScheduledExecutorService ticks;
+
+    @Autowired
+    public ExpirationScheduler(ProductService productService, ChangeFeed changeFeed,
+                               @Value("${inventory.expiration.tick-ms:60000}") long tickMillis,
+                               @Value("${inventory.expiration.warning-days:7}") int warningDays,
+                               @Value("${inventory.expiration.mark-out-of-stock:false}") boolean markOutOfStock) {
+        if (warningDays < 0) {
+            throw new IllegalArgumentException("inventory.expiration.warning-days can't be negative");
+        }
+        this.productService = productService;
+        this.changeFeed = changeFeed;
+        this.tickMillis = tickMillis;
+        this.warningDays = warningDays;
+        this.markOutOfStock = markOutOfStock;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (tickMillis <= 0) {
+            return;
+        }
+        ticks = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "expiration");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticks.scheduleWithFixedDelay(this::scheduledTick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (ticks != null) {
+            ticks.shutdown();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("inventory.expiration.alerts", expiringAlerts, LongAdder::sum)
+            .tag("type", "expiring")
+            .register(registry);
+        FunctionCounter.builder("inventory.expiration.alerts", expiredAlerts, LongAdder::sum)
+            .tag("type", "expired")
+            .register(registry);
+        FunctionCounter.builder("inventory.expiration.marked-out-of-stock", markedOutOfStock, LongAdder::sum)
+            .register(registry);
+        FunctionCounter.builder("inventory.expiration.failed-ticks", failedTicks, LongAdder::sum)
+            .register(registry);
+    }
+
+    private void scheduledTick() {
+        try {
+            tick(LocalDate.now());
+        } catch (RuntimeException e) {
+            failedTicks.increment();
+            logger.error("Expiration tick failed", e);
+        }
+    }
+
+    // Announces what is new as of today and returns it. The scheduler thread and direct
+    // callers such as the tests share the announced maps, so ticks are serialized with
+    // tickLock, a ReentrantLock like the other locks of the repository
+    public ExpirationAlerts tick(LocalDate today) {
+        tickLock.lock();
+        try {
+            LocalDate lastDay = today.plusDays(warningDays);
+            LocalDate firstExpired = today.minusDays(Math.max(1, warningDays));
+            List<Product> expiringSoon = unannounced(
+                productService.getExpiringProducts(today, lastDay, false, Integer.MAX_VALUE), announcedExpiring);
+            List<Product> expired = unannounced(
+                productService.getExpiringProducts(firstExpired, today.minusDays(1), false, Integer.MAX_VALUE), announcedExpired);
+            // Dates that left the windows won't be read again
+            announcedExpiring.values().removeIf(date -> date.isBefore(today) || date.isAfter(lastDay));
+            announcedExpired.values().removeIf(date -> date.isBefore(firstExpired) || !date.isBefore(today));
+
+            expiringAlerts.add(expiringSoon.size());
+            expiredAlerts.add(expired.size());
+            if (markOutOfStock) {
+                for (Product product : expired) {
+                    markOutOfStock(product);
+                }
+            }
+            ExpirationAlerts alerts = new ExpirationAlerts(today, expiringSoon, expired);
+            if (!alerts.isEmpty()) {
+                changeFeed.publish("expiration", alerts);
+            }
+            return alerts;
+        } finally {
+            tickLock.unlock();
+        }
+    }
+
+    private static List<Product> unannounced(List<Product> products, Map<Long, LocalDate> announced) {
+        List<Product> result = new ArrayList<>();
+        for (Product product : products) {
+            if (!product.getExpirationDate().equals(announced.put(product.getId(), product.getExpirationDate()))) {
+                result.add(product);
+            }
+        }
+        return result;
+    }
+
+    private void markOutOfStock(Product product) {
+        if (product.getInStock() == null || product.getInStock() == 0) {
+            return;
+        }
+        try {
+            productService.productOutOfStock(product.getId());
+            markedOutOfStock.increment();
+        } catch (ProductNotFoundException e) {
+            // Deleted since it was read
+        } catch (RuntimeException e) {
+            // The other products of the tick are still marked
+            failedTicks.increment();
+            logger.error("Could not mark expired product {} out of stock", product.getId(), e);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.service;
+
+import com.example.models.Product;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+// Opaque token for keyset pagination: the sort order it was issued for, the id of the
+// last product of a page and the values of that product the order looks at. Decoding
+// gives back a product holding just those values, which the repository seeks past
+final class PageCursor {
+    private static final int VERSION = 1;
+
+    private PageCursor() {}
+
+    static String encode(Product last, String sortBy1, String sortDirection1, String sortBy2, String sortDirection2) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            output.writeByte(VERSION);
+            output.writeUTF(order(sortBy1, sortDirection1, sortBy2, sortDirection2));
+            output.writeLong(last.getId());
+            writeKey(output, last, sortBy1);
+            writeKey(output, last, sortBy2);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+    }
+
+    // Throws IllegalArgumentException when the token is damaged or was issued for another order
+    static Product decode(String cursor, String sortBy1, String sortDirection1, String sortBy2, String sortDirection2) {
+        try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(Base64.getUrlDecoder().decode(cursor)))) {
+            if (input.readByte() != VERSION) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            if (!input.readUTF().equals(order(sortBy1, sortDirection1, sortBy2, sortDirection2))) {
+                throw new IllegalArgumentException("Cursor was issued for another sort order");
+            }
+            Product after = new Product();
+            long id = input.readLong();
+            if (id <= 0 || id > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            after.setId(id);
+            readKey(input, after, sortBy1);
+            readKey(input, after, sortBy2);
+            return after;
+        } catch (IOException | NumberFormatException | DateTimeParseException e) {
+            // IllegalArgumentException from the Base64 decoder lands here unchanged
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+
+    private static String order(String sortBy1, String sortDirection1, String sortBy2, String sortDirection2) {
+        return direction(sortBy1, sortDirection1) + "," + direction(sortBy2, sortDirection2);
+    }
+
+    private static String direction(String sortBy, String sortDirection) {
+        if (sortBy == null || sortBy.isEmpty()) {
+            return "";
+        }
+        return sortBy + ("desc".equalsIgnoreCase(sortDirection) ? " desc" : " asc");
+    }
+
+    private static void writeKey(DataOutputStream output, Product product, String sortBy) throws IOException {
+        String value = key(product, sortBy);
+        output.writeBoolean(value != null);
+        if (value != null) {
+            output.writeUTF(value);
+        }
+    }
+
+    private static void readKey(DataInputStream input, Product product, String sortBy) throws IOException {
+        String value = input.readBoolean() ? input.readUTF() : null;
+        switch (sortBy == null ? "" : sortBy) {
+            case "name":
+                product.setName(value);
+                break;
+            case "category":
+                product.setCategory(value);
+                break;
+            case "unitPrice":
+                product.setUnitPrice(value == null ? 0 : Double.parseDouble(value));
+                break;
+            case "inStock":
+                product.setInStock(value == null ? null : Integer.valueOf(value));
+                break;
+            case "expirationDate":
+                product.setExpirationDate(value == null ? null : LocalDate.parse(value));
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static String key(Product product, String sortBy) {
+        Object value;
+        switch (sortBy == null ? "" : sortBy) {
+            case "name":
+                value = product.getName();
+                break;
+            case "category":
+                value = product.getCategory();
+                break;
+            case "unitPrice":
+                value = product.getUnitPrice();
+                break;
+            case "inStock":
+                value = product.getInStock();
+                break;
+            case "expirationDate":
+                value = product.getExpirationDate();
+                break;
+            default:
+                value = null;
+                break;
+        }
+        return value == null ? null : value.toString();
+    }
+}
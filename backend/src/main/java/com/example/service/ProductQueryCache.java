@@ -0,0 +1,184 @@
+package com.example.service;
+
+import com.example.models.CustomPage;
+import com.example.models.Product;
+import com.example.models.QueryCacheStats;
+import com.example.repositories.ProductRepository;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// Approximate LRU cache of listing pages. Each entry keeps the versions of the categories
+// it filters on (of the whole catalog when it doesn't filter on categories) read before the
+// page was computed, and is only served while they are unchanged. A write then only
+// invalidates the pages that could include the product it touched.
+// The size is bounded by weight: the rows held plus one per entry.
+// Lookups never lock: entries live in a ConcurrentHashMap and carry the time they were last
+// used. Going over the weight evicts the least recently used of a sample of entries, taken
+// by a sweep that goes round the map so every entry gets sampled in turn
+@Component
+public class ProductQueryCache implements MeterBinder {
+    private static final int EVICTION_SAMPLE = 16;
+
+    private final long maxWeight;
+    private final ConcurrentHashMap<List<Object>, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong weight = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    // Only taken to evict, guards sweep
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private Iterator<Map.Entry<List<Object>, Entry>> sweep = Collections.emptyIterator();
+
+    public ProductQueryCache(@Value("${inventory.query-cache.max-weight:20000}") long maxWeight) {
+        this.maxWeight = maxWeight;
+    }
+
+    // Returns the cached page for the key while the versions of the categories match,
+    // otherwise loads it and caches it. key must identify the query completely
+    public CustomPage<Product> get(List<Object> key, List<String> categories, ProductRepository repository,
+                                   Supplier<CustomPage<Product>> loader) {
+        if (maxWeight <= 0) {
+            return loader.get();
+        }
+        long[] versions = versions(categories, repository);
+        Entry cached = entries.get(key);
+        if (cached != null && cached.isCurrent(versions)) {
+            cached.lastUsed = System.nanoTime();
+            hits.increment();
+            return copy(cached.page);
+        }
+        if (cached != null && remove(key, cached)) {
+            invalidations.increment();
+        }
+        misses.increment();
+
+        CustomPage<Product> page = loader.get();
+        Entry entry = new Entry(versions, copy(page));
+        if (entry.weight <= maxWeight) {
+            Entry previous = entries.put(key, entry);
+            weight.addAndGet(entry.weight - (previous == null ? 0 : previous.weight));
+            if (weight.get() > maxWeight) {
+                evict();
+            }
+        }
+        return page;
+    }
+
+    // The counters of stats() as meters, read when they are scraped
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("inventory.query-cache.requests", hits, LongAdder::sum)
+            .tag("result", "hit")
+            .register(registry);
+        FunctionCounter.builder("inventory.query-cache.requests", misses, LongAdder::sum)
+            .tag("result", "miss")
+            .register(registry);
+        FunctionCounter.builder("inventory.query-cache.invalidations", invalidations, LongAdder::sum)
+            .register(registry);
+        FunctionCounter.builder("inventory.query-cache.evictions", evictions, LongAdder::sum)
+            .register(registry);
+        Gauge.builder("inventory.query-cache.weight", weight, AtomicLong::get)
+            .register(registry);
+    }
+
+    // Read without locking, so the counters may be a few requests apart from each other
+    public QueryCacheStats stats() {
+        return new QueryCacheStats(hits.sum(), misses.sum(), invalidations.sum(), evictions.sum(),
+            entries.size(), weight.get(), maxWeight);
+    }
+
+    private void evict() {
+        evictionLock.lock();
+        try {
+            while (weight.get() > maxWeight && !entries.isEmpty()) {
+                Map.Entry<List<Object>, Entry> eldest = null;
+                for (int sampled = 0; sampled < EVICTION_SAMPLE; sampled++) {
+                    if (!sweep.hasNext()) {
+                        // Starts another round, unless this one only just started
+                        if (sampled > 0) {
+                            break;
+                        }
+                        sweep = entries.entrySet().iterator();
+                        if (!sweep.hasNext()) {
+                            break;
+                        }
+                    }
+                    Map.Entry<List<Object>, Entry> candidate = sweep.next();
+                    if (eldest == null || candidate.getValue().lastUsed < eldest.getValue().lastUsed) {
+                        eldest = candidate;
+                    }
+                }
+                if (eldest != null && remove(eldest.getKey(), eldest.getValue())) {
+                    evictions.increment();
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    // Removes the entry unless another thread replaced or removed it first
+    private boolean remove(List<Object> key, Entry entry) {
+        if (entries.remove(key, entry)) {
+            weight.addAndGet(-entry.weight);
+            return true;
+        }
+        return false;
+    }
+
+    private static long[] versions(List<String> categories, ProductRepository repository) {
+        if (categories == null || categories.isEmpty()) {
+            return new long[] {repository.version(null)};
+        }
+        long[] versions = new long[categories.size()];
+        for (int i = 0; i < versions.length; i++) {
+            versions[i] = repository.version(categories.get(i));
+        }
+        return versions;
+    }
+
+    // Cached products are never handed out, callers are free to change what they get
+    private static CustomPage<Product> copy(CustomPage<Product> page) {
+        List<Product> content = page.getContent().stream()
+            .map(Product::new)
+            .collect(Collectors.toList());
+        return new CustomPage<>(content, page.getPageNumber(), page.getPageSize(), page.getTotalElements(),
+            page.getTotalMode(), page.hasNext(), page.getNextCursor());
+    }
+
+    private static final class Entry {
+        private final long[] versions;
+        private final CustomPage<Product> page;
+        private final long weight;
+        private volatile long lastUsed = System.nanoTime();
+
+        private Entry(long[] versions, CustomPage<Product> page) {
+            this.versions = versions;
+            this.page = page;
+            this.weight = page.getContent().size() + 1;
+        }
+
+        private boolean isCurrent(long[] current) {
+            return Arrays.equals(versions, current);
+        }
+    }
+}
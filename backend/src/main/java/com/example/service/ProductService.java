@@ -1,61 +1,345 @@
 package com.example.service;
 
 import com.example.models.Product;
-import com.example.repositories.InMemoryProductRepository;
+import com.example.models.ProductRanges;
+import com.example.repositories.MeteredProductRepository;
+import com.example.repositories.PartialSaveException;
+import com.example.repositories.ProductNotFoundException;
+import com.example.repositories.ProductRepository;
 import com.example.models.CustomPage;
+import com.example.models.CategoryTotals;
+import com.example.models.StockAdjustment;
+import com.example.models.StockAdjustmentResult;
+import com.example.models.ImportReport;
+import com.example.models.QueryCacheStats;
+import com.example.models.TotalMode;
+import com.example.service.feed.FeedRow;
+import com.example.service.feed.ProductFeedReader;
+import com.example.service.feed.ProductFeedWriter;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.MeterRegistry;
 
 @Service
 public class ProductService {
-    private final InMemoryProductRepository repository;
+    private static final int IMPORT_BATCH_SIZE = 1000;
+    private static final int MAX_IMPORT_ERRORS = 1000;
+    // Same limits as the product form of the frontend
+    private static final int MAX_STOCK = 100000;
+    private static final double MAX_UNIT_PRICE = 100000;
+
+    private final ProductRepository repository;
+    private final ProductQueryCache queryCache;
+    private final ChangeFeed changeFeed;
+
+    // Without a listing cache, and with a change feed nobody subscribes to
+    public ProductService(ProductRepository repository) {
+        this(repository, new ProductQueryCache(0), new ChangeFeed(repository, new ObjectMapper(), 0));
+    }
+
+    public ProductService(ProductRepository repository, ProductQueryCache queryCache, ChangeFeed changeFeed) {
+        this.repository = repository;
+        this.queryCache = queryCache;
+        this.changeFeed = changeFeed;
+    }
 
-    public ProductService(InMemoryProductRepository inMemoryRepository) {
-        this.repository = inMemoryRepository;
+    // Every repository call is timed (see MeteredProductRepository)
+    @Autowired
+    public ProductService(ProductRepository repository, ProductQueryCache queryCache, ChangeFeed changeFeed,
+                          MeterRegistry meterRegistry) {
+        this(new MeteredProductRepository(repository, meterRegistry), queryCache, changeFeed);
     }
 
     public CustomPage<Product> getProducts(String name, List<String> categories, Boolean availability,
                                            String sortBy1, String sortDirection1, String sortBy2, String sortDirection2,
                                            int page, int size) {
-        return repository.getProducts(name, categories, availability, sortBy1, sortDirection1, sortBy2, sortDirection2, page, size);
+        return cachedPage(name, categories, availability, ProductRanges.NONE, sortBy1, sortDirection1, sortBy2,
+            sortDirection2, page, size, TotalMode.EXACT, () -> repository.getProducts(name, categories, availability,
+                sortBy1, sortDirection1, sortBy2, sortDirection2, page, size));
+    }
+
+    // Same, with the total worked out as the client asks (see TotalMode)
+    public CustomPage<Product> getProducts(String name, List<String> categories, Boolean availability,
+                                           String sortBy1, String sortDirection1, String sortBy2, String sortDirection2,
+                                           int page, int size, TotalMode totalMode) {
+        return getProducts(name, categories, availability, ProductRanges.NONE, sortBy1, sortDirection1, sortBy2,
+            sortDirection2, page, size, totalMode);
+    }
+
+    // Same, keeping only the products inside the price, stock and expiration ranges
+    public CustomPage<Product> getProducts(String name, List<String> categories, Boolean availability, ProductRanges ranges,
+                                           String sortBy1, String sortDirection1, String sortBy2, String sortDirection2,
+                                           int page, int size, TotalMode totalMode) {
+        return cachedPage(name, categories, availability, ranges, sortBy1, sortDirection1, sortBy2, sortDirection2, page,
+            size, totalMode, () -> repository.getProducts(name, categories, availability, ranges,
+                sortBy1, sortDirection1, sortBy2, sortDirection2, page, size, totalMode));
+    }
+
+    // Pages are cached under the query in a normalized form, so parameters that select the
+    // same page (name case, category order, default directions) share an entry
+    private CustomPage<Product> cachedPage(String name, List<String> categories, Boolean availability, ProductRanges ranges,
+                                           String sortBy1, String sortDirection1, String sortBy2, String sortDirection2,
+                                           int page, int size, TotalMode totalMode, Supplier<CustomPage<Product>> loader) {
+        List<String> categoryKey = categories == null || categories.isEmpty()
+            ? null
+            : categories.stream().distinct().sorted().collect(Collectors.toList());
+        boolean secondSort = sortBy2 != null && !sortBy2.isEmpty();
+        List<Object> key = Arrays.asList(
+            name == null || name.isEmpty() ? null : name.toLowerCase(),
+            categoryKey,
+            availability,
+            ranges,
+            sortBy1 == null || sortBy1.isEmpty() ? null : sortBy1,
+            "desc".equalsIgnoreCase(sortDirection1),
+            secondSort ? sortBy2 : null,
+            secondSort && "desc".equalsIgnoreCase(sortDirection2),
+            page,
+            size,
+            totalMode);
+
+        CustomPage<Product> products = queryCache.get(key, categoryKey, repository, loader);
+        return withNextCursor(products, page, sortBy1, sortDirection1, sortBy2, sortDirection2);
+    }
+
+    // Changes whenever a product that could be listed with these category filters changes.
+    // Without filters it is the version of the whole catalog
+    public long getVersion(List<String> categories) {
+        if (categories == null || categories.isEmpty()) {
+            return repository.version(null);
+        }
+        // Every version only grows, so their sum moves whenever one of them does
+        return categories.stream().distinct().mapToLong(repository::version).sum();
+    }
+
+    public SseEmitter subscribeToChanges() throws IOException {
+        return changeFeed.subscribe();
+    }
+
+    public QueryCacheStats getQueryCacheStats() {
+        return queryCache.stats();
+    }
+
+    // Keyset pagination: the page after the one that returned the cursor, which stays in
+    // place when products are added or removed before it. page is only echoed back
+    public CustomPage<Product> getProductsAfter(String name, List<String> categories, Boolean availability,
+                                                String sortBy1, String sortDirection1, String sortBy2, String sortDirection2,
+                                                String cursor, int page, int size, TotalMode totalMode) {
+        return getProductsAfter(name, categories, availability, ProductRanges.NONE, sortBy1, sortDirection1, sortBy2,
+            sortDirection2, cursor, page, size, totalMode);
+    }
+
+    public CustomPage<Product> getProductsAfter(String name, List<String> categories, Boolean availability,
+                                                ProductRanges ranges, String sortBy1, String sortDirection1, String sortBy2,
+                                                String sortDirection2, String cursor, int page, int size, TotalMode totalMode) {
+        Product after = PageCursor.decode(cursor, sortBy1, sortDirection1, sortBy2, sortDirection2);
+        CustomPage<Product> products = repository.getProductsAfter(name, categories, availability, ranges,
+            sortBy1, sortDirection1, sortBy2, sortDirection2, after, size, totalMode);
+        return withNextCursor(products, page, sortBy1, sortDirection1, sortBy2, sortDirection2);
+    }
+
+    private static CustomPage<Product> withNextCursor(CustomPage<Product> products, int page,
+                                                      String sortBy1, String sortDirection1, String sortBy2, String sortDirection2) {
+        List<Product> content = products.getContent();
+        String nextCursor = products.hasNext() && !content.isEmpty()
+            ? PageCursor.encode(content.get(content.size() - 1), sortBy1, sortDirection1, sortBy2, sortDirection2)
+            : null;
+        return new CustomPage<>(content, page, products.getPageSize(), products.getTotalElements(),
+            products.getTotalMode(), products.hasNext(), nextCursor);
     }
 
     public Product createProduct(Product product) {
         product.setCreatedAt(LocalDateTime.now());
         product.setUpdatedAt(LocalDateTime.now());
-        return repository.save(product);
+        Product saved = repository.save(product);
+        changeFeed.changed(saved.getId());
+        return saved;
     }
 
     public Product updateProduct(Product product) {
         product.setUpdatedAt(LocalDateTime.now());
-        return repository.save(product);
+        Product saved = repository.save(product);
+        changeFeed.changed(saved.getId());
+        return saved;
     }
 
     public void productOutOfStock(Long id) {
-        Product product = repository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Product not found"));
-        product.setInStock(0);
-        product.setUpdatedAt(LocalDateTime.now());
-        repository.save(product);
+        Product product;
+        do {
+            product = repository.findById(id)
+                    .orElseThrow(() -> new ProductNotFoundException(id));
+        } while (!repository.compareAndSetStock(id, product.getInStock(), 0, LocalDateTime.now()));
+        changeFeed.changed(id);
     }
 
     public void productInStock(Long id) {
-        Product product = repository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Product not found"));
-        product.setInStock(product.getInStock() + 10); // Default in-stock quantity
-        product.setUpdatedAt(LocalDateTime.now());
-        repository.save(product);
+        repository.adjustStock(id, 10, LocalDateTime.now()); // Default in-stock quantity
+        changeFeed.changed(id);
+    }
+
+    // Applies every adjustment on its own, a failing one doesn't stop the rest
+    public List<StockAdjustmentResult> adjustStocks(List<StockAdjustment> adjustments) {
+        LocalDateTime now = LocalDateTime.now();
+        List<StockAdjustmentResult> results = new ArrayList<>(adjustments.size());
+        for (StockAdjustment adjustment : adjustments) {
+            try {
+                Product product = repository.adjustStock(adjustment.getId(), adjustment.getDelta(), now);
+                results.add(StockAdjustmentResult.applied(product.getId(), product.getInStock()));
+                changeFeed.changed(product.getId());
+            } catch (RuntimeException e) {
+                results.add(StockAdjustmentResult.failed(adjustment.getId(), e.getMessage()));
+            }
+        }
+        return results;
+    }
+
+    // Reads the feed row by row and saves the valid rows in batches, all with the same
+    // timestamp. Only one batch is held in memory whatever the size of the feed
+    public ImportReport importProducts(ProductFeedReader feed) throws IOException {
+        LocalDateTime now = LocalDateTime.now();
+        ImportReport report = new ImportReport(MAX_IMPORT_ERRORS);
+        List<Product> batch = new ArrayList<>(IMPORT_BATCH_SIZE);
+        List<Long> batchRows = new ArrayList<>(IMPORT_BATCH_SIZE);
+
+        FeedRow row;
+        while ((row = feed.next()) != null) {
+            report.rowRead();
+            if (row.getError() != null) {
+                report.failed(row.getNumber(), row.getError());
+                continue;
+            }
+            try {
+                batch.add(toProduct(row, now));
+                batchRows.add(row.getNumber());
+            } catch (IllegalArgumentException e) {
+                report.failed(row.getNumber(), e.getMessage());
+            }
+            if (batch.size() == IMPORT_BATCH_SIZE) {
+                importBatch(batch, batchRows, report);
+            }
+        }
+        importBatch(batch, batchRows, report);
+
+        return report;
+    }
+
+    // Writes the products matching the filters one by one as the repository hands them out.
+    // Writing blocks while the client is slow to read, which holds the walk back, so the
+    // export runs in constant memory whatever the size of the catalog
+    public void exportProducts(String name, List<String> categories, Boolean availability,
+                               ProductFeedWriter feed) throws IOException {
+        exportProducts(name, categories, availability, ProductRanges.NONE, feed);
+    }
+
+    public void exportProducts(String name, List<String> categories, Boolean availability, ProductRanges ranges,
+                               ProductFeedWriter feed) throws IOException {
+        try {
+            repository.forEach(name, categories, availability, ranges, product -> {
+                try {
+                    feed.write(product);
+                    return true;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        feed.finish();
+    }
+
+    // A row that fails to save is reported and the batch goes on from the row after it,
+    // so the rest of the batch is still saved together
+    private void importBatch(List<Product> batch, List<Long> batchRows, ImportReport report) {
+        int from = 0;
+        while (from < batch.size()) {
+            try {
+                List<Product> saved = repository.saveAll(batch.subList(from, batch.size()));
+                report.imported(saved.size());
+                changeFeed.changed(saved);
+                break;
+            } catch (PartialSaveException e) {
+                report.imported(e.getSaved().size());
+                changeFeed.changed(e.getSaved());
+                int failed = from + e.getSaved().size();
+                report.failed(batchRows.get(failed), e.getMessage());
+                from = failed + 1;
+            }
+        }
+        batch.clear();
+        batchRows.clear();
+    }
+
+    private static Product toProduct(FeedRow row, LocalDateTime now) {
+        Product product = new Product();
+        product.setName(required(row, "name"));
+        product.setCategory(required(row, "category"));
+        try {
+            double unitPrice = Double.parseDouble(required(row, "unitPrice"));
+            if (!(unitPrice >= 0 && unitPrice <= MAX_UNIT_PRICE)) {
+                throw new IllegalArgumentException("unitPrice must be between 0 and " + (int) MAX_UNIT_PRICE);
+            }
+            product.setUnitPrice(unitPrice);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("unitPrice must be a number");
+        }
+        try {
+            int inStock = Integer.parseInt(required(row, "inStock"));
+            if (inStock < 0 || inStock > MAX_STOCK) {
+                throw new IllegalArgumentException("inStock must be between 0 and " + MAX_STOCK);
+            }
+            product.setInStock(inStock);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("inStock must be a whole number");
+        }
+        String expirationDate = row.get("expirationDate");
+        if (expirationDate != null) {
+            try {
+                product.setExpirationDate(LocalDate.parse(expirationDate));
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("expirationDate must be a date like 2025-12-31");
+            }
+        }
+        product.setCreatedAt(now);
+        product.setUpdatedAt(now);
+
+        return product;
+    }
+
+    private static String required(FeedRow row, String column) {
+        String value = row.get(column);
+        if (value == null) {
+            throw new IllegalArgumentException(column + " is required");
+        }
+        return value;
     }
 
     public void productDelete(Long id) {
         repository.deleteById(id);
+        changeFeed.changed(id);
+    }
+
+    // Products expiring between both dates (a null date leaves that side open), soonest
+    // first or, for latestFirst, the latest first
+    public List<Product> getExpiringProducts(LocalDate from, LocalDate to, boolean latestFirst, int limit) {
+        return repository.findExpiring(from, to, latestFirst, limit);
     }
 
     public List<String> getAllCategories() {
@@ -63,38 +347,26 @@ public class ProductService {
     }
 
     public List<Map<String, Object>> getInventoryMetrics() {
+        return metricsTable(repository.getCategoryTotals());
+    }
+
+    // One row per category plus the Overall row, shared with the change feed
+    static List<Map<String, Object>> metricsTable(List<CategoryTotals> categoryTotals) {
         List<Map<String, Object>> metricsTable = new ArrayList<>();
-        List<Product> allProducts = repository.findAll();
-        List<String> allCategories = repository.findAllCategories();
-
-        for (String category : allCategories) {
-            List<Product> categoryProducts = allProducts.stream()
-                .filter(p -> p.getCategory().equals(category))
-                .collect(Collectors.toList());
-            int categoryInStock = categoryProducts.stream()
-                .mapToInt(Product::getInStock)
-                .sum();
-            double categoryValue = categoryProducts.stream()
-                .filter(p -> p.getInStock() > 0)
-                .mapToDouble(p -> p.getUnitPrice() * p.getInStock())
-                .sum();
+        long allProductsInStock = 0;
+        double allProductsCategoryValue = 0.0;
 
+        for (CategoryTotals totals : categoryTotals) {
             metricsTable.add(createMetricsRow(
-                category,
-                categoryInStock,
-                categoryValue,
-                calculateAvgPrice(categoryValue, categoryInStock)
+                totals.getCategory(),
+                totals.getUnitsInStock(),
+                totals.getInventoryValue(),
+                calculateAvgPrice(totals.getInventoryValue(), totals.getUnitsInStock())
             ));
+            allProductsInStock += totals.getUnitsInStock();
+            allProductsCategoryValue += totals.getInventoryValue();
         }
 
-        int allProductsInStock = allProducts.stream()
-                .mapToInt(Product::getInStock)
-                .sum();
-        double allProductsCategoryValue = allProducts.stream()
-                .filter(p -> p.getInStock() > 0)
-                .mapToDouble(p -> p.getUnitPrice() * p.getInStock())
-                .sum();
-        
         metricsTable.add(createMetricsRow(
             "Overall", 
             allProductsInStock,
@@ -105,11 +377,11 @@ public class ProductService {
         return metricsTable;
     }
 
-    private double calculateAvgPrice(double totalPrice, int totalStock) {
+    private static double calculateAvgPrice(double totalPrice, long totalStock) {
        return  totalStock != 0 ? totalPrice / totalStock : 0.0;
     }
 
-    private Map<String, Object> createMetricsRow(String category, int count, Double totalValue, Double avgPrice) {
+    private static Map<String, Object> createMetricsRow(String category, long count, Double totalValue, Double avgPrice) {
         Map<String, Object> row = new LinkedHashMap<>();
         row.put("category", category);
         row.put("productCount", count);
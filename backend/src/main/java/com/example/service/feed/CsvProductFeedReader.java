@@ -0,0 +1,140 @@
+package com.example.service.feed;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// CSV feed (RFC 4180): a header row with the column names, then one product per row.
+// Fields may be quoted to hold commas, quotes ("") or line breaks. Blank lines are skipped
+public class CsvProductFeedReader implements ProductFeedReader {
+    private final Reader reader;
+    private String[] header;
+    private long rowNumber = 0;
+    private int pushedBack = -1;
+    private String recordError;
+
+    public CsvProductFeedReader(Reader reader) {
+        this.reader = reader instanceof BufferedReader ? reader : new BufferedReader(reader, 1 << 16);
+    }
+
+    @Override
+    public FeedRow next() throws IOException {
+        if (header == null) {
+            List<String> columns = readRecord();
+            while (columns != null && isBlank(columns)) {
+                columns = readRecord();
+            }
+            if (columns == null) {
+                return null;
+            }
+            if (recordError != null) {
+                throw new IllegalArgumentException("Unreadable CSV header: " + recordError);
+            }
+            header = new String[columns.size()];
+            for (int i = 0; i < header.length; i++) {
+                header[i] = columns.get(i).replace("\uFEFF", "").trim();
+            }
+        }
+
+        List<String> values = readRecord();
+        while (values != null && recordError == null && isBlank(values)) {
+            values = readRecord();
+        }
+        if (values == null) {
+            return null;
+        }
+        rowNumber++;
+        if (recordError != null) {
+            return FeedRow.unreadable(rowNumber, recordError);
+        }
+        if (values.size() != header.length) {
+            return FeedRow.unreadable(rowNumber, "Expected " + header.length + " columns but found " + values.size());
+        }
+        Map<String, String> fields = new HashMap<>();
+        for (int i = 0; i < header.length; i++) {
+            fields.put(header[i], values.get(i));
+        }
+        return FeedRow.of(rowNumber, fields);
+    }
+
+    // Reads the fields of the next record, null at the end of the input. Problems are left in
+    // recordError, the rest of a record that is too long is read but not kept
+    private List<String> readRecord() throws IOException {
+        recordError = null;
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean inQuotes = false;
+        boolean quoted = false;
+        int length = 0;
+        int c;
+        while ((c = read()) != -1) {
+            length++;
+            if (length > MAX_ROW_LENGTH && recordError == null) {
+                recordError = "Row is longer than " + MAX_ROW_LENGTH + " characters";
+            }
+            if (inQuotes) {
+                if (c == '"') {
+                    int next = read();
+                    if (next == '"') {
+                        append(field, '"');
+                    } else {
+                        inQuotes = false;
+                        pushedBack = next;
+                    }
+                } else {
+                    append(field, c);
+                }
+            } else if (c == '"' && field.length() == 0 && !quoted) {
+                inQuotes = true;
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+                quoted = false;
+            } else if (c == '\n' || c == '\r') {
+                if (c == '\r') {
+                    int next = read();
+                    if (next != '\n') {
+                        pushedBack = next;
+                    }
+                }
+                fields.add(field.toString());
+                return fields;
+            } else {
+                append(field, c);
+            }
+        }
+
+        if (length == 0) {
+            return null;
+        }
+        if (inQuotes && recordError == null) {
+            recordError = "Quoted field is not closed";
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private void append(StringBuilder field, int c) {
+        if (recordError == null) {
+            field.append((char) c);
+        }
+    }
+
+    private int read() throws IOException {
+        if (pushedBack != -1) {
+            int c = pushedBack;
+            pushedBack = -1;
+            return c;
+        }
+        return reader.read();
+    }
+
+    private static boolean isBlank(List<String> values) {
+        return values.size() == 1 && values.get(0).isBlank();
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.service.feed;
+
+import com.example.models.Product;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+// CSV feed (RFC 4180) with a header row. Fields holding a comma, a quote or a line break
+// are quoted, and empty fields stand for null values
+public class CsvProductFeedWriter implements ProductFeedWriter {
+    private static final String HEADER = "id,name,category,unitPrice,inStock,expirationDate,createdAt,updatedAt";
+
+    private final Writer writer;
+    private boolean headerWritten = false;
+
+    public CsvProductFeedWriter(Writer writer) {
+        this.writer = writer instanceof BufferedWriter ? writer : new BufferedWriter(writer, 1 << 16);
+    }
+
+    @Override
+    public void write(Product product) throws IOException {
+        writeHeader();
+        writer.write(String.valueOf(product.getId()));
+        writer.write(',');
+        writeField(product.getName());
+        writer.write(',');
+        writeField(product.getCategory());
+        writer.write(',');
+        writer.write(String.valueOf(product.getUnitPrice()));
+        writer.write(',');
+        writeField(product.getInStock());
+        writer.write(',');
+        writeField(product.getExpirationDate());
+        writer.write(',');
+        writeField(product.getCreatedAt());
+        writer.write(',');
+        writeField(product.getUpdatedAt());
+        writer.write("\r\n");
+    }
+
+    @Override
+    public void finish() throws IOException {
+        writeHeader();
+        writer.flush();
+    }
+
+    private void writeHeader() throws IOException {
+        if (!headerWritten) {
+            writer.write(HEADER);
+            writer.write("\r\n");
+            headerWritten = true;
+        }
+    }
+
+    private void writeField(Object value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        String text = value.toString();
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            writer.write(text);
+            return;
+        }
+        writer.write('"');
+        writer.write(text.replace("\"", "\"\""));
+        writer.write('"');
+    }
+}
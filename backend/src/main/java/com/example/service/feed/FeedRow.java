@@ -0,0 +1,35 @@
+package com.example.service.feed;
+
+import java.util.Map;
+
+// One row of a product feed: its raw field values by column name, or the reason it
+// couldn't be read
+public class FeedRow {
+
+    private final long number;
+    private final Map<String, String> fields;
+    private final String error;
+
+    private FeedRow(long number, Map<String, String> fields, String error) {
+        this.number = number;
+        this.fields = fields;
+        this.error = error;
+    }
+
+    public static FeedRow of(long number, Map<String, String> fields) {
+        return new FeedRow(number, fields, null);
+    }
+
+    public static FeedRow unreadable(long number, String error) {
+        return new FeedRow(number, null, error);
+    }
+
+    public long getNumber() { return number; }
+    public String getError() { return error; }
+
+    // Null when the column is missing or empty
+    public String get(String column) {
+        String value = fields.get(column);
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.service.feed;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+// NDJSON feed: one JSON object per line, with the same field names as a Product.
+// Blank lines are skipped
+public class NdjsonProductFeedReader implements ProductFeedReader {
+    private final Reader reader;
+    private final ObjectMapper objectMapper;
+    private final StringBuilder line = new StringBuilder();
+    private long rowNumber = 0;
+    private boolean endOfInput = false;
+
+    public NdjsonProductFeedReader(Reader reader, ObjectMapper objectMapper) {
+        this.reader = reader instanceof BufferedReader ? reader : new BufferedReader(reader, 1 << 16);
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public FeedRow next() throws IOException {
+        boolean tooLong;
+        do {
+            if (endOfInput) {
+                return null;
+            }
+            tooLong = readLine();
+        } while (!tooLong && line.toString().isBlank());
+
+        rowNumber++;
+        if (tooLong) {
+            return FeedRow.unreadable(rowNumber, "Row is longer than " + MAX_ROW_LENGTH + " characters");
+        }
+        JsonNode node;
+        try {
+            node = objectMapper.readTree(line.toString());
+        } catch (JsonProcessingException e) {
+            return FeedRow.unreadable(rowNumber, "Invalid JSON: " + e.getOriginalMessage());
+        }
+        if (!node.isObject()) {
+            return FeedRow.unreadable(rowNumber, "Expected a JSON object");
+        }
+
+        Map<String, String> fields = new HashMap<>();
+        for (Map.Entry<String, JsonNode> property : node.properties()) {
+            JsonNode value = property.getValue();
+            fields.put(property.getKey(), value.isNull() ? null : value.isValueNode() ? value.asText() : value.toString());
+        }
+        return FeedRow.of(rowNumber, fields);
+    }
+
+    // Reads the next line into line and returns true when it was too long to keep
+    private boolean readLine() throws IOException {
+        line.setLength(0);
+        boolean tooLong = false;
+        int c;
+        while ((c = reader.read()) != -1) {
+            if (c == '\n') {
+                return tooLong;
+            }
+            if (line.length() < MAX_ROW_LENGTH) {
+                line.append((char) c);
+            } else {
+                tooLong = true;
+            }
+        }
+        endOfInput = true;
+        return tooLong;
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.service.feed;
+
+import com.example.models.Product;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+// NDJSON feed: every product serialized as by the API, one per line
+public class NdjsonProductFeedWriter implements ProductFeedWriter {
+    private final Writer writer;
+    private final ObjectMapper objectMapper;
+
+    public NdjsonProductFeedWriter(Writer writer, ObjectMapper objectMapper) {
+        this.writer = writer instanceof BufferedWriter ? writer : new BufferedWriter(writer, 1 << 16);
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public void write(Product product) throws IOException {
+        writer.write(objectMapper.writeValueAsString(product));
+        writer.write('\n');
+    }
+
+    @Override
+    public void finish() throws IOException {
+        writer.flush();
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.service.feed;
+
+import java.io.IOException;
+
+// Reads a product feed one row at a time, so only the current row is held in memory
+public interface ProductFeedReader {
+    // Longest row accepted, longer rows are skipped and reported
+    int MAX_ROW_LENGTH = 64 * 1024;
+
+    // Returns null at the end of the feed
+    FeedRow next() throws IOException;
+}
@@ -0,0 +1,13 @@
+package com.example.service.feed;
+
+import com.example.models.Product;
+
+import java.io.IOException;
+
+// Writes a product feed one row at a time, in a format ProductFeedReader can read back
+public interface ProductFeedWriter {
+    void write(Product product) throws IOException;
+
+    // Flushes what is buffered, the underlying stream is left open
+    void finish() throws IOException;
+}
@@ -2,12 +2,19 @@ package com.example.backend;
 
 import com.example.models.Product;
 import com.example.models.CustomPage;
+import com.example.models.CategoryTotals;
+import com.example.models.StockAdjustment;
+import com.example.models.StockAdjustmentResult;
 import com.example.repositories.InMemoryProductRepository;
+import com.example.service.ChangeFeed;
+import com.example.service.ProductQueryCache;
 import com.example.service.ProductService;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -18,14 +25,31 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
 @ExtendWith(MockitoExtension.class)
 class BackendApplicationTests {
 
 	@Mock
 	private InMemoryProductRepository repository;
 
+	// Turned off, listings always reach the repository
+	@Spy
+	private ProductQueryCache queryCache = new ProductQueryCache(0);
+
+	// Never started and without subscribers, writes are not recorded
+	@Spy
+	private ChangeFeed changeFeed = new ChangeFeed(new InMemoryProductRepository(), new ObjectMapper(), 0);
+
+	@Spy
+	private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
 	@InjectMocks
 	private ProductService productService;
 
@@ -143,25 +167,40 @@ class BackendApplicationTests {
 		product.setInStock(30);
 
 		Mockito.when(repository.findById(2L)).thenReturn(java.util.Optional.of(product));
-		Mockito.when(repository.save(any(Product.class))).thenReturn(product);
+		Mockito.when(repository.compareAndSetStock(eq(2L), eq(30), eq(0), any(LocalDateTime.class))).thenReturn(true);
 
 		productService.productOutOfStock(2L);
 
-		assertEquals(0, product.getInStock());
+		Mockito.verify(repository).compareAndSetStock(eq(2L), eq(30), eq(0), any(LocalDateTime.class));
 	}
 
 	@Test
 	void testProductInStock() {
-		Product product = new Product();
-		product.setId(3L);
-		product.setInStock(0);
-
-		Mockito.when(repository.findById(3L)).thenReturn(java.util.Optional.of(product));
-		Mockito.when(repository.save(any(Product.class))).thenReturn(product);
-
 		productService.productInStock(3L);
 
-		assertEquals(10, product.getInStock());
+		Mockito.verify(repository).adjustStock(eq(3L), eq(10), any(LocalDateTime.class));
+	}
+
+	@Test
+	void testAdjustStocks() {
+		Product restocked = new Product();
+		restocked.setId(1L);
+		restocked.setInStock(15);
+
+		Mockito.when(repository.adjustStock(eq(1L), eq(5), any(LocalDateTime.class))).thenReturn(restocked);
+		Mockito.when(repository.adjustStock(eq(2L), eq(-3), any(LocalDateTime.class)))
+			.thenThrow(new RuntimeException("Product not found with ID: 2"));
+
+		List<StockAdjustmentResult> results = productService.adjustStocks(java.util.Arrays.asList(
+			new StockAdjustment(1L, 5),
+			new StockAdjustment(2L, -3)
+		));
+
+		assertEquals(2, results.size());
+		assertEquals(15, results.get(0).getInStock());
+		assertNull(results.get(0).getError());
+		assertNull(results.get(1).getInStock());
+		assertEquals("Product not found with ID: 2", results.get(1).getError());
 	}
 
 	@Test
@@ -184,33 +223,12 @@ class BackendApplicationTests {
 
 	@Test
 	void testGetInventoryMetrics() {
+		List<CategoryTotals> totals = java.util.Arrays.asList(
+			new CategoryTotals("Category1", 2, 2, 20.0),
+			new CategoryTotals("Category2", 1, 3, 60.0)
+		);
 
-		Product p1 = new Product();
-		p1.setId(1L);
-		p1.setName("A");
-		p1.setCategory("Category1");
-		p1.setUnitPrice(10.0);
-		p1.setInStock(2);
-
-		Product p2 = new Product();
-		p2.setId(2L);
-		p2.setName("B");
-		p2.setCategory("Category2");
-		p2.setUnitPrice(20.0);
-		p2.setInStock(3);
-
-		Product p3 = new Product();
-		p3.setId(3L);
-		p3.setName("C");
-		p3.setCategory("Category1");
-		p3.setUnitPrice(15.0);
-		p3.setInStock(0);
-
-		List<Product> allProducts = java.util.Arrays.asList(p1, p2, p3);
-		List<String> allCategories = java.util.Arrays.asList("Category1", "Category2");
-
-		Mockito.when(repository.findAll()).thenReturn(allProducts);
-		Mockito.when(repository.findAllCategories()).thenReturn(allCategories);
+		Mockito.when(repository.getCategoryTotals()).thenReturn(totals);
 
 		List<java.util.Map<String, Object>> metrics = productService.getInventoryMetrics();
 
@@ -224,9 +242,15 @@ class BackendApplicationTests {
 			.orElse(null);
 
 		assertNotNull(cat1Row);
-		assertEquals(2, cat1Row.get("productCount"));
+		assertEquals(2L, cat1Row.get("productCount"));
 		assertEquals(20.0, (Double)cat1Row.get("totalValue"));
 		assertEquals(10.0, (Double)cat1Row.get("averagePrice"));
+
+		java.util.Map<String, Object> overallRow = metrics.get(2);
+		assertEquals("Overall", overallRow.get("category"));
+		assertEquals(5L, overallRow.get("productCount"));
+		assertEquals(80.0, (Double)overallRow.get("totalValue"));
+		assertEquals(16.0, (Double)overallRow.get("averagePrice"));
 	}
 
 }
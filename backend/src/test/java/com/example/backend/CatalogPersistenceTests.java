@@ -0,0 +1,211 @@
+package com.example.backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+
+import com.example.models.Product;
+import com.example.repositories.ColumnarProductRepository;
+import com.example.repositories.InMemoryProductRepository;
+import com.example.repositories.persistence.CatalogPersistence;
+import com.example.repositories.persistence.FsyncPolicy;
+import com.example.repositories.persistence.SnapshotFile;
+import com.example.repositories.persistence.WriteAheadLog;
+
+class CatalogPersistenceTests {
+
+	@TempDir
+	Path directory;
+
+	@ParameterizedTest
+	@EnumSource(FsyncPolicy.class)
+	void testCatalogSurvivesRestart(FsyncPolicy policy) throws Exception {
+		InMemoryProductRepository repository = new InMemoryProductRepository();
+		CatalogPersistence persistence = start(repository, policy);
+		applyConcurrentChanges(repository);
+		List<String> expected = describe(repository);
+		long lastId = repository.nextId();
+		persistence.stop();
+
+		InMemoryProductRepository recovered = new InMemoryProductRepository();
+		CatalogPersistence restarted = start(recovered, policy);
+		assertEquals(expected, describe(recovered));
+		assertTrue(recovered.save(product("After restart", "Dairy", 1)).getId() >= lastId);
+		restarted.stop();
+	}
+
+	// The first instance is never stopped, as if the process was killed, so there is no
+	// snapshot on shutdown and recovery has to replay the log
+	@Test
+	void testLogTailIsReplayedOverTheLatestSnapshot() throws Exception {
+		InMemoryProductRepository repository = new InMemoryProductRepository();
+		CatalogPersistence persistence = start(repository, FsyncPolicy.BATCH);
+		Long kept = repository.save(product("Milk", "Dairy", 5)).getId();
+		Long deleted = repository.save(product("Bread", "Bakery", 3)).getId();
+		persistence.snapshot();
+
+		repository.adjustStock(kept, 4, LocalDateTime.now());
+		repository.deleteById(deleted);
+		repository.save(product("Cheese", "Dairy", 2));
+		List<String> expected = describe(repository);
+		long nextId = repository.nextId();
+
+		InMemoryProductRepository recovered = new InMemoryProductRepository();
+		CatalogPersistence restarted = start(recovered, FsyncPolicy.BATCH);
+		assertEquals(expected, describe(recovered));
+		assertEquals(nextId, recovered.nextId());
+		restarted.stop();
+	}
+
+	// The snapshot streams the catalog while it changes, the log written after the rotation
+	// brings every product that moved during the copy up to date
+	@Test
+	void testSnapshotTakenDuringWritesRecovers() throws Exception {
+		InMemoryProductRepository repository = new InMemoryProductRepository();
+		CatalogPersistence persistence = start(repository, FsyncPolicy.BATCH);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<?> writes = executor.submit(() -> {
+				applyConcurrentChanges(repository);
+				return null;
+			});
+			while (!writes.isDone()) {
+				persistence.snapshot();
+			}
+			writes.get();
+		} finally {
+			executor.shutdown();
+		}
+		List<String> expected = describe(repository);
+		assertTrue(SnapshotFile.snapshots(directory).size() <= 1);
+		try (Stream<Path> files = Files.list(directory)) {
+			assertTrue(files.noneMatch(file -> file.toString().endsWith(".tmp")));
+		}
+
+		InMemoryProductRepository recovered = new InMemoryProductRepository();
+		CatalogPersistence restarted = start(recovered, FsyncPolicy.BATCH);
+		assertEquals(expected, describe(recovered));
+		restarted.stop();
+	}
+
+	@Test
+	void testTornTailIsCutOff() throws Exception {
+		InMemoryProductRepository repository = new InMemoryProductRepository();
+		start(repository, FsyncPolicy.ALWAYS);
+		repository.save(product("Milk", "Dairy", 5));
+		repository.save(product("Bread", "Bakery", 3));
+		List<String> expected = describe(repository);
+
+		// Half a record, as left by a crash in the middle of a write
+		List<Long> segments = WriteAheadLog.segments(directory);
+		Path last = WriteAheadLog.segmentPath(directory, segments.get(segments.size() - 1));
+		Files.write(last, new byte[] {0, 0, 0, 40, 1, 2, 3}, StandardOpenOption.APPEND);
+
+		InMemoryProductRepository recovered = new InMemoryProductRepository();
+		CatalogPersistence restarted = start(recovered, FsyncPolicy.ALWAYS);
+		assertEquals(expected, describe(recovered));
+		recovered.save(product("Eggs", "Dairy", 12));
+		restarted.stop();
+
+		InMemoryProductRepository again = new InMemoryProductRepository();
+		start(again, FsyncPolicy.ALWAYS).stop();
+		assertEquals(describe(recovered), describe(again));
+	}
+
+	@Test
+	void testPersistenceOnlyStartsWithTheInMemoryRepository() {
+		// The conversion service of a booted application, which reads the fsync policy
+		ApplicationContextRunner runner = new ApplicationContextRunner()
+			.withInitializer(context -> context.getBeanFactory().setConversionService(ApplicationConversionService.getSharedInstance()))
+			.withUserConfiguration(InMemoryProductRepository.class, ColumnarProductRepository.class, CatalogPersistence.class)
+			.withPropertyValues("inventory.persistence.enabled=true", "inventory.persistence.directory=" + directory,
+				"inventory.persistence.snapshot-interval-seconds=0");
+
+		runner.run(context -> {
+			assertNull(context.getStartupFailure());
+			assertNotNull(context.getBean(CatalogPersistence.class));
+		});
+		runner.withPropertyValues("inventory.repository.type=columnar").run(context -> {
+			assertNull(context.getStartupFailure());
+			assertEquals(0, context.getBeansOfType(CatalogPersistence.class).size());
+			assertEquals(1, context.getBeansOfType(ColumnarProductRepository.class).size());
+		});
+	}
+
+	private CatalogPersistence start(InMemoryProductRepository repository, FsyncPolicy policy) throws IOException {
+		CatalogPersistence persistence = new CatalogPersistence(repository, directory.toString(), policy, 5, 0);
+		persistence.start();
+		return persistence;
+	}
+
+	private static void applyConcurrentChanges(InMemoryProductRepository repository) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int t = 0; t < 4; t++) {
+				int seed = t;
+				futures.add(executor.submit(() -> {
+					Random random = new Random(seed);
+					List<Long> ids = new ArrayList<>();
+					for (int i = 0; i < 300; i++) {
+						int operation = random.nextInt(10);
+						if (ids.isEmpty() || operation < 4) {
+							ids.add(repository.save(product("Product " + seed + "-" + i, "Category" + random.nextInt(4), random.nextInt(20))).getId());
+						} else if (operation < 7) {
+							repository.adjustStock(ids.get(random.nextInt(ids.size())), 1, LocalDateTime.now());
+						} else if (operation < 9) {
+							Product product = repository.findById(ids.get(random.nextInt(ids.size()))).orElseThrow();
+							product.setName(product.getName() + " v" + i);
+							product.setExpirationDate(LocalDate.of(2026, 1, 1).plusDays(i));
+							repository.save(product);
+						} else {
+							repository.deleteById(ids.remove(random.nextInt(ids.size())));
+						}
+					}
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private static Product product(String name, String category, int stock) {
+		LocalDateTime now = LocalDateTime.of(2025, 6, 1, 10, 30, 15, 123456789);
+		return new Product(name, category, 2.5, null, stock, now, now);
+	}
+
+	private static List<String> describe(InMemoryProductRepository repository) {
+		return repository.findAll().stream()
+			.sorted(Comparator.comparing(Product::getId))
+			.map(p -> p.getId() + "|" + p.getName() + "|" + p.getCategory() + "|" + p.getUnitPrice() + "|"
+				+ p.getExpirationDate() + "|" + p.getInStock() + "|" + p.getCreatedAt() + "|" + p.getUpdatedAt())
+			.collect(Collectors.toList());
+	}
+}
@@ -0,0 +1,118 @@
+package com.example.backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import com.example.controllers.ProductController;
+import com.example.models.Product;
+import com.example.models.StockAdjustment;
+import com.example.repositories.InMemoryProductRepository;
+import com.example.service.ChangeFeed;
+import com.example.service.ProductQueryCache;
+import com.example.service.ProductService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class ChangeFeedTests {
+
+	private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+	private InMemoryProductRepository repository;
+	private ChangeFeed changeFeed;
+	private ProductService productService;
+	private MockMvc mockMvc;
+
+	@BeforeEach
+	void setUp() {
+		repository = new InMemoryProductRepository();
+		// Never started, the tests run the ticks themselves
+		changeFeed = new ChangeFeed(repository, objectMapper, 250);
+		productService = new ProductService(repository, new ProductQueryCache(0), changeFeed);
+		mockMvc = MockMvcBuilders.standaloneSetup(new ProductController(productService, objectMapper)).build();
+	}
+
+	private Product create(String name, String category, int inStock) {
+		return productService.createProduct(new Product(name, category, 2, null, inStock, null, null));
+	}
+
+	private MockHttpServletResponse subscribe() throws Exception {
+		return mockMvc.perform(get("/api/products/changes"))
+			.andExpect(request().asyncStarted())
+			.andReturn().getResponse();
+	}
+
+	// The data of every "changes" event written so far
+	private List<JsonNode> changes(MockHttpServletResponse response) throws Exception {
+		List<JsonNode> events = new ArrayList<>();
+		String event = null;
+		for (String line : response.getContentAsString().split("\n")) {
+			if (line.startsWith("event:")) {
+				event = line.substring(6);
+			} else if (line.startsWith("data:") && "changes".equals(event)) {
+				events.add(objectMapper.readTree(line.substring(5)));
+			}
+		}
+		return events;
+	}
+
+	@Test
+	void testBurstOfWritesIsOneBatch() throws Exception {
+		Product milk = create("Milk", "Dairy", 5);
+		Product bread = create("Bread", "Bakery", 5);
+		MockHttpServletResponse response = subscribe();
+		assertEquals(1, changeFeed.subscriberCount());
+
+		for (int i = 0; i < 50; i++) {
+			productService.adjustStocks(List.of(new StockAdjustment(milk.getId(), 1)));
+		}
+		Product cheese = create("Cheese", "Dairy", 1);
+		productService.productDelete(cheese.getId());
+		productService.productDelete(bread.getId());
+		changeFeed.tick();
+		// Nothing changed since, nothing is sent
+		changeFeed.tick();
+
+		List<JsonNode> events = changes(response);
+		assertEquals(2, events.size());
+		// The first event is the whole metrics table
+		assertEquals(3, events.get(0).get("metrics").size());
+
+		JsonNode batch = events.get(1);
+		assertEquals(1, batch.get("products").size());
+		assertEquals(55, batch.get("products").get(0).get("inStock").asInt());
+		assertEquals(2, batch.get("deletedIds").size());
+		assertEquals(cheese.getId(), batch.get("deletedIds").get(0).asLong());
+		assertEquals(bread.getId(), batch.get("deletedIds").get(1).asLong());
+		// Dairy and Overall moved, Bakery is gone
+		assertEquals(2, batch.get("metrics").size());
+		assertEquals("Dairy", batch.get("metrics").get(0).get("category").asText());
+		assertEquals(55, batch.get("metrics").get(0).get("productCount").asLong());
+		assertEquals("Overall", batch.get("metrics").get(1).get("category").asText());
+		assertEquals("Bakery", batch.get("removedCategories").get(0).asText());
+	}
+
+	@Test
+	void testWritesWithoutSubscribersAreNotRecorded() throws Exception {
+		Product milk = create("Milk", "Dairy", 5);
+		productService.productOutOfStock(milk.getId());
+		MockHttpServletResponse response = subscribe();
+		changeFeed.tick();
+		assertEquals(1, changes(response).size());
+
+		create("Butter", "Dairy", 3);
+		changeFeed.tick();
+		List<JsonNode> events = changes(response);
+		assertEquals(2, events.size());
+		assertEquals("Butter", events.get(1).get("products").get(0).get("name").asText());
+		assertEquals(2, events.get(1).get("metrics").size());
+	}
+}
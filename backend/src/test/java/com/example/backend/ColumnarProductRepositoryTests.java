@@ -0,0 +1,57 @@
+package com.example.backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.models.Product;
+import com.example.models.TotalMode;
+import com.example.repositories.ColumnarProductRepository;
+import com.example.repositories.ProductRepository;
+
+class ColumnarProductRepositoryTests extends ProductRepositoryContractTests {
+
+	@Override
+	protected ProductRepository createRepository() {
+		return new ColumnarProductRepository();
+	}
+
+	// A date the columns can't hold is rejected before a category is acquired or an id is used
+	@Test
+	void testRejectedSaveLeavesNothingBehind() {
+		ColumnarProductRepository columnar = new ColumnarProductRepository();
+		Product kept = columnar.save(new Product("Kept", "Dairy", 1, null, 1, null, null));
+
+		assertThrows(IllegalArgumentException.class,
+			() -> columnar.save(new Product("Far", "Bakery", 1, LocalDate.MAX, 1, null, null)));
+		kept.setCategory("Pantry");
+		kept.setExpirationDate(LocalDate.MAX);
+		assertThrows(IllegalArgumentException.class, () -> columnar.save(kept));
+
+		assertEquals(List.of("Dairy"), columnar.findAllCategories());
+		assertEquals(kept.getId() + 1, columnar.save(new Product("Next", "Dairy", 1, null, 1, null, null)).getId());
+	}
+
+	// Listings only visit the live products, however many were deleted before them
+	@Test
+	void testScansSkipDeletedSlots() {
+		ColumnarProductRepository columnar = new ColumnarProductRepository();
+		for (int i = 0; i < 1000; i++) {
+			Long id = columnar.save(new Product("Gone " + i, "Dairy", 1, null, 1, null, null)).getId();
+			columnar.deleteById(id);
+		}
+		Product first = columnar.save(new Product("First", "Dairy", 1, null, 1, null, null));
+		Product second = columnar.save(new Product("Second", "Dairy", 1, null, 1, null, null));
+
+		long scanned = columnar.productsScanned();
+		assertEquals(2, columnar.getProducts(null, null, null, null, "asc", null, "asc", 0, 10).getTotalElements());
+		assertEquals(List.of(second.getId(), first.getId()), columnar.getProducts(null, null, null, null, "desc", null, "asc", 0, 10, TotalMode.EXACT)
+			.getContent().stream().map(Product::getId).toList());
+		assertEquals(List.of(first.getId(), second.getId()), columnar.findAll().stream().map(Product::getId).toList());
+		assertEquals(4, columnar.productsScanned() - scanned);
+	}
+}
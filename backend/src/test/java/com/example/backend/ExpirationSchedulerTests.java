@@ -0,0 +1,199 @@
+package com.example.backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import com.example.controllers.ProductController;
+import com.example.models.ExpirationAlerts;
+import com.example.models.Product;
+import com.example.repositories.InMemoryProductRepository;
+import com.example.repositories.ProductJournal;
+import com.example.service.ChangeFeed;
+import com.example.service.ExpirationScheduler;
+import com.example.service.ProductQueryCache;
+import com.example.service.ProductService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class ExpirationSchedulerTests {
+
+	private static final LocalDate TODAY = LocalDate.of(2026, 3, 10);
+
+	private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+	private InMemoryProductRepository repository;
+	private ChangeFeed changeFeed;
+	private ProductService productService;
+	private MockMvc mockMvc;
+
+	@BeforeEach
+	void setUp() {
+		repository = new InMemoryProductRepository();
+		// Never started, the tests run the ticks themselves
+		changeFeed = new ChangeFeed(repository, objectMapper, 250);
+		productService = new ProductService(repository, new ProductQueryCache(0), changeFeed);
+		mockMvc = MockMvcBuilders.standaloneSetup(new ProductController(productService, objectMapper)).build();
+	}
+
+	private Product create(String name, LocalDate expirationDate, int inStock) {
+		return productService.createProduct(new Product(name, "Food", 2, expirationDate, inStock, null, null));
+	}
+
+	private static List<String> names(List<Product> products) {
+		return products.stream().map(Product::getName).collect(Collectors.toList());
+	}
+
+	@Test
+	void testTicksAnnounceEachProductOncePerDate() {
+		ExpirationScheduler scheduler = new ExpirationScheduler(productService, changeFeed, 0, 7, false);
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		scheduler.bindTo(registry);
+		create("Yesterday", TODAY.minusDays(1), 5);
+		create("Today", TODAY, 5);
+		Product nextWeek = create("Next week", TODAY.plusDays(7), 5);
+		create("Later", TODAY.plusDays(8), 5);
+		create("Long gone", TODAY.minusDays(30), 5);
+		create("Never", null, 5);
+
+		ExpirationAlerts first = scheduler.tick(TODAY);
+		assertEquals(List.of("Today", "Next week"), names(first.getExpiringSoon()));
+		assertEquals(List.of("Yesterday"), names(first.getExpired()));
+		assertTrue(scheduler.tick(TODAY).isEmpty());
+
+		// A day later Later enters the window and Today expires
+		ExpirationAlerts second = scheduler.tick(TODAY.plusDays(1));
+		assertEquals(List.of("Later"), names(second.getExpiringSoon()));
+		assertEquals(List.of("Today"), names(second.getExpired()));
+
+		// A new date is announced again
+		nextWeek.setExpirationDate(TODAY.plusDays(2));
+		productService.updateProduct(nextWeek);
+		assertEquals(List.of("Next week"), names(scheduler.tick(TODAY.plusDays(1)).getExpiringSoon()));
+
+		assertEquals(4, registry.get("inventory.expiration.alerts").tag("type", "expiring").functionCounter().count());
+		assertEquals(2, registry.get("inventory.expiration.alerts").tag("type", "expired").functionCounter().count());
+		// Nothing marked unless enabled
+		assertEquals(5, repository.findById(first.getExpired().get(0).getId()).orElseThrow().getInStock());
+	}
+
+	@Test
+	void testExpiredProductsGoOutOfStockAndArePublished() throws Exception {
+		ExpirationScheduler scheduler = new ExpirationScheduler(productService, changeFeed, 0, 3, true);
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		scheduler.bindTo(registry);
+		Product milk = create("Milk", TODAY.minusDays(2), 5);
+		Product yogurt = create("Yogurt", TODAY.minusDays(1), 0);
+		create("Cheese", TODAY.plusDays(3), 5);
+		MockHttpServletResponse response = mockMvc.perform(get("/api/products/changes"))
+			.andExpect(request().asyncStarted())
+			.andReturn().getResponse();
+
+		scheduler.tick(TODAY);
+
+		assertEquals(0, repository.findById(milk.getId()).orElseThrow().getInStock());
+		assertEquals(0, repository.findById(yogurt.getId()).orElseThrow().getInStock());
+		assertEquals(1, registry.get("inventory.expiration.marked-out-of-stock").functionCounter().count());
+
+		List<JsonNode> events = new ArrayList<>();
+		String event = null;
+		for (String line : response.getContentAsString().split("\n")) {
+			if (line.startsWith("event:")) {
+				event = line.substring(6);
+			} else if (line.startsWith("data:") && "expiration".equals(event)) {
+				events.add(objectMapper.readTree(line.substring(5)));
+			}
+		}
+		assertEquals(1, events.size());
+		assertEquals("Cheese", events.get(0).get("expiringSoon").get(0).get("name").asText());
+		assertEquals(2, events.get(0).get("expired").size());
+	}
+
+	// A product that fails to go out of stock is counted and logged, the others are still marked
+	@Test
+	void testFailedMarkIsCounted() {
+		Product milk = create("Milk", TODAY.minusDays(2), 5);
+		Product bread = create("Bread", TODAY.minusDays(1), 5);
+		Product gone = create("Gone", TODAY.minusDays(1), 5);
+		repository.setJournal(new ProductJournal() {
+			@Override
+			public long put(Product product) {
+				if (product.getName().equals("Milk")) {
+					throw new UncheckedIOException(new IOException("Disk full"));
+				}
+				return 0;
+			}
+			@Override
+			public long delete(Long id) { return 0; }
+			@Override
+			public void awaitDurable(long position) {}
+		});
+		// Deleted after the tick reads it, which isn't a failure
+		ProductService deleting = new ProductService(repository, new ProductQueryCache(0), changeFeed) {
+			@Override
+			public List<Product> getExpiringProducts(LocalDate from, LocalDate to, boolean latestFirst, int limit) {
+				List<Product> products = super.getExpiringProducts(from, to, latestFirst, limit);
+				if (to.isBefore(TODAY)) {
+					repository.deleteById(gone.getId());
+				}
+				return products;
+			}
+		};
+		ExpirationScheduler scheduler = new ExpirationScheduler(deleting, changeFeed, 0, 3, true);
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		scheduler.bindTo(registry);
+
+		assertEquals(3, scheduler.tick(TODAY).getExpired().size());
+
+		assertEquals(5, repository.findById(milk.getId()).orElseThrow().getInStock());
+		assertEquals(0, repository.findById(bread.getId()).orElseThrow().getInStock());
+		assertEquals(1, registry.get("inventory.expiration.failed-ticks").functionCounter().count());
+		assertEquals(1, registry.get("inventory.expiration.marked-out-of-stock").functionCounter().count());
+	}
+
+	@Test
+	void testExpiringEndpoint() throws Exception {
+		LocalDate today = LocalDate.now();
+		create("Expired", today.minusDays(40), 5);
+		create("Expired yesterday", today.minusDays(1), 5);
+		create("Tomorrow", today.plusDays(1), 5);
+		create("Today", today, 5);
+		create("In a month", today.plusDays(30), 5);
+
+		mockMvc.perform(get("/api/products/expiring"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.length()").value(2))
+			.andExpect(jsonPath("$[0].name").value("Today"))
+			.andExpect(jsonPath("$[1].name").value("Tomorrow"));
+		mockMvc.perform(get("/api/products/expiring").param("days", "30").param("limit", "1"))
+			.andExpect(jsonPath("$.length()").value(1));
+		// The most recently expired first
+		mockMvc.perform(get("/api/products/expiring").param("expired", "true"))
+			.andExpect(jsonPath("$.length()").value(2))
+			.andExpect(jsonPath("$[0].name").value("Expired yesterday"))
+			.andExpect(jsonPath("$[1].name").value("Expired"));
+		mockMvc.perform(get("/api/products/expiring").param("expired", "true").param("limit", "1"))
+			.andExpect(jsonPath("$[0].name").value("Expired yesterday"));
+		for (String days : new String[] {"-1", "3651", "999999999"}) {
+			mockMvc.perform(get("/api/products/expiring").param("days", days))
+				.andExpect(status().isBadRequest());
+		}
+	}
+}
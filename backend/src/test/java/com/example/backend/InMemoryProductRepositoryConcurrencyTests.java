@@ -0,0 +1,237 @@
+package com.example.backend;
+
+import com.example.models.CategoryTotals;
+import com.example.models.CustomPage;
+import com.example.models.Product;
+import com.example.repositories.InMemoryProductRepository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+class InMemoryProductRepositoryConcurrencyTests {
+
+	private static final int THREADS = 8;
+	private static final int OPERATIONS_PER_THREAD = 5000;
+	private static final List<String> CATEGORIES = List.of("Fruit", "Dairy", "Bakery", "Frozen");
+
+	private final InMemoryProductRepository repository = new InMemoryProductRepository();
+
+	private static Product randomProduct() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		Product product = new Product();
+		product.setName("Item " + random.nextInt(500));
+		product.setCategory(CATEGORIES.get(random.nextInt(CATEGORIES.size())));
+		product.setUnitPrice(random.nextInt(1000) / 10.0);
+		product.setExpirationDate(LocalDate.of(2026, 1, 1).plusDays(random.nextInt(60)));
+		product.setInStock(random.nextInt(3) == 0 ? 0 : random.nextInt(50));
+		return product;
+	}
+
+	@Test
+	void testMixedTrafficKeepsIdsUniqueAndIndexesConsistent() throws Exception {
+		Set<Long> createdIds = ConcurrentHashMap.newKeySet();
+		List<Long> knownIds = new ArrayList<>();
+		for (int i = 0; i < 200; i++) {
+			Long id = repository.save(randomProduct()).getId();
+			knownIds.add(id);
+			createdIds.add(id);
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<Integer>> results = new ArrayList<>();
+		for (int t = 0; t < THREADS; t++) {
+			results.add(executor.submit(() -> {
+				start.await();
+				ThreadLocalRandom random = ThreadLocalRandom.current();
+				int created = 0;
+				for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+					Long id = knownIds.get(random.nextInt(knownIds.size()));
+					switch (random.nextInt(5)) {
+						case 0:
+							assertTrue(createdIds.add(repository.save(randomProduct()).getId()), "Duplicated id");
+							created++;
+							break;
+						case 1:
+							Product update = randomProduct();
+							update.setId(id);
+							try {
+								repository.save(update);
+							} catch (RuntimeException deleted) {
+								// The product was removed by another thread
+							}
+							break;
+						case 2:
+							repository.deleteById(id);
+							break;
+						default:
+							assertPageIsConsistent(randomQuery(random));
+							break;
+					}
+				}
+				return created;
+			}));
+		}
+
+		start.countDown();
+		int created = 0;
+		for (Future<Integer> result : results) {
+			created += result.get(60, TimeUnit.SECONDS);
+		}
+		executor.shutdown();
+
+		assertEquals(200 + created, createdIds.size());
+
+		// Once writes have stopped, the indexes must agree with a full scan
+		for (String category : CATEGORIES) {
+			for (Boolean availability : new Boolean[] {null, true, false}) {
+				List<Long> expected = repository.findAll().stream()
+					.filter(p -> category.equals(p.getCategory()))
+					.filter(p -> availability == null || (availability ? p.getInStock() > 0 : p.getInStock() == 0))
+					.map(Product::getId)
+					.sorted()
+					.collect(Collectors.toList());
+
+				CustomPage<Product> page = repository.getProducts(null, List.of(category), availability, null, "asc", null, "asc", 0, 100000);
+
+				assertEquals(expected.size(), page.getTotalElements());
+				assertEquals(expected, page.getContent().stream().map(Product::getId).collect(Collectors.toList()));
+			}
+		}
+		for (CategoryTotals totals : repository.getCategoryTotals()) {
+			List<Product> products = repository.findAll().stream()
+				.filter(p -> totals.getCategory().equals(p.getCategory()))
+				.collect(Collectors.toList());
+			assertEquals(products.size(), totals.getProductCount());
+			assertEquals(products.stream().mapToLong(Product::getInStock).sum(), totals.getUnitsInStock());
+		}
+	}
+
+	@Test
+	void testConcurrentRestocksAreNotLost() throws Exception {
+		Product product = randomProduct();
+		product.setInStock(0);
+		Long id = repository.save(product).getId();
+
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<?>> results = new ArrayList<>();
+		for (int t = 0; t < THREADS; t++) {
+			results.add(executor.submit(() -> {
+				start.await();
+				for (int i = 0; i < 1000; i++) {
+					repository.adjustStock(id, 10, LocalDateTime.now());
+				}
+				return null;
+			}));
+		}
+
+		start.countDown();
+		for (Future<?> result : results) {
+			result.get(60, TimeUnit.SECONDS);
+		}
+		executor.shutdown();
+
+		assertEquals(THREADS * 1000 * 10, repository.findById(id).orElseThrow().getInStock());
+		assertEquals(1, repository.getProducts(null, null, true, "inStock", "asc", null, "asc", 0, 10).getTotalElements());
+		assertFalse(repository.compareAndSetStock(id, 0, 5, LocalDateTime.now()));
+		assertTrue(repository.compareAndSetStock(id, THREADS * 1000 * 10, 0, LocalDateTime.now()));
+		assertEquals(List.of(id), repository.getProducts(null, null, false, "inStock", "asc", null, "asc", 0, 10)
+			.getContent().stream().map(Product::getId).collect(Collectors.toList()));
+	}
+
+	@Test
+	void testConcurrentAddsAndRemovesOnOneDayKeepTheExpirationIndex() throws Exception {
+		LocalDate day = LocalDate.of(2026, 2, 1);
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<?>> results = new ArrayList<>();
+		for (int t = 0; t < THREADS; t++) {
+			results.add(executor.submit(() -> {
+				start.await();
+				for (int i = 0; i < 2000; i++) {
+					Product product = randomProduct();
+					product.setExpirationDate(day);
+					Long id = repository.save(product).getId();
+					// Every other product is removed right away, so the day keeps emptying
+					// while other threads add to it
+					if (i % 2 == 0) {
+						repository.deleteById(id);
+					}
+				}
+				return null;
+			}));
+		}
+
+		start.countDown();
+		for (Future<?> result : results) {
+			result.get(60, TimeUnit.SECONDS);
+		}
+		executor.shutdown();
+
+		List<Long> expected = repository.findAll().stream()
+			.map(Product::getId)
+			.sorted()
+			.collect(Collectors.toList());
+		assertEquals(THREADS * 1000, expected.size());
+		assertEquals(expected, repository.findExpiring(day, day, Integer.MAX_VALUE).stream()
+			.map(Product::getId)
+			.collect(Collectors.toList()));
+	}
+
+	private Query randomQuery(ThreadLocalRandom random) {
+		String sortBy = List.of("name", "unitPrice", "inStock", "expirationDate", "id").get(random.nextInt(5));
+		String category = CATEGORIES.get(random.nextInt(CATEGORIES.size()));
+		Boolean availability = random.nextBoolean() ? null : random.nextBoolean();
+		String secondSort = random.nextInt(4) == 0 ? "name" : null;
+		return new Query(category, availability, sortBy, secondSort);
+	}
+
+	// Every row of a page under concurrent writes must still match the filters,
+	// and no product may show up twice
+	private void assertPageIsConsistent(Query query) {
+		CustomPage<Product> page = repository.getProducts(null, List.of(query.category), query.availability,
+			query.sortBy, "desc", query.secondSort, "asc", 0, 20);
+
+		Set<Long> seen = new HashSet<>();
+		for (Product product : page.getContent()) {
+			assertTrue(seen.add(product.getId()), "Duplicated row");
+			assertEquals(query.category, product.getCategory());
+			if (query.availability != null) {
+				assertEquals(query.availability, product.getInStock() > 0);
+			}
+		}
+	}
+
+	private static final class Query {
+		private final String category;
+		private final Boolean availability;
+		private final String sortBy;
+		private final String secondSort;
+
+		private Query(String category, Boolean availability, String sortBy, String secondSort) {
+			this.category = category;
+			this.availability = availability;
+			this.sortBy = sortBy;
+			this.secondSort = secondSort;
+		}
+	}
+}
@@ -0,0 +1,87 @@
+package com.example.backend;
+
+import com.example.models.CustomPage;
+import com.example.models.Product;
+import com.example.models.TotalMode;
+import com.example.repositories.InMemoryProductRepository;
+import com.example.repositories.ProductRepository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class InMemoryProductRepositoryTests extends ProductRepositoryContractTests {
+
+	@Override
+	protected ProductRepository createRepository() {
+		return new InMemoryProductRepository();
+	}
+
+	// A filter that matches nothing answers without walking a sorted view
+	@Test
+	void testEmptyCandidatesScanNothing() {
+		for (int i = 0; i < 1000; i++) {
+			repository.save(new Product("Item " + i, "Dairy", 1 + i % 10, null, i % 5, null, null));
+		}
+		long scanned = repository.productsScanned();
+
+		for (String sortBy : new String[] {"name", "unitPrice", null}) {
+			CustomPage<Product> page = repository.getProducts(null, List.of("Unknown"), null, sortBy, "asc", null, "asc", 0, 10);
+			assertTrue(page.getContent().isEmpty());
+			assertEquals(0, page.getTotalElements());
+			assertFalse(page.hasNext());
+			CustomPage<Product> after = repository.getProductsAfter(null, List.of("Unknown"), null, sortBy, "asc", null, "asc",
+				repository.findById(2L).orElseThrow(), 10, TotalMode.EXACT);
+			assertTrue(after.getContent().isEmpty());
+		}
+		assertEquals(scanned, repository.productsScanned());
+	}
+
+	// A catalog restored at once answers every query like the one it was copied from
+	@Test
+	void testRestoreAllMatchesTheOriginal() {
+		for (int i = 0; i < 300; i++) {
+			LocalDate expirationDate = i % 3 == 0 ? null : LocalDate.of(2026, 1, 1).plusDays(i % 40);
+			repository.save(new Product("Item " + (i * 7919 % 300), i % 11 == 0 ? null : "Category" + i % 6,
+				(i * 31 % 100) / 10.0, expirationDate, i % 4 == 0 ? 0 : i % 50, null, null));
+		}
+		for (long id = 1; id <= 300; id += 9) {
+			repository.deleteById(id);
+		}
+		List<Product> copies = repository.findAll();
+		InMemoryProductRepository restored = new InMemoryProductRepository();
+		restored.restoreAll(copies);
+
+		for (String sortBy : new String[] {"name", "category", "unitPrice", "inStock", "expirationDate", null}) {
+			for (String direction : new String[] {"asc", "desc"}) {
+				assertEquals(ids(repository.getProducts(null, null, null, sortBy, direction, null, "asc", 1, 25)),
+					ids(restored.getProducts(null, null, null, sortBy, direction, null, "asc", 1, 25)), sortBy + " " + direction);
+			}
+		}
+		assertEquals(ids(repository.getProducts("item 1", List.of("Category2", "Category3"), true, "name", "asc", null, "asc", 0, 50)),
+			ids(restored.getProducts("item 1", List.of("Category2", "Category3"), true, "name", "asc", null, "asc", 0, 50)));
+		assertEquals(repository.findAllCategories(), restored.findAllCategories());
+		assertEquals(repository.getCategoryTotals().size(), restored.getCategoryTotals().size());
+		for (int i = 0; i < repository.getCategoryTotals().size(); i++) {
+			assertEquals(repository.getCategoryTotals().get(i).getInventoryValue(), restored.getCategoryTotals().get(i).getInventoryValue());
+		}
+		assertEquals(ids(repository.findExpiring(LocalDate.of(2026, 1, 1), LocalDate.of(2026, 1, 20), 100)),
+			ids(restored.findExpiring(LocalDate.of(2026, 1, 1), LocalDate.of(2026, 1, 20), 100)));
+		assertEquals(((InMemoryProductRepository) repository).nextId(), restored.nextId());
+		assertThrows(IllegalStateException.class, () -> restored.restoreAll(copies));
+	}
+
+	private static List<Long> ids(CustomPage<Product> page) {
+		return ids(page.getContent());
+	}
+
+	private static List<Long> ids(List<Product> products) {
+		return products.stream().map(Product::getId).toList();
+	}
+}
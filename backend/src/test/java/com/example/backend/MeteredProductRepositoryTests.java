@@ -0,0 +1,73 @@
+package com.example.backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.example.models.Product;
+import com.example.repositories.ColumnarProductRepository;
+import com.example.repositories.InMemoryProductRepository;
+import com.example.repositories.MeteredProductRepository;
+import com.example.repositories.ProductRepository;
+import com.example.service.ChangeFeed;
+import com.example.service.ProductQueryCache;
+import com.example.service.ProductService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class MeteredProductRepositoryTests {
+
+	private SimpleMeterRegistry registry;
+
+	@BeforeEach
+	void setUp() {
+		registry = new SimpleMeterRegistry();
+	}
+
+	private ProductService productService(ProductRepository repository) {
+		return new ProductService(repository, new ProductQueryCache(0), new ChangeFeed(repository, new ObjectMapper(), 0), registry);
+	}
+
+	@Test
+	void testCallsAreTimedPerMethod() {
+		InMemoryProductRepository repository = new InMemoryProductRepository();
+		ProductService productService = productService(repository);
+		LocalDateTime now = LocalDateTime.now();
+		Product milk = productService.createProduct(new Product("Milk", "Dairy", 2, null, 5, now, now));
+		productService.createProduct(new Product("Bread", "Bakery", 3, null, 0, now, now));
+		productService.productInStock(milk.getId());
+		productService.getProducts(null, null, true, null, "asc", null, "asc", 0, 10);
+		productService.getInventoryMetrics();
+
+		assertEquals(2, registry.get("inventory.repository").tag("method", "save").timer().count());
+		assertEquals(1, registry.get("inventory.repository").tag("method", "adjustStock").timer().count());
+		assertEquals(1, registry.get("inventory.repository").tag("method", "getProducts").timer().count());
+		assertEquals(1, registry.get("inventory.repository").tag("method", "getCategoryTotals").timer().count());
+		assertEquals(2, registry.get("inventory.catalog.size").gauge().value());
+		assertEquals(2, registry.get("inventory.catalog.categories").gauge().value());
+	}
+
+	@Test
+	void testListingsCountScannedAndReturnedProducts() {
+		for (ProductRepository repository : new ProductRepository[] {new InMemoryProductRepository(), new ColumnarProductRepository()}) {
+			registry = new SimpleMeterRegistry();
+			ProductRepository metered = new MeteredProductRepository(repository, registry);
+			LocalDateTime now = LocalDateTime.now();
+			for (int i = 0; i < 30; i++) {
+				metered.save(new Product("Product " + i, i % 3 == 0 ? "Dairy" : "Bakery", 1 + i, null, i % 2, now, now));
+			}
+
+			// At least the page and the row telling whether there is a next one were tested
+			assertEquals(5, metered.getProducts(null, null, true, "unitPrice", "asc", null, "asc", 0, 5).getContent().size());
+			assertEquals(5, registry.get("inventory.listing.returned").counter().count());
+			double scanned = registry.get("inventory.listing.scanned").functionCounter().count();
+			assertTrue(scanned >= 6, "scanned " + scanned);
+			assertEquals(repository.productsScanned(), scanned);
+		}
+	}
+}
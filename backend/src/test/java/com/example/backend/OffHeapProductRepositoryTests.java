@@ -0,0 +1,126 @@
+package com.example.backend;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.example.models.CustomPage;
+import com.example.models.Product;
+import com.example.repositories.InMemoryProductRepository;
+import com.example.repositories.OffHeapProductRepository;
+import com.example.repositories.ProductRepository;
+
+class OffHeapProductRepositoryTests extends ProductRepositoryContractTests {
+
+	@Override
+	protected ProductRepository createRepository() {
+		return new OffHeapProductRepository();
+	}
+
+	// Enough renames and deletes to reuse records and compact the string area a few times
+	@Test
+	void testRecordsAndNamesSurviveChurn() {
+		InMemoryProductRepository reference = new InMemoryProductRepository();
+		Random random = new Random(11);
+		List<Long> ids = new ArrayList<>();
+		for (int i = 0; i < 2000; i++) {
+			Product product = new Product("Product " + i, "Category" + (i % 5), 1 + i % 50, null, i % 7, null, null);
+			ids.add(repository.save(product).getId());
+			reference.save(new Product(product));
+		}
+
+		for (int i = 0; i < 40000; i++) {
+			Long id = ids.get(random.nextInt(ids.size()));
+			if (random.nextInt(10) == 0) {
+				repository.deleteById(id);
+				reference.deleteById(id);
+				Product product = new Product("Recreated " + i, "Category" + (i % 5), 3, null, 1, null, null);
+				ids.set(ids.indexOf(id), repository.save(product).getId());
+				reference.save(new Product(product));
+			} else {
+				Product product = repository.findById(id).orElseThrow();
+				product.setName("Renamed ".repeat(random.nextInt(8)) + "ñandú " + i);
+				repository.save(new Product(product));
+				reference.save(product);
+			}
+		}
+
+		List<Product> expected = reference.findAll();
+		List<Product> actual = repository.findAll();
+		assertEquals(expected.size(), actual.size());
+		for (Product product : expected) {
+			Product stored = repository.findById(product.getId()).orElseThrow();
+			assertEquals(product.getName(), stored.getName());
+			assertEquals(product.getCategory(), stored.getCategory());
+			assertEquals(product.getInStock(), stored.getInStock());
+		}
+	}
+
+	@Test
+	void testBootsFromAnExportedSnapshot(@TempDir Path directory) throws Exception {
+		LocalDateTime now = LocalDateTime.of(2025, 3, 1, 9, 0, 0, 5000);
+		for (int i = 0; i < 40000; i++) {
+			repository.save(new Product("Product " + i, "Category" + (i % 7), 1 + i % 30, LocalDate.of(2025, 1, 1).plusDays(i % 400), i % 9, now, now));
+		}
+		for (long id = 1; id <= 40000; id += 13) {
+			repository.deleteById(id);
+		}
+		repository.deleteById(40000L);
+		Path file = directory.resolve("catalog.bin");
+		((OffHeapProductRepository) repository).exportSnapshot(file);
+
+		OffHeapProductRepository booted = OffHeapProductRepository.boot(file);
+		assertEquals(describe(repository.findAll()), describe(booted.findAll()));
+		assertEquals(repository.findAllCategories(), booted.findAllCategories());
+		assertEquals(repository.getCategoryTotals().size(), booted.getCategoryTotals().size());
+		CustomPage<Product> expected = repository.getProducts("duct 12", List.of("Category3"), true, "unitPrice", "desc", null, null, 2, 10);
+		CustomPage<Product> actual = booted.getProducts("duct 12", List.of("Category3"), true, "unitPrice", "desc", null, null, 2, 10);
+		assertEquals(expected.getTotalElements(), actual.getTotalElements());
+		assertEquals(describe(expected.getContent()), describe(actual.getContent()));
+
+		// Writes after booting go to memory, the file keeps the exported catalog and
+		// ids deleted before the export are not handed out again
+		byte[] exported = Files.readAllBytes(file);
+		Product renamed = booted.findById(2L).orElseThrow();
+		renamed.setName("Renamed after boot");
+		booted.save(renamed);
+		booted.deleteById(3L);
+		assertEquals(40001L, booted.save(new Product("New", "Category1", 1, null, 1, now, now)).getId());
+		assertEquals("Renamed after boot", booted.findById(2L).orElseThrow().getName());
+		assertArrayEquals(exported, Files.readAllBytes(file));
+
+		// The expiration index of the booted catalog is built on first use, writes made
+		// before that are in it too
+		LocalDate from = LocalDate.of(2025, 1, 1);
+		List<Long> expiring = new ArrayList<>();
+		for (Product product : repository.findExpiring(from, from.plusDays(5), Integer.MAX_VALUE)) {
+			if (product.getId() != 3L) {
+				expiring.add(product.getId());
+			}
+		}
+		List<Long> bootedExpiring = new ArrayList<>();
+		for (Product product : booted.findExpiring(from, from.plusDays(5), Integer.MAX_VALUE)) {
+			bootedExpiring.add(product.getId());
+		}
+		assertEquals(expiring, bootedExpiring);
+	}
+
+	private static List<String> describe(List<Product> products) {
+		List<String> descriptions = new ArrayList<>();
+		for (Product p : products) {
+			descriptions.add(p.getId() + "|" + p.getName() + "|" + p.getCategory() + "|" + p.getUnitPrice() + "|"
+				+ p.getExpirationDate() + "|" + p.getInStock() + "|" + p.getCreatedAt() + "|" + p.getUpdatedAt());
+		}
+		return descriptions;
+	}
+}
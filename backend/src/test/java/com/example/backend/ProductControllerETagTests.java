@@ -0,0 +1,108 @@
+package com.example.backend;
+
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import com.example.controllers.ProductController;
+import com.example.models.Product;
+import com.example.models.ProductRanges;
+import com.example.models.TotalMode;
+import com.example.repositories.InMemoryProductRepository;
+import com.example.service.ProductService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class ProductControllerETagTests {
+
+	private InMemoryProductRepository repository;
+	private MockMvc mockMvc;
+
+	@BeforeEach
+	void setUp() {
+		repository = spy(new InMemoryProductRepository());
+		mockMvc = MockMvcBuilders.standaloneSetup(new ProductController(new ProductService(repository), new ObjectMapper())).build();
+		save("Milk", "Dairy");
+		save("Bread", "Bakery");
+	}
+
+	private Product save(String name, String category) {
+		LocalDateTime now = LocalDateTime.now();
+		return repository.save(new Product(name, category, 1, null, 5, now, now));
+	}
+
+	// Without a total, hasNext is how a client knows whether to ask for the next page
+	@Test
+	void testListingWithoutTotalTellsWhetherMorePagesFollow() throws Exception {
+		mockMvc.perform(get("/api/products").param("total", "none").param("size", "1"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.hasNext").value(true));
+		mockMvc.perform(get("/api/products").param("total", "none").param("size", "1").param("page", "1"))
+			.andExpect(jsonPath("$.content.length()").value(1))
+			.andExpect(jsonPath("$.hasNext").value(false));
+	}
+
+	@Test
+	void testUnchangedListingIsNotRecomputed() throws Exception {
+		String etag = mockMvc.perform(get("/api/products").param("category", "Dairy"))
+			.andExpect(status().isOk())
+			.andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+		assertNotNull(etag);
+
+		mockMvc.perform(get("/api/products").param("category", "Dairy").header(HttpHeaders.IF_NONE_MATCH, etag))
+			.andExpect(status().isNotModified())
+			.andExpect(content().string(""));
+		verify(repository, times(1)).getProducts(isNull(), any(), isNull(), any(ProductRanges.class), isNull(), anyString(),
+			isNull(), anyString(), anyInt(), anyInt(), any(TotalMode.class));
+
+		// A write in another category keeps the tag of the dairy listing, one in dairy changes it
+		save("Cake", "Bakery");
+		mockMvc.perform(get("/api/products").param("category", "Dairy").header(HttpHeaders.IF_NONE_MATCH, etag))
+			.andExpect(status().isNotModified());
+		save("Cheese", "Dairy");
+		String newEtag = mockMvc.perform(get("/api/products").param("category", "Dairy").header(HttpHeaders.IF_NONE_MATCH, etag))
+			.andExpect(status().isOk())
+			.andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+		assertNotEquals(etag, newEtag);
+	}
+
+	@Test
+	void testMetricsAndCategoriesFollowTheCatalog() throws Exception {
+		for (String path : new String[] {"/api/products/metrics", "/api/products/categories"}) {
+			String etag = mockMvc.perform(get(path))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+			mockMvc.perform(get(path).header(HttpHeaders.IF_NONE_MATCH, etag))
+				.andExpect(status().isNotModified());
+
+			save("Jam " + path, "Pantry");
+			String newEtag = mockMvc.perform(get(path).header(HttpHeaders.IF_NONE_MATCH, etag))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+			assertNotEquals(etag, newEtag);
+		}
+		// Each endpoint was computed twice, never for the 304
+		verify(repository, times(2)).getCategoryTotals();
+		verify(repository, times(2)).findAllCategories();
+		verify(repository, never()).findAll();
+	}
+}
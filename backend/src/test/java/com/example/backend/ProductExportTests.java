@@ -0,0 +1,96 @@
+package com.example.backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.example.models.ImportReport;
+import com.example.models.Product;
+import com.example.repositories.InMemoryProductRepository;
+import com.example.service.ProductService;
+import com.example.service.feed.CsvProductFeedReader;
+import com.example.service.feed.CsvProductFeedWriter;
+import com.example.service.feed.NdjsonProductFeedReader;
+import com.example.service.feed.NdjsonProductFeedWriter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+class ProductExportTests {
+
+	private static final LocalDateTime NOW = LocalDateTime.of(2025, 6, 1, 12, 30);
+
+	private InMemoryProductRepository repository;
+	private ProductService productService;
+
+	@BeforeEach
+	void setUp() {
+		repository = new InMemoryProductRepository();
+		productService = new ProductService(repository);
+	}
+
+	private void save(String name, String category, double unitPrice, int inStock, LocalDate expirationDate) {
+		repository.save(new Product(name, category, unitPrice, expirationDate, inStock, NOW, NOW));
+	}
+
+	@Test
+	void testCsvExport() throws IOException {
+		save("Milk", "Dairy", 1.5, 10, LocalDate.of(2025, 12, 31));
+		save("Cheese, aged", "Dairy", 12, 0, null);
+		save("The \"best\" bread\nloaf", "Bakery", 2.25, 3, null);
+
+		StringWriter output = new StringWriter();
+		productService.exportProducts(null, List.of("Dairy", "Bakery"), true, new CsvProductFeedWriter(output));
+
+		assertEquals("id,name,category,unitPrice,inStock,expirationDate,createdAt,updatedAt\r\n"
+			+ "1,Milk,Dairy,1.5,10,2025-12-31,2025-06-01T12:30,2025-06-01T12:30\r\n"
+			+ "3,\"The \"\"best\"\" bread\nloaf\",Bakery,2.25,3,,2025-06-01T12:30,2025-06-01T12:30\r\n", output.toString());
+	}
+
+	@Test
+	void testEmptyCsvExportHasHeader() throws IOException {
+		StringWriter output = new StringWriter();
+		productService.exportProducts("nothing", null, null, new CsvProductFeedWriter(output));
+
+		assertEquals("id,name,category,unitPrice,inStock,expirationDate,createdAt,updatedAt\r\n", output.toString());
+	}
+
+	// What is exported can be imported into another catalog as it is
+	@Test
+	void testExportsCanBeImportedBack() throws IOException {
+		for (int i = 0; i < 2500; i++) {
+			save("Product, " + i, "Category" + (i % 4), i % 100 / 4.0, i % 5, i % 3 == 0 ? null : LocalDate.of(2025, 1, 1).plusDays(i % 365));
+		}
+		ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules()
+			.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+		StringWriter csv = new StringWriter();
+		productService.exportProducts(null, null, null, new CsvProductFeedWriter(csv));
+		StringWriter ndjson = new StringWriter();
+		productService.exportProducts(null, null, null, new NdjsonProductFeedWriter(ndjson, objectMapper));
+
+		for (boolean fromCsv : new boolean[] {true, false}) {
+			InMemoryProductRepository copy = new InMemoryProductRepository();
+			ImportReport report = new ProductService(copy).importProducts(fromCsv
+				? new CsvProductFeedReader(new StringReader(csv.toString()))
+				: new NdjsonProductFeedReader(new StringReader(ndjson.toString()), objectMapper));
+
+			assertEquals(2500, report.getImportedRows());
+			assertEquals(describe(repository.findAll()), describe(copy.findAll()));
+		}
+	}
+
+	private static List<String> describe(List<Product> products) {
+		return products.stream()
+			.map(p -> p.getName() + "|" + p.getCategory() + "|" + p.getUnitPrice() + "|" + p.getInStock() + "|" + p.getExpirationDate())
+			.collect(Collectors.toList());
+	}
+}
@@ -0,0 +1,209 @@
+package com.example.backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.example.models.CustomPage;
+import com.example.models.ImportReport;
+import com.example.models.ImportRowError;
+import com.example.models.Product;
+import com.example.repositories.InMemoryProductRepository;
+import com.example.repositories.ProductJournal;
+import com.example.service.ProductService;
+import com.example.service.feed.CsvProductFeedReader;
+import com.example.service.feed.NdjsonProductFeedReader;
+import com.example.service.feed.ProductFeedReader;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class ProductImportTests {
+
+	private InMemoryProductRepository repository;
+	private ProductService productService;
+
+	@BeforeEach
+	void setUp() {
+		repository = new InMemoryProductRepository();
+		productService = new ProductService(repository);
+	}
+
+	@Test
+	void testCsvImport() throws IOException {
+		String feed = "name,category,unitPrice,inStock,expirationDate\r\n"
+			+ "Milk,Dairy,1.5,10,2025-12-31\r\n"
+			+ "\"Cheese, aged\",Dairy,12,3,\r\n"
+			+ "\r\n"
+			+ "\"The \"\"best\"\" bread\nloaf\",Bakery,2.25,0,\n"
+			+ ",Bakery,1,1,\n"
+			+ "Butter,Dairy,abc,1,\n"
+			+ "Jam,Pantry,3,1,31/12/2025\n"
+			+ "Eggs,Dairy,3\n"
+			+ "Honey,Pantry,8,100001,";
+
+		ImportReport report = productService.importProducts(new CsvProductFeedReader(new StringReader(feed)));
+
+		assertEquals(8, report.getRowsRead());
+		assertEquals(3, report.getImportedRows());
+		assertEquals(5, report.getFailedRows());
+		assertEquals(List.of(
+			"4 name is required",
+			"5 unitPrice must be a number",
+			"6 expirationDate must be a date like 2025-12-31",
+			"7 Expected 5 columns but found 3",
+			"8 inStock must be between 0 and 100000"), describe(report.getErrors()));
+
+		List<Product> products = repository.findAll();
+		assertEquals(List.of("Milk", "Cheese, aged", "The \"best\" bread\nloaf"),
+			products.stream().map(Product::getName).collect(Collectors.toList()));
+		assertEquals(LocalDate.of(2025, 12, 31), products.get(0).getExpirationDate());
+		assertNull(products.get(1).getExpirationDate());
+		// One timestamp for the whole import
+		assertEquals(1, products.stream().map(Product::getCreatedAt).distinct().count());
+	}
+
+	@Test
+	void testNdjsonImport() throws IOException {
+		String feed = "{\"name\":\"Milk\",\"category\":\"Dairy\",\"unitPrice\":1.5,\"inStock\":10,\"expirationDate\":\"2025-12-31\"}\n"
+			+ "\n"
+			+ "{\"name\":\"Bread\",\"category\":\"Bakery\",\"unitPrice\":\"2\",\"inStock\":4,\"expirationDate\":null}\n"
+			+ "{\"name\":\"Broken\",\n"
+			+ "[1,2]\n"
+			+ "{\"name\":\"Jam\",\"category\":\"Pantry\",\"unitPrice\":-1,\"inStock\":1}";
+
+		ImportReport report = productService.importProducts(new NdjsonProductFeedReader(new StringReader(feed), new ObjectMapper()));
+
+		assertEquals(5, report.getRowsRead());
+		assertEquals(2, report.getImportedRows());
+		assertEquals(3, report.getErrors().size());
+		assertTrue(report.getErrors().get(0).getError().startsWith("Invalid JSON"));
+		assertEquals("4 Expected a JSON object", describe(report.getErrors()).get(1));
+		assertEquals("5 unitPrice must be between 0 and 100000", describe(report.getErrors()).get(2));
+		assertEquals(List.of("Milk", "Bread"), repository.findAll().stream().map(Product::getName).collect(Collectors.toList()));
+	}
+
+	// A feed much larger than a batch, with a row too long to keep and more errors than the report lists
+	@Test
+	void testLargeFeedIsImportedInBatches() throws IOException {
+		StringBuilder feed = new StringBuilder("name,category,unitPrice,inStock,expirationDate\n");
+		for (int i = 0; i < 5000; i++) {
+			feed.append("Product ").append(i).append(",Category").append(i % 10).append(",1.5,").append(i % 7).append(",\n");
+			if (i % 3 == 0) {
+				feed.append("Bad ").append(i).append(",Category,1,-1,\n");
+			}
+		}
+		feed.append("x".repeat(ProductFeedReader.MAX_ROW_LENGTH + 10)).append(",Dairy,1,1,\n");
+		feed.append("Last,Dairy,1,1,\n");
+
+		ImportReport report = productService.importProducts(new CsvProductFeedReader(new StringReader(feed.toString())));
+
+		assertEquals(5001, report.getImportedRows());
+		assertEquals(1668, report.getFailedRows());
+		assertEquals(1000, report.getErrors().size());
+		assertTrue(report.isErrorsTruncated());
+		assertEquals(5001, repository.countAllProducts());
+		assertEquals(11, repository.getCategoryTotals().size());
+		assertFalse(repository.findAll().stream().anyMatch(p -> p.getName().startsWith("xxx")));
+	}
+
+	// A product the journal refuses fails the batch it is in, the rows around it are still
+	// saved once and only its row is reported
+	@Test
+	void testFailedSaveOnlyFailsItsRow() throws IOException {
+		repository.setJournal(new ProductJournal() {
+			@Override
+			public long put(Product product) {
+				if (product.getName().equals("Broken")) {
+					throw new UncheckedIOException(new IOException("Disk full"));
+				}
+				return 0;
+			}
+			@Override
+			public long delete(Long id) { return 0; }
+			@Override
+			public void awaitDurable(long position) {}
+		});
+		String feed = "\uFEFFname,category,unitPrice,inStock,expirationDate\n"
+			+ "Milk,Dairy,1.5,10,\n"
+			+ "Broken,Dairy,1,1,\n"
+			+ "Bread,Bakery,2,3,\n";
+
+		ImportReport report = productService.importProducts(new CsvProductFeedReader(new StringReader(feed)));
+
+		assertEquals(2, report.getImportedRows());
+		assertEquals(List.of("2 java.io.IOException: Disk full"), describe(report.getErrors()));
+		assertEquals(List.of("Milk", "Bread"), repository.findAll().stream().map(Product::getName).collect(Collectors.toList()));
+	}
+
+	// Every batch is logged in one write and indexed at once, and reads the same as
+	// products saved one by one
+	@Test
+	void testBatchesAreLoggedAndIndexedAtOnce() throws IOException {
+		int[] writes = new int[2];
+		repository.setJournal(new ProductJournal() {
+			@Override
+			public long put(Product product) {
+				writes[0]++;
+				return 0;
+			}
+			@Override
+			public long putAll(List<Product> products) {
+				writes[1]++;
+				return 0;
+			}
+			@Override
+			public long delete(Long id) { return 0; }
+			@Override
+			public void awaitDurable(long position) {}
+		});
+		InMemoryProductRepository expected = new InMemoryProductRepository();
+		for (InMemoryProductRepository target : List.of(repository, expected)) {
+			target.save(new Product("Existing", "Dairy", 4, null, 2, null, null));
+		}
+		StringBuilder feed = new StringBuilder("name,category,unitPrice,inStock,expirationDate\n");
+		for (int i = 0; i < 2500; i++) {
+			feed.append("Product ").append(2500 - i).append(",Category").append(i % 7).append(',')
+				.append(i % 13).append(',').append(i % 5).append(",2026-0").append(1 + i % 9).append("-15\n");
+		}
+
+		ImportReport report = productService.importProducts(new CsvProductFeedReader(new StringReader(feed.toString())));
+
+		assertEquals(2500, report.getImportedRows());
+		assertEquals(1, writes[0]);
+		assertEquals(3, writes[1]);
+		for (Product product : repository.findAll()) {
+			if (product.getId() > 1) {
+				product.setId(null);
+				expected.save(product);
+			}
+		}
+		for (String sortBy : List.of("name", "category", "unitPrice", "inStock", "expirationDate")) {
+			assertEquals(ids(expected.getProducts(null, null, null, sortBy, "desc", "name", "asc", 3, 50)),
+				ids(repository.getProducts(null, null, null, sortBy, "desc", "name", "asc", 3, 50)), sortBy);
+		}
+		assertEquals(ids(expected.getProducts("uct 12", List.of("Category3"), true, "name", "asc", null, "asc", 0, 100)),
+			ids(repository.getProducts("uct 12", List.of("Category3"), true, "name", "asc", null, "asc", 0, 100)));
+		assertEquals(expected.getCategoryTotals().stream().map(t -> t.getCategory() + " " + t.getProductCount() + " "
+				+ t.getUnitsInStock() + " " + t.getInventoryValue()).collect(Collectors.toList()),
+			repository.getCategoryTotals().stream().map(t -> t.getCategory() + " " + t.getProductCount() + " "
+				+ t.getUnitsInStock() + " " + t.getInventoryValue()).collect(Collectors.toList()));
+	}
+
+	private static List<Long> ids(CustomPage<Product> page) {
+		return page.getContent().stream().map(Product::getId).collect(Collectors.toList());
+	}
+
+	private static List<String> describe(List<ImportRowError> errors) {
+		return errors.stream().map(e -> e.getRow() + " " + e.getError()).collect(Collectors.toList());
+	}
+}
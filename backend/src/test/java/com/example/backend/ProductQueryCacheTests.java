@@ -0,0 +1,158 @@
+package com.example.backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import com.example.models.CustomPage;
+import com.example.models.Product;
+import com.example.models.QueryCacheStats;
+import com.example.repositories.InMemoryProductRepository;
+import com.example.service.ChangeFeed;
+import com.example.service.ProductQueryCache;
+import com.example.service.ProductService;
+
+class ProductQueryCacheTests {
+
+	private InMemoryProductRepository repository;
+	private ProductService productService;
+
+	@BeforeEach
+	void setUp() {
+		repository = new InMemoryProductRepository();
+		productService = new ProductService(repository, new ProductQueryCache(100), new ChangeFeed(repository, new ObjectMapper(), 0));
+		for (int i = 0; i < 20; i++) {
+			save("Product " + i, i % 2 == 0 ? "Dairy" : "Bakery", i % 4 == 0 ? 0 : 5);
+		}
+	}
+
+	private Product save(String name, String category, int inStock) {
+		LocalDateTime now = LocalDateTime.now();
+		return repository.save(new Product(name, category, 1, null, inStock, now, now));
+	}
+
+	private CustomPage<Product> dairy() {
+		return productService.getProducts(null, List.of("Dairy"), null, "name", "asc", null, "asc", 0, 10);
+	}
+
+	@Test
+	void testSameQueryIsServedFromCache() {
+		CustomPage<Product> first = productService.getProducts("PRODUCT", List.of("Dairy", "Bakery"), true, "name", null, "", null, 0, 5);
+		CustomPage<Product> second = productService.getProducts("product", List.of("Bakery", "Dairy", "Bakery"), true, "name", "asc", null, "asc", 0, 5);
+
+		assertEquals(ids(first), ids(second));
+		assertEquals(first.getNextCursor(), second.getNextCursor());
+		assertStats(1, 1, 0);
+
+		// Callers can't change what is cached
+		second.getContent().get(0).setName("Changed");
+		assertEquals(ids(first), ids(productService.getProducts("product", List.of("Dairy", "Bakery"), true, "name", "asc", null, "asc", 0, 5)));
+		assertTrue(productService.getProducts("product", List.of("Dairy", "Bakery"), true, "name", "asc", null, "asc", 0, 5)
+			.getContent().get(0).getName().startsWith("Product"));
+	}
+
+	@Test
+	void testWritesOnlyInvalidateTheirCategories() {
+		dairy();
+		productService.getProducts(null, null, null, null, "asc", null, "asc", 0, 10);
+
+		// A new bakery product leaves the dairy page alone but not the unfiltered one
+		save("Bread", "Bakery", 1);
+		dairy();
+		productService.getProducts(null, null, null, null, "asc", null, "asc", 0, 10);
+		assertStats(1, 3, 1);
+
+		// A stock change in the dairy category does invalidate it
+		Long dairyId = dairy().getContent().get(0).getId();
+		repository.adjustStock(dairyId, 3, LocalDateTime.now());
+		assertEquals(repository.findById(dairyId).get().getInStock(), dairy().getContent().get(0).getInStock());
+		assertStats(2, 4, 2);
+
+		// Moving a product out of dairy invalidates both categories
+		Product moved = repository.findById(dairyId).get();
+		moved.setCategory("Bakery");
+		repository.save(moved);
+		assertEquals(9, dairy().getContent().size());
+		assertStats(2, 5, 3);
+	}
+
+	@Test
+	void testEvictsLeastRecentlyUsedPagesOverTheWeightLimit() {
+		for (int i = 20; i < 100; i++) {
+			save("Product " + i, "Pantry", 1);
+		}
+		// Every page weighs 11, so 100 holds 9 of them
+		for (int page = 0; page < 10; page++) {
+			productService.getProducts(null, null, null, null, "asc", null, "asc", page, 10);
+		}
+		QueryCacheStats stats = productService.getQueryCacheStats();
+		assertEquals(9, stats.getEntries());
+		assertEquals(1, stats.getEvictions());
+		assertTrue(stats.getWeight() <= stats.getMaxWeight());
+
+		// Page 0 was the least recently used one
+		productService.getProducts(null, null, null, null, "asc", null, "asc", 1, 10);
+		productService.getProducts(null, null, null, null, "asc", null, "asc", 0, 10);
+		assertEquals(1, productService.getQueryCacheStats().getHits());
+		assertEquals(11, productService.getQueryCacheStats().getMisses());
+	}
+
+	// Concurrent lookups of more pages than fit keep the weight within the limit and
+	// account for every request
+	@Test
+	void testConcurrentLookupsStayWithinTheWeight() throws Exception {
+		for (int i = 20; i < 200; i++) {
+			save("Product " + i, "Pantry", 1);
+		}
+		int threads = 8;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<?>> results = new ArrayList<>();
+		for (int t = 0; t < threads; t++) {
+			results.add(executor.submit(() -> {
+				start.await();
+				for (int i = 0; i < 500; i++) {
+					int page = ThreadLocalRandom.current().nextInt(20);
+					assertEquals(10, productService.getProducts(null, null, null, null, "asc", null, "asc", page, 10).getContent().size());
+				}
+				return null;
+			}));
+		}
+		start.countDown();
+		for (Future<?> result : results) {
+			result.get(60, TimeUnit.SECONDS);
+		}
+		executor.shutdown();
+
+		QueryCacheStats stats = productService.getQueryCacheStats();
+		assertEquals(threads * 500, stats.getHits() + stats.getMisses());
+		assertTrue(stats.getWeight() <= stats.getMaxWeight());
+		assertEquals(stats.getEntries() * 11, stats.getWeight());
+		assertTrue(stats.getEvictions() > 0);
+	}
+
+	private void assertStats(long hits, long misses, long invalidations) {
+		QueryCacheStats stats = productService.getQueryCacheStats();
+		assertEquals(hits, stats.getHits(), "hits");
+		assertEquals(misses, stats.getMisses(), "misses");
+		assertEquals(invalidations, stats.getInvalidations(), "invalidations");
+	}
+
+	private static List<Long> ids(CustomPage<Product> page) {
+		return page.getContent().stream().map(Product::getId).toList();
+	}
+}
@@ -0,0 +1,589 @@
+package com.example.backend;
+
+import com.example.models.CategoryTotals;
+import com.example.models.CustomPage;
+import com.example.models.Product;
+import com.example.models.ProductRanges;
+import com.example.models.TotalMode;
+import com.example.repositories.ProductRepository;
+import com.example.service.ProductService;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+// Behaviour every ProductRepository implementation must have, each one runs it
+// through its own subclass
+abstract class ProductRepositoryContractTests {
+
+	protected ProductRepository repository;
+	private final Random random = new Random(7);
+
+	protected abstract ProductRepository createRepository();
+
+	@BeforeEach
+	void setUp() {
+		repository = createRepository();
+	}
+
+	private Product randomProduct() {
+		Product product = new Product();
+		product.setName("Item " + random.nextInt(1000));
+		product.setCategory("Category" + random.nextInt(5));
+		product.setUnitPrice(random.nextInt(1000) / 10.0);
+		product.setExpirationDate(random.nextBoolean() ? null : LocalDate.of(2026, 1, 1).plusDays(random.nextInt(30)));
+		product.setInStock(random.nextInt(3) == 0 ? 0 : random.nextInt(50));
+		return product;
+	}
+
+	private List<Long> ids(List<Product> products) {
+		return products.stream().map(Product::getId).collect(Collectors.toList());
+	}
+
+	@Test
+	void testFilteredQueriesMatchFullScan() {
+		List<Long> created = new ArrayList<>();
+		for (int i = 0; i < 500; i++) {
+			created.add(repository.save(randomProduct()).getId());
+		}
+		for (int i = 0; i < 200; i++) {
+			Product update = randomProduct();
+			update.setId(created.get(random.nextInt(created.size())));
+			repository.save(update);
+		}
+		for (int i = 0; i < 100; i++) {
+			repository.deleteById(created.get(random.nextInt(created.size())));
+		}
+
+		List<String> categories = List.of("Category1", "Category3");
+		for (Boolean availability : new Boolean[] {null, true, false}) {
+			List<Long> expected = repository.findAll().stream()
+				.filter(p -> p.getName().toLowerCase().contains("item 1"))
+				.filter(p -> categories.contains(p.getCategory()))
+				.filter(p -> availability == null || (availability && p.getInStock() > 0) || (!availability && p.getInStock() == 0))
+				.map(Product::getId)
+				.sorted()
+				.collect(Collectors.toList());
+
+			CustomPage<Product> page = repository.getProducts("ITEM 1", categories, availability, null, "asc", null, "asc", 0, 1000);
+
+			assertEquals(expected.size(), page.getTotalElements());
+			assertEquals(expected, ids(page.getContent()));
+		}
+	}
+
+	// Ranges narrow enough for an index and broad enough to be checked on the candidates,
+	// alone and next to the other filters, in id order and walking the price view
+	@Test
+	void testRangeFiltersMatchFullScan() {
+		for (int i = 0; i < 3000; i++) {
+			repository.save(randomProduct());
+		}
+		for (int i = 0; i < 300; i++) {
+			repository.deleteById((long) random.nextInt(3000) + 1);
+		}
+
+		LocalDate start = LocalDate.of(2026, 1, 1);
+		ProductRanges[] rangesList = {
+			new ProductRanges(null, 5.0, null, null, start, start.plusDays(7)),
+			new ProductRanges(10.0, 90.0, 1, null, null, null),
+			new ProductRanges(null, null, 10, 20, null, null),
+			new ProductRanges(50.0, 50.0, null, null, null, null),
+			new ProductRanges(null, null, null, null, start.plusDays(20), null),
+			new ProductRanges(1.0, null, null, 0, null, start.plusDays(29))
+		};
+		List<String> categories = List.of("Category1", "Category2", "Category4");
+		for (ProductRanges ranges : rangesList) {
+			for (List<String> categoryFilters : java.util.Arrays.asList(null, categories)) {
+				for (Boolean availability : new Boolean[] {null, true}) {
+					List<Product> expected = repository.findAll().stream()
+						.filter(ranges::matches)
+						.filter(p -> categoryFilters == null || categoryFilters.contains(p.getCategory()))
+						.filter(p -> availability == null || p.getInStock() > 0)
+						.sorted(Comparator.comparing(Product::getId))
+						.collect(Collectors.toList());
+
+					CustomPage<Product> page = repository.getProducts(null, categoryFilters, availability, ranges,
+						null, "asc", null, "asc", 0, 5000, TotalMode.EXACT);
+					assertEquals(expected.size(), page.getTotalElements());
+					assertEquals(ids(expected), ids(page.getContent()));
+
+					expected.sort(Comparator.comparing(Product::getUnitPrice).thenComparing(Product::getId));
+					CustomPage<Product> byPrice = repository.getProducts(null, categoryFilters, availability, ranges,
+						"unitPrice", "asc", null, "asc", 0, 10, TotalMode.EXACT);
+					assertEquals(expected.size(), byPrice.getTotalElements());
+					assertEquals(ids(expected.subList(0, Math.min(10, expected.size()))), ids(byPrice.getContent()));
+
+					List<Product> visited = new ArrayList<>();
+					repository.forEach(null, categoryFilters, availability, ranges, visited::add);
+					assertEquals(ids(page.getContent()), ids(visited));
+				}
+			}
+		}
+	}
+
+	@Test
+	void testFindExpiringMatchesFullScan() {
+		for (int i = 0; i < 2000; i++) {
+			repository.save(randomProduct());
+		}
+		for (int i = 0; i < 200; i++) {
+			repository.deleteById((long) random.nextInt(2000) + 1);
+		}
+		// Moved to another day, or out of the index
+		for (int i = 0; i < 200; i++) {
+			repository.findById((long) random.nextInt(2000) + 1).ifPresent(product -> {
+				product.setExpirationDate(random.nextBoolean() ? null : LocalDate.of(2026, 1, 1).plusDays(random.nextInt(30)));
+				repository.save(product);
+			});
+		}
+
+		LocalDate start = LocalDate.of(2026, 1, 1);
+		LocalDate[][] windows = {{start.plusDays(3), start.plusDays(10)}, {null, start.plusDays(5)},
+			{start.plusDays(25), null}, {start.plusDays(12), start.plusDays(12)}, {null, null}};
+		for (LocalDate[] window : windows) {
+			List<Product> expected = repository.findAll().stream()
+				.filter(p -> p.getExpirationDate() != null)
+				.filter(p -> window[0] == null || !p.getExpirationDate().isBefore(window[0]))
+				.filter(p -> window[1] == null || !p.getExpirationDate().isAfter(window[1]))
+				.sorted(Comparator.comparing(Product::getExpirationDate).thenComparing(Product::getId))
+				.collect(Collectors.toList());
+
+			assertEquals(ids(expected), ids(repository.findExpiring(window[0], window[1], Integer.MAX_VALUE)));
+			assertEquals(ids(expected.subList(0, Math.min(15, expected.size()))), ids(repository.findExpiring(window[0], window[1], 15)));
+
+			expected.sort(Comparator.comparing(Product::getExpirationDate).reversed().thenComparing(Product::getId));
+			assertEquals(ids(expected), ids(repository.findExpiring(window[0], window[1], true, Integer.MAX_VALUE)));
+			assertEquals(ids(expected.subList(0, Math.min(15, expected.size()))), ids(repository.findExpiring(window[0], window[1], true, 15)));
+		}
+		assertTrue(repository.findExpiring(null, null, 0).isEmpty());
+	}
+
+	// Visits the same products as an unpaged query, in id order, across more than one chunk
+	@Test
+	void testForEachMatchesQueryAndStopsEarly() {
+		for (int i = 0; i < 1200; i++) {
+			repository.save(randomProduct());
+		}
+		for (int i = 0; i < 200; i++) {
+			repository.deleteById((long) random.nextInt(1200) + 1);
+		}
+
+		List<String> categories = List.of("Category0", "Category2");
+		for (Boolean availability : new Boolean[] {null, true, false}) {
+			CustomPage<Product> page = repository.getProducts("item", categories, availability, null, "asc", null, "asc", 0, 2000);
+			List<Product> visited = new ArrayList<>();
+			repository.forEach("item", categories, availability, visited::add);
+			assertEquals(ids(page.getContent()), ids(visited));
+		}
+
+		List<Product> firstTen = new ArrayList<>();
+		repository.forEach(null, null, null, product -> firstTen.add(product) && firstTen.size() < 10);
+		assertEquals(ids(repository.findAll()).subList(0, 10), ids(firstTen));
+
+		firstTen.get(0).setName("Changed");
+		assertTrue(repository.findById(firstTen.get(0).getId()).get().getName().startsWith("Item"));
+	}
+
+	// Following the cursors gives the same pages as the page numbers, for every order
+	@Test
+	void testCursorPagesMatchOffsetPages() {
+		for (int i = 0; i < 300; i++) {
+			repository.save(randomProduct());
+		}
+		ProductService productService = new ProductService(repository);
+
+		String[][] orders = {
+			{null, "asc", null, "asc"},
+			{null, "desc", null, "asc"},
+			{"name", "asc", null, "asc"},
+			{"unitPrice", "desc", null, "asc"},
+			{"expirationDate", "desc", null, "asc"},
+			{"inStock", "asc", null, "asc"},
+			{"category", "asc", "expirationDate", "desc"},
+			{"expirationDate", "asc", "unitPrice", "asc"},
+		};
+		for (String[] order : orders) {
+			for (Boolean availability : new Boolean[] {null, true}) {
+				CustomPage<Product> page = productService.getProducts("item", null, availability, order[0], order[1], order[2], order[3], 0, 7);
+				int pageNumber = 0;
+				while (page.getNextCursor() != null) {
+					pageNumber++;
+					CustomPage<Product> offsetPage = productService.getProducts("item", null, availability,
+						order[0], order[1], order[2], order[3], pageNumber, 7);
+					page = productService.getProductsAfter("item", null, availability,
+						order[0], order[1], order[2], order[3], page.getNextCursor(), pageNumber, 7, TotalMode.EXACT);
+
+					assertEquals(ids(offsetPage.getContent()), ids(page.getContent()), String.join(" ", String.valueOf(order[0]), order[1]));
+					assertEquals(offsetPage.getTotalElements(), page.getTotalElements());
+				}
+				assertEquals((page.getTotalElements() + 6) / 7, pageNumber + 1);
+			}
+		}
+	}
+
+	// Rows added or removed before the cursor don't shift the next page
+	@Test
+	void testCursorIsStableUnderConcurrentEdits() {
+		for (int i = 0; i < 100; i++) {
+			Product product = randomProduct();
+			product.setUnitPrice(i);
+			repository.save(product);
+		}
+		ProductService productService = new ProductService(repository);
+
+		CustomPage<Product> first = productService.getProducts(null, null, null, "unitPrice", "asc", null, "asc", 0, 10);
+		for (int i = 0; i < 5; i++) {
+			Product cheaper = randomProduct();
+			cheaper.setUnitPrice(-1);
+			repository.save(cheaper);
+		}
+		repository.deleteById(first.getContent().get(0).getId());
+
+		CustomPage<Product> second = productService.getProductsAfter(null, null, null, "unitPrice", "asc", null, "asc",
+			first.getNextCursor(), 1, 10, TotalMode.EXACT);
+		assertEquals(10.0, second.getContent().get(0).getUnitPrice());
+		assertEquals(19.0, second.getContent().get(9).getUnitPrice());
+
+		assertThrows(IllegalArgumentException.class, () -> productService.getProductsAfter(null, null, null,
+			"unitPrice", "desc", null, "asc", first.getNextCursor(), 1, 10, TotalMode.EXACT));
+		assertThrows(IllegalArgumentException.class, () -> productService.getProductsAfter(null, null, null,
+			"unitPrice", "asc", null, "asc", "not a cursor", 1, 10, TotalMode.EXACT));
+	}
+
+	// Every total mode returns the same rows, only the total differs
+	@Test
+	void testTotalModes() {
+		for (int i = 0; i < 3000; i++) {
+			repository.save(randomProduct());
+		}
+
+		String[][] queries = {
+			{"item", null, null},
+			{"item", "name", null},
+			{"item 1", null, null},
+			{"item 1", "unitPrice", null},
+			{"item", "category", "unitPrice"},
+		};
+		for (String[] query : queries) {
+			for (int pageNumber : new int[] {0, 3}) {
+				CustomPage<Product> exact = repository.getProducts(query[0], null, null, query[1], "desc", query[2], "asc",
+					pageNumber, 20, TotalMode.EXACT);
+				int expected = (int) repository.findAll().stream()
+					.filter(p -> p.getName().toLowerCase().contains(query[0]))
+					.count();
+				assertEquals(expected, exact.getTotalElements());
+				assertEquals(TotalMode.EXACT, exact.getTotalMode());
+				assertEquals((pageNumber + 1) * 20 < expected, exact.hasNext());
+
+				for (TotalMode mode : TotalMode.values()) {
+					CustomPage<Product> page = repository.getProducts(query[0], null, null, query[1], "desc", query[2], "asc",
+						pageNumber, 20, mode);
+					String description = query[0] + " " + query[1] + " " + mode;
+					assertEquals(ids(exact.getContent()), ids(page.getContent()), description);
+					assertEquals(exact.hasNext(), page.hasNext(), description);
+
+					if (page.getTotalMode() == TotalMode.EXACT) {
+						assertEquals(expected, page.getTotalElements(), description);
+					} else if (page.getTotalMode() == TotalMode.CAPPED) {
+						assertEquals(1000, page.getTotalElements(), description);
+						assertTrue(expected > 1000, description);
+					} else if (page.getTotalMode() == TotalMode.ESTIMATED) {
+						assertTrue(Math.abs(page.getTotalElements() - expected) <= expected / 2, description + " " + page.getTotalElements());
+					} else {
+						assertEquals(-1, page.getTotalElements(), description);
+					}
+					assertTrue(mode == TotalMode.EXACT ? page.getTotalMode() == TotalMode.EXACT
+						: page.getTotalMode() == mode || page.getTotalMode() == TotalMode.EXACT, description);
+				}
+			}
+		}
+	}
+
+	// Every write moves the versions of the categories it touches and of the catalog, and no other
+	@Test
+	void testWritesMoveTheVersionsOfTheirCategories() {
+		Product product = randomProduct();
+		product.setCategory("Dairy");
+		Long id = repository.save(product).getId();
+		long dairy = repository.version("Dairy");
+		long catalog = repository.version(null);
+		long bakery = repository.version("Bakery");
+
+		repository.adjustStock(id, 1, LocalDateTime.now());
+		assertTrue(repository.version("Dairy") > dairy);
+		assertTrue(repository.version(null) > catalog);
+		assertEquals(bakery, repository.version("Bakery"));
+
+		dairy = repository.version("Dairy");
+		Product moved = repository.findById(id).get();
+		moved.setCategory("Bakery");
+		repository.save(moved);
+		assertTrue(repository.version("Dairy") > dairy);
+		assertTrue(repository.version("Bakery") > bakery);
+
+		dairy = repository.version("Dairy");
+		bakery = repository.version("Bakery");
+		repository.deleteById(id);
+		assertEquals(dairy, repository.version("Dairy"));
+		assertTrue(repository.version("Bakery") > bakery);
+	}
+
+	@Test
+	void testUpdateMovesProductBetweenIndexes() {
+		Product product = randomProduct();
+		product.setCategory("Old");
+		product.setInStock(0);
+		Long id = repository.save(product).getId();
+
+		Product update = repository.findById(id).orElseThrow();
+		update.setCategory("New");
+		update.setInStock(10);
+		repository.save(update);
+
+		assertEquals(0, repository.getProducts(null, List.of("Old"), null, null, "asc", null, "asc", 0, 10).getTotalElements());
+		assertEquals(List.of(id), ids(repository.getProducts(null, List.of("New"), true, null, "asc", null, "asc", 0, 10).getContent()));
+		assertTrue(repository.getProducts(null, null, false, null, "asc", null, "asc", 0, 10).getContent().isEmpty());
+	}
+
+	@Test
+	void testReturnedProductsAreCopies() {
+		Long id = repository.save(randomProduct()).getId();
+
+		repository.findById(id).orElseThrow().setCategory("Mutated");
+
+		assertEquals(0, repository.getProducts(null, List.of("Mutated"), null, null, "asc", null, "asc", 0, 10).getTotalElements());
+	}
+
+	@Test
+	void testSortedViewsMatchFullSort() {
+		for (int i = 0; i < 300; i++) {
+			repository.save(randomProduct());
+		}
+
+		for (String sortBy : new String[] {"name", "category", "unitPrice", "inStock", "expirationDate", "id"}) {
+			for (String direction : new String[] {"asc", "desc"}) {
+				for (int page = 0; page < 4; page++) {
+					// A second sort by id doesn't change the order but forces the full sort
+					List<Product> sorted = repository.getProducts(null, null, null, sortBy, direction, "id", "asc", page, 7).getContent();
+					List<Product> walked = repository.getProducts(null, null, null, sortBy, direction, null, "asc", page, 7).getContent();
+
+					assertEquals(ids(sorted), ids(walked), sortBy + " " + direction + " page " + page);
+				}
+			}
+		}
+	}
+
+	@Test
+	void testPageAfterLastReturnsEmptyContent() {
+		repository.save(randomProduct());
+
+		CustomPage<Product> page = repository.getProducts(null, null, null, "name", "asc", "unitPrice", "asc", 5, 10);
+
+		assertTrue(page.getContent().isEmpty());
+		assertEquals(1, page.getTotalElements());
+	}
+
+	@Test
+	void testTwoKeySortMatchesFullSortOnEveryPage() {
+		for (int i = 0; i < 300; i++) {
+			repository.save(randomProduct());
+		}
+
+		List<Long> expected = repository.findAll().stream()
+			.filter(p -> p.getInStock() > 0)
+			.sorted(Comparator.comparing(Product::getCategory).reversed()
+				.thenComparing(Product::getUnitPrice)
+				.thenComparing(Product::getId))
+			.map(Product::getId)
+			.collect(Collectors.toList());
+
+		// Shallow pages go through the bounded selection, the deep ones through the full sort
+		for (int page = 0; page * 9 < expected.size(); page++) {
+			CustomPage<Product> result = repository.getProducts(null, null, true, "category", "desc", "unitPrice", "asc", page, 9);
+
+			assertEquals(expected.size(), result.getTotalElements());
+			assertEquals(expected.subList(page * 9, Math.min(page * 9 + 9, expected.size())), ids(result.getContent()));
+		}
+	}
+
+	@Test
+	void testNameSearchKeepsContainsSemantics() {
+		String[] words = {"Apple", "Pineapple", "Grape", "Pear", "Pepper", "Apricot", "Papaya"};
+		List<Long> created = new ArrayList<>();
+		for (int i = 0; i < 300; i++) {
+			Product product = randomProduct();
+			product.setName(words[random.nextInt(words.length)] + " " + words[random.nextInt(words.length)] + " #" + i);
+			created.add(repository.save(product).getId());
+		}
+		for (int i = 0; i < 100; i++) {
+			Product renamed = repository.findById(created.get(random.nextInt(created.size()))).orElseThrow();
+			renamed.setName(words[random.nextInt(words.length)].toUpperCase() + " " + i);
+			repository.save(renamed);
+		}
+
+		for (String query : new String[] {"p", "Ap", "app", "APPLE", "e p", "pineapple grape", "#1", "xyz", "aya #2", ""}) {
+			List<Long> expected = repository.findAll().stream()
+				.filter(p -> p.getName().toLowerCase().contains(query.toLowerCase()))
+				.map(Product::getId)
+				.sorted()
+				.collect(Collectors.toList());
+
+			CustomPage<Product> page = repository.getProducts(query, null, null, null, "asc", null, "asc", 0, 1000);
+
+			assertEquals(expected.size(), page.getTotalElements(), query);
+			assertEquals(expected, ids(page.getContent()), query);
+		}
+	}
+
+	@Test
+	void testCategoriesAreInternedAndReleased() {
+		Product first = randomProduct();
+		first.setCategory(new String("Fruit"));
+		Product second = randomProduct();
+		second.setCategory(new String("Fruit"));
+		Product dairy = randomProduct();
+		dairy.setCategory("Dairy");
+		Long firstId = repository.save(first).getId();
+		Long secondId = repository.save(second).getId();
+		Long dairyId = repository.save(dairy).getId();
+
+		assertSame(repository.findById(firstId).orElseThrow().getCategory(), repository.findById(secondId).orElseThrow().getCategory());
+		assertEquals(List.of("Fruit", "Dairy"), repository.findAllCategories());
+
+		repository.deleteById(dairyId);
+		assertEquals(List.of("Fruit"), repository.findAllCategories());
+
+		// The freed code is reused by the next category without bringing back old products
+		Product bakery = randomProduct();
+		bakery.setCategory("Bakery");
+		Long bakeryId = repository.save(bakery).getId();
+		Product moved = repository.findById(firstId).orElseThrow();
+		moved.setCategory("Bakery");
+		repository.save(moved);
+
+		assertEquals(List.of(firstId, bakeryId), ids(repository.getProducts(null, List.of("Bakery"), null, null, "asc", null, "asc", 0, 10).getContent()));
+		assertEquals(0, repository.getProducts(null, List.of("Dairy"), null, null, "asc", null, "asc", 0, 10).getTotalElements());
+		assertEquals(List.of(secondId), ids(repository.getProducts(null, List.of("Fruit"), null, null, "asc", null, "asc", 0, 10).getContent()));
+	}
+
+	// A product without price is priced 0, a price that isn't a finite number is rejected
+	// before anything is indexed
+	@Test
+	void testMissingPriceIsZeroAndNonFinitePriceIsRejected() {
+		Product unpriced = new Product();
+		unpriced.setName("Unpriced");
+		unpriced.setCategory("Dairy");
+		unpriced.setInStock(5);
+		Long id = repository.save(unpriced).getId();
+		assertEquals(0.0, repository.findById(id).orElseThrow().getUnitPrice());
+		CategoryTotals dairy = repository.getCategoryTotals().get(0);
+		assertEquals(1, dairy.getProductCount());
+		assertEquals(5, dairy.getUnitsInStock());
+		assertEquals(0.0, dairy.getInventoryValue());
+
+		for (double price : new double[] {Double.NaN, Double.POSITIVE_INFINITY}) {
+			Product invalid = new Product("Invalid", "Bakery", price, null, 3, null, null);
+			assertThrows(IllegalArgumentException.class, () -> repository.save(invalid));
+			Product update = repository.findById(id).orElseThrow();
+			update.setUnitPrice(price);
+			assertThrows(IllegalArgumentException.class, () -> repository.save(update));
+		}
+		assertEquals(List.of(id), ids(repository.findAll()));
+		assertEquals(List.of("Dairy"), repository.findAllCategories());
+		assertEquals(1, repository.getCategoryTotals().size());
+		assertEquals(0.0, repository.getCategoryTotals().get(0).getInventoryValue());
+		assertEquals(0.0, repository.findById(id).orElseThrow().getUnitPrice());
+		assertEquals(0, repository.getProducts(null, List.of("Bakery"), null, null, "asc", null, "asc", 0, 10).getTotalElements());
+	}
+
+	@Test
+	void testInventoryMetricsMatchBruteForce() {
+		List<Long> created = new ArrayList<>();
+		for (int i = 0; i < 300; i++) {
+			created.add(repository.save(randomProduct()).getId());
+		}
+		for (int i = 0; i < 200; i++) {
+			Long id = created.get(random.nextInt(created.size()));
+			switch (random.nextInt(4)) {
+				case 0:
+					repository.deleteById(id);
+					break;
+				case 1:
+					Product update = randomProduct();
+					update.setId(id);
+					saveIfPresent(update);
+					break;
+				case 2:
+					adjustIfPresent(id, random.nextInt(20));
+					break;
+				default:
+					repository.findById(id).ifPresent(p -> repository.compareAndSetStock(id, p.getInStock(), 0, LocalDateTime.now()));
+					break;
+			}
+		}
+
+		List<Map<String, Object>> metrics = new ProductService(repository).getInventoryMetrics();
+
+		// Same computation the service used to do over the whole catalog
+		List<Product> allProducts = repository.findAll();
+		List<String> allCategories = allProducts.stream().map(Product::getCategory).distinct().sorted().collect(Collectors.toList());
+		assertEquals(allCategories.size() + 1, metrics.size());
+		for (int i = 0; i < allCategories.size(); i++) {
+			String category = allCategories.get(i);
+			List<Product> categoryProducts = allProducts.stream().filter(p -> p.getCategory().equals(category)).collect(Collectors.toList());
+			assertMetricsRow(metrics.get(i), category, categoryProducts);
+		}
+		assertMetricsRow(metrics.get(allCategories.size()), "Overall", allProducts);
+	}
+
+	private void assertMetricsRow(Map<String, Object> row, String category, List<Product> products) {
+		long inStock = products.stream().mapToLong(Product::getInStock).sum();
+		double value = products.stream().filter(p -> p.getInStock() > 0).mapToDouble(p -> p.getUnitPrice() * p.getInStock()).sum();
+
+		assertEquals(category, row.get("category"));
+		assertEquals(inStock, row.get("productCount"));
+		assertEquals(value, (Double) row.get("totalValue"), 1e-6);
+		assertEquals(inStock != 0 ? value / inStock : 0.0, (Double) row.get("averagePrice"), 1e-6);
+	}
+
+	// Adding and removing products returns the inventory value to exactly where it was
+	@Test
+	void testInventoryValueDoesNotDrift() {
+		Long kept = repository.save(new Product("Kept", "Dairy", 19.99, null, 3, null, null)).getId();
+		for (int i = 0; i < 1000; i++) {
+			Long id = repository.save(new Product("Churn", "Dairy", 0.1, null, 7, null, null)).getId();
+			repository.deleteById(id);
+		}
+		assertEquals(59.97, repository.getCategoryTotals().get(0).getInventoryValue());
+		repository.deleteById(kept);
+		Long other = repository.save(new Product("Other", "Dairy", 0.3, null, 1, null, null)).getId();
+		assertEquals(0.3, repository.getCategoryTotals().get(0).getInventoryValue());
+		assertEquals(List.of(other), ids(repository.findAll()));
+	}
+
+	private void saveIfPresent(Product product) {
+		if (repository.findById(product.getId()).isPresent()) {
+			repository.save(product);
+		}
+	}
+
+	private void adjustIfPresent(Long id, int delta) {
+		if (repository.findById(id).isPresent()) {
+			repository.adjustStock(id, delta, LocalDateTime.now());
+		}
+	}
+}
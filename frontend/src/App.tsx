@@ -1,7 +1,7 @@
 import './App.css'
-import { useEffect, useState } from 'react';
-import { getProducts, getMetrics, getCategories } from './api/services/productService';
-import type { Product, getProductProps } from './types/product';
+import { useEffect, useRef, useState } from 'react';
+import { getProducts, getMetrics, getCategories, subscribeToChanges } from './api/services/productService';
+import type { Product, MetricRow, getProductProps } from './types/product';
 import { Button } from './components/ui/button';
 import { Modal } from './components/ui/modal';
 import CreateEditProduct from './components/content/createEditProduct';
@@ -15,7 +15,7 @@ type ModalType = 'create' | 'update' | 'delete' | null;
 export default function App() {
 
   const [products, setProducts] = useState<Product[]>([]);
-  const [metrics, setMetrics] = useState([]);
+  const [metrics, setMetrics] = useState<MetricRow[]>([]);
   const [categories, setCategories] = useState<string[]>([]);
   const [currentModal, setCurrentModal] = useState<ModalType>(null);
   const [tempProduct, setTempProduct] = useState<Product | null>(null);
@@ -124,6 +124,24 @@ export default function App() {
     }
   };
 
+  // Keeps the listing and the metrics up to date with the writes of other users
+  const fetchProductsRef = useRef(fetchProducts);
+  fetchProductsRef.current = fetchProducts;
+  useEffect(() => {
+    return subscribeToChanges((changes) => {
+      if (changes.products.length > 0 || changes.deletedIds.length > 0) {
+        fetchProductsRef.current();
+        return;
+      }
+      setMetrics(prev => {
+        const rows = new Map(prev.map(row => [row.category, row]));
+        changes.metrics.forEach(row => rows.set(row.category, row));
+        changes.removedCategories.forEach(category => rows.delete(category));
+        return Array.from(rows.values());
+      });
+    }, () => fetchProductsRef.current());
+  }, []);
+
   useEffect(() => {
     fetchProducts();
   }, [
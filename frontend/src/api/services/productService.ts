@@ -1,5 +1,5 @@
 import { fetchApi } from "../client";
-import type { Product, CustomPage, getProductProps } from "../../types/product";
+import type { Product, CustomPage, getProductProps, ProductChanges } from "../../types/product";
 
 
 export async function getProducts(data: getProductProps): Promise<CustomPage<Product> | undefined> {
@@ -74,3 +74,15 @@ export async function getCategories(): Promise<[] | undefined> {
     return fetchApi<[]>("/products/categories");
 }
 
+
+// Server-sent batches of changes, once per tick of the backend. A reset means too much
+// changed at once and everything should be fetched again. Returns the function that closes it
+export function subscribeToChanges(
+    onChanges: (changes: ProductChanges) => void,
+    onReset: () => void
+): () => void {
+    const source = new EventSource(`${import.meta.env.VITE_BACKEND_API_URL}/products/changes`);
+    source.addEventListener("changes", (event) => onChanges(JSON.parse((event as MessageEvent).data)));
+    source.addEventListener("reset", () => onReset());
+    return () => source.close();
+}
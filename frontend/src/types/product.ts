@@ -23,5 +23,22 @@ export interface CustomPage<T> {
   content: T[],
   pageNumber: number,
   pageSize: number,
-  totalElements: number
-}
\ No newline at end of file
+  totalElements: number,
+  totalMode: 'EXACT' | 'CAPPED' | 'ESTIMATED' | 'NONE',
+  // Whether another page follows, also known when totalMode is NONE
+  hasNext: boolean,
+  nextCursor: string | null
+}
+export interface MetricRow {
+  category: string,
+  productCount: number,
+  totalValue: number,
+  averagePrice: number
+}
+
+export interface ProductChanges {
+  products: Product[],
+  deletedIds: number[],
+  metrics: MetricRow[],
+  removedCategories: string[]
+}